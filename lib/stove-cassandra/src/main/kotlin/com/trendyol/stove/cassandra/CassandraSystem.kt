@@ -252,8 +252,9 @@ class CassandraSystem internal constructor(
     }
 
   private suspend fun startCassandraContainer(container: StoveCassandraContainer): CassandraExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       CassandraExposedConfiguration(
         host = container.host,
         port = container.getMappedPort(CASSANDRA_PORT),
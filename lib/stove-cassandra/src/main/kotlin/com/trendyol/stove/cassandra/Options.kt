@@ -110,7 +110,7 @@ fun WithDsl.cassandra(
     ) { dockerImageName ->
       options.container
         .useContainerFn(dockerImageName)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveCassandraContainer }
         .apply(options.container.containerFn)
     }
@@ -134,7 +134,7 @@ fun WithDsl.cassandra(
     ) { dockerImageName ->
       options.container
         .useContainerFn(dockerImageName)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveCassandraContainer }
         .apply(options.container.containerFn)
     }
@@ -371,8 +371,9 @@ class CouchbaseSystem internal constructor(
     }
 
   private suspend fun startCouchbaseContainer(container: StoveCouchbaseContainer): CouchbaseExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { LivenessProbe.addresses(it.hostsWithPort) }) {
       container.start()
+      state.own(container)
       CouchbaseExposedConfiguration(
         connectionString = container.connectionString,
         hostsWithPort = container.connectionString.replace("couchbase://", ""),
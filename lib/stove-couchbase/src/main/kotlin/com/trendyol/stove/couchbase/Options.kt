@@ -216,7 +216,7 @@ fun WithDsl.couchbase(
       options.containerOptions
         .useContainerFn(dockerImageName)
         .withBucket(bucketDefinition)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveCouchbaseContainer }
         .apply(options.containerOptions.containerFn)
     }
@@ -243,7 +243,7 @@ fun WithDsl.couchbase(
       options.containerOptions
         .useContainerFn(dockerImageName)
         .withBucket(bucketDefinition)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveCouchbaseContainer }
         .apply(options.containerOptions.containerFn)
     }
@@ -11,6 +11,8 @@ import com.trendyol.stove.dashboard.api.MockWarningEvent
 import com.trendyol.stove.dashboard.api.RunEndedEvent
 import com.trendyol.stove.dashboard.api.RunStartedEvent
 import com.trendyol.stove.dashboard.api.SpanRecordedEvent
+import com.trendyol.stove.dashboard.api.StartupPhase
+import com.trendyol.stove.dashboard.api.StartupProfileEvent
 import com.trendyol.stove.dashboard.api.TestEndedEvent
 import com.trendyol.stove.dashboard.api.TestStartedEvent
 import com.trendyol.stove.interactions.InteractionAttribution
@@ -25,6 +27,7 @@ import com.trendyol.stove.reporting.ReportEventListener
 import com.trendyol.stove.reporting.Reports
 import com.trendyol.stove.reporting.SpanEventListener
 import com.trendyol.stove.reporting.SpanListenerRegistry
+import com.trendyol.stove.reporting.StartupProfile
 import com.trendyol.stove.reporting.StoveTestContext
 import com.trendyol.stove.system.Stove
 import com.trendyol.stove.system.abstractions.PluggedSystem
@@ -168,6 +171,28 @@ class DashboardSystem(
     }
   }
 
+  override fun onStartupProfile(profile: StartupProfile) {
+    // Teardown phases arrive after the dashboard has stopped accepting events; only startup is sent.
+    if (!acceptingEvents.get() || profile.teardown != null) return
+    emitter.tryEmit(
+      dashboardEvent {
+        startupProfile = StartupProfileEvent.newBuilder()
+          .setTimestamp(now())
+          .setStartupMs(profile.startup.inWholeMilliseconds)
+          .addAllPhases(
+            profile.phases.map {
+              StartupPhase.newBuilder()
+                .setSystem(it.system)
+                .setPhase(it.phase)
+                .setDurationMs(it.duration.inWholeMilliseconds)
+                .build()
+            }
+          )
+          .build()
+      }
+    )
+  }
+
   override fun onInteraction(interaction: MockInteraction) {
     if (!acceptingEvents.get()) return
     emitter.tryEmit(
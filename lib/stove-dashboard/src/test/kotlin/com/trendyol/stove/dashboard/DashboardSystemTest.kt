@@ -307,6 +307,38 @@ class DashboardSystemTest : FunSpec({
     }
   }
 
+  test("startup profile is forwarded as its own event") {
+    val received = CopyOnWriteArrayList<DashboardEvent>()
+    val server = startMockServer(received, port = 0)
+
+    try {
+      val stove = Stove()
+      val system = DashboardSystem(stove, DashboardSystemOptions(appName = "test-api", cliPort = server.port))
+
+      system.run()
+      system.onStartupProfile(
+        StartupProfile(
+          phases = listOf(
+            StartupPhaseTiming("KafkaSystem", StartupProfile.RUN, 1200.milliseconds),
+            StartupPhaseTiming(StartupProfile.APPLICATION, StartupProfile.START, 800.milliseconds)
+          ),
+          startup = 2000.milliseconds
+        )
+      )
+      system.stop()
+      delay(500.milliseconds)
+
+      val profile = received.single { it.hasStartupProfile() }.startupProfile
+      profile.startupMs shouldBe 2000
+      profile.phasesList.map { Triple(it.system, it.phase, it.durationMs) } shouldBe listOf(
+        Triple("KafkaSystem", "run", 1200L),
+        Triple("application", "start", 800L)
+      )
+    } finally {
+      server.shutdownNow()
+    }
+  }
+
   test("mock diagnostics stay inside the dashboard run lifecycle") {
     val received = CopyOnWriteArrayList<DashboardEvent>()
     val server = startMockServer(received, port = 0)
@@ -357,8 +357,9 @@ class ElasticsearchSystem internal constructor(
     }
 
   private suspend fun startElasticsearchContainer(container: StoveElasticSearchContainer): ElasticSearchExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       ElasticSearchExposedConfiguration(
         host = container.host,
         port = container.firstMappedPort,
@@ -79,7 +79,7 @@ fun WithDsl.elasticsearch(
         if (options.container.disableSecurity) {
           withEnv("xpack.security.enabled", "false")
         }
-        withReuse(stove.keepDependenciesRunning)
+        withReuse(stove.reuseContainers)
         options.container.containerFn(this)
       }
   }
@@ -106,7 +106,7 @@ fun WithDsl.elasticsearch(
         if (options.container.disableSecurity) {
           withEnv("xpack.security.enabled", "false")
         }
-        withReuse(stove.keepDependenciesRunning)
+        withReuse(stove.reuseContainers)
         options.container.containerFn(this)
       }
   }
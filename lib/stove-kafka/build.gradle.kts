@@ -7,6 +7,9 @@ dependencies {
   api(libs.testcontainers.kafka)
   api(libs.kafka)
   api(libs.kafka.embedded)
+  // Only needed for KafkaSystemOptions.topology; Kafka Streams applications bring both at runtime
+  compileOnly(libs.kafka.streams)
+  compileOnly(libs.kafka.streams.test.utils)
   implementation(libs.kotlinx.io.reactor.extensions)
   implementation(libs.kotlinx.jdk8)
   implementation(libs.kotlinx.core)
@@ -25,6 +28,8 @@ dependencies {
   testImplementation(project(":test-extensions:stove-extensions-kotest"))
   testImplementation(libs.logback.classic)
   testImplementation(libs.kafkaKotlin)
+  testImplementation(libs.kafka.streams)
+  testImplementation(libs.kafka.streams.test.utils)
 }
 
 buildscript {
@@ -82,6 +87,34 @@ val testWithProvided = tasks.register<Test>("testWithProvided") {
   }
 }
 
+val testWithCluster = tasks.register<Test>("testWithCluster") {
+  group = "verification"
+  description = "Runs the broker-failure tests against a multi-broker KRaft cluster"
+  testClassesDirs = sourceSets.test.get().output.classesDirs
+  classpath = sourceSets.test.get().runtimeClasspath
+  useJUnitPlatform()
+  systemProperty("useKafkaCluster", "true")
+  // Stopping a broker breaks single-replica topics of other specs, so only the cluster spec runs here.
+  filter { includeTestsMatching("*KafkaClusterTests") }
+  doFirst {
+    println("Starting Kafka cluster tests...")
+  }
+}
+
+val testWithTopology = tasks.register<Test>("testWithTopology") {
+  group = "verification"
+  description = "Runs the DSL tests against the Kafka Streams topology test driver"
+  testClassesDirs = sourceSets.test.get().output.classesDirs
+  classpath = sourceSets.test.get().runtimeClasspath
+  useJUnitPlatform()
+  systemProperty("useKafkaTopology", "true")
+  // There is no broker and no application consumers, so only the topology spec runs here.
+  filter { includeTestsMatching("*KafkaTopologyDslTests") }
+  doFirst {
+    println("Starting Kafka topology tests...")
+  }
+}
+
 tasks.test.configure {
-  dependsOn(testWithEmbedded, testWithProvided)
+  dependsOn(testWithEmbedded, testWithProvided, testWithCluster, testWithTopology)
 }
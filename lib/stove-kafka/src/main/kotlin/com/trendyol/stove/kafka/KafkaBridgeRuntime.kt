@@ -1,9 +1,11 @@
 package com.trendyol.stove.kafka
 
+import com.trendyol.stove.kafka.intercepting.KafkaRecorder
 import com.trendyol.stove.serialization.StoveSerde
 import kotlinx.coroutines.*
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
+import kotlin.time.Duration.Companion.milliseconds
 
 private val bridgePortDiscoveryLock = Any()
 
@@ -50,18 +52,39 @@ internal fun exposeBridgePortForInJvmDiscovery(
 internal object KafkaBridgeConfig {
   const val BRIDGE_ID_CONFIG: String = "stove.kafka.bridge.id"
   const val BRIDGE_PORT_CONFIG: String = "stove.kafka.bridge.port"
+  const val BRIDGE_BATCH_SIZE_CONFIG: String = "stove.kafka.bridge.batch.size"
+  const val BRIDGE_LINGER_MS_CONFIG: String = "stove.kafka.bridge.linger.ms"
+  const val BRIDGE_QUEUE_CAPACITY_CONFIG: String = "stove.kafka.bridge.queue.capacity"
+
+  /** Reads the streaming settings; absent batch size means the bridge keeps the unary calls. */
+  fun batching(configs: Map<String, *>): KafkaBridgeBatching? {
+    val maxBatchSize = configs[BRIDGE_BATCH_SIZE_CONFIG]?.toString()?.toIntOrNull() ?: return null
+    return KafkaBridgeBatching(
+      maxBatchSize = maxBatchSize,
+      linger = configs[BRIDGE_LINGER_MS_CONFIG]?.toString()?.toLongOrNull()?.milliseconds
+        ?: KafkaBridgeBatching.DEFAULT_LINGER,
+      queueCapacity = configs[BRIDGE_QUEUE_CAPACITY_CONFIG]?.toString()?.toIntOrNull()
+        ?: maxOf(KafkaBridgeBatching.DEFAULT_QUEUE_CAPACITY, maxBatchSize)
+    )
+  }
 }
 
 /** Internal address and identity of the observer belonging to one [KafkaSystem]. */
 internal data class KafkaBridgeEndpoint(
   val id: String,
-  val port: Int
+  val port: Int,
+  val batching: KafkaBridgeBatching? = null
 ) {
   val clientProperties: Map<String, Any>
-    get() = mapOf(
-      KafkaBridgeConfig.BRIDGE_ID_CONFIG to id,
-      KafkaBridgeConfig.BRIDGE_PORT_CONFIG to port.toString()
-    )
+    get() = buildMap {
+      put(KafkaBridgeConfig.BRIDGE_ID_CONFIG, id)
+      put(KafkaBridgeConfig.BRIDGE_PORT_CONFIG, port.toString())
+      batching?.let {
+        put(KafkaBridgeConfig.BRIDGE_BATCH_SIZE_CONFIG, it.maxBatchSize.toString())
+        put(KafkaBridgeConfig.BRIDGE_LINGER_MS_CONFIG, it.linger.inWholeMilliseconds.toString())
+        put(KafkaBridgeConfig.BRIDGE_QUEUE_CAPACITY_CONFIG, it.queueCapacity.toString())
+      }
+    }
 
   /** String configuration entries suitable for Stove's application configuration hand-off. */
   fun configurationEntries(): List<String> = clientProperties.map { (key, value) -> "$key=$value" }
@@ -69,7 +92,8 @@ internal data class KafkaBridgeEndpoint(
 
 internal class KafkaBridgeRuntime(
   serde: StoveSerde<Any, ByteArray>,
-  keyName: String?
+  keyName: String?,
+  private val batching: KafkaBridgeBatching? = null
 ) : AutoCloseable {
   val id: String = UUID.randomUUID().toString()
   val systemId: String = keyName ?: "default"
@@ -82,8 +106,16 @@ internal class KafkaBridgeRuntime(
     KafkaBridgeRuntimeRegistry.register(id, serde)
   }
 
-  fun attach(port: Int) {
-    endpoint = KafkaBridgeEndpoint(id = id, port = port)
+  /**
+   * Publishes the observer endpoint. When [recorder] is given, interceptors running in this JVM
+   * with this runtime's bridge id record through it directly instead of calling the observer.
+   */
+  fun attach(
+    port: Int,
+    recorder: KafkaRecorder? = null
+  ) {
+    endpoint = KafkaBridgeEndpoint(id = id, port = port, batching = batching)
+    recorder?.let { KafkaBridgeRuntimeRegistry.attachRecorder(id, it) }
   }
 
   val clientProperties: Map<String, Any>
@@ -96,18 +128,33 @@ internal class KafkaBridgeRuntime(
 }
 
 internal object KafkaBridgeRuntimeRegistry {
-  private val serdes = ConcurrentHashMap<String, StoveSerde<Any, ByteArray>>()
+  private class Registration(
+    val serde: StoveSerde<Any, ByteArray>,
+    @Volatile var recorder: KafkaRecorder? = null
+  )
+
+  private val registrations = ConcurrentHashMap<String, Registration>()
 
   fun register(
     id: String,
     serde: StoveSerde<Any, ByteArray>
   ) {
-    serdes[id] = serde
+    registrations[id] = Registration(serde)
+  }
+
+  fun attachRecorder(
+    id: String,
+    recorder: KafkaRecorder
+  ) {
+    registrations[id]?.recorder = recorder
   }
 
   fun unregister(id: String) {
-    serdes.remove(id)
+    registrations.remove(id)
   }
 
-  fun serde(id: String): StoveSerde<Any, ByteArray>? = serdes[id]
+  fun serde(id: String): StoveSerde<Any, ByteArray>? = registrations[id]?.serde
+
+  /** The recorder of a bridge running in this JVM, or `null` when the bridge lives elsewhere. */
+  fun recorder(id: String): KafkaRecorder? = registrations[id]?.recorder
 }
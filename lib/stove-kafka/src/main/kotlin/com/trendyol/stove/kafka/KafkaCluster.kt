@@ -0,0 +1,115 @@
+package com.trendyol.stove.kafka
+
+import com.trendyol.stove.system.abstractions.SystemRuntime
+import kotlinx.coroutines.*
+import kotlinx.coroutines.future.await
+import org.apache.kafka.clients.admin.*
+import org.apache.kafka.common.Uuid
+import org.slf4j.*
+import org.testcontainers.containers.Network
+import org.testcontainers.lifecycle.Startables
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.minutes
+
+/**
+ * Runs Kafka as a KRaft cluster of [brokers] nodes instead of a single container.
+ *
+ * Every node is created from [KafkaSystemOptions.containerOptions], so the image, registry and
+ * `containerFn` customizations apply to each broker. Nodes act as both broker and controller, share
+ * one Docker network, and vote in a single quorum. Internal topics are replicated to up to three
+ * brokers, so consumer offsets and transactions survive the loss of one broker.
+ *
+ * A cluster is always started fresh; `keepDependenciesRunning` does not reuse it.
+ */
+data class KafkaClusterOptions(
+  val brokers: Int = DEFAULT_BROKERS,
+  val startupTimeout: Duration = 2.minutes
+) {
+  init {
+    require(brokers > 0) { "brokers must be greater than zero" }
+  }
+
+  companion object {
+    const val DEFAULT_BROKERS: Int = 3
+  }
+}
+
+/**
+ * The runtime behind [KafkaClusterOptions]: one [StoveKafkaContainer] per broker, reachable on the
+ * shared network as `broker-<id>`. Broker ids start at 1.
+ */
+class StoveKafkaCluster(
+  val options: KafkaClusterOptions,
+  brokerFn: (brokerId: Int) -> StoveKafkaContainer
+) : SystemRuntime {
+  private val logger: Logger = LoggerFactory.getLogger(StoveKafkaCluster::class.java)
+  private val network: Network = Network.newNetwork()
+  private val clusterId: String = Uuid.randomUuid().toString()
+
+  val brokers: List<StoveKafkaContainer> = (1..options.brokers).map { id ->
+    brokerFn(id).apply {
+      withNetwork(network)
+      withNetworkAliases(brokerAlias(id))
+      withEnv(clusterEnv(id, options.brokers, clusterId))
+    }
+  }
+
+  /** Bootstrap servers of every broker, comma separated. */
+  val bootstrapServers: String
+    get() = brokers.joinToString(",") { it.bootstrapServers }
+
+  fun broker(brokerId: Int): StoveKafkaContainer {
+    require(brokerId in 1..brokers.size) { "Broker id must be between 1 and ${brokers.size}, was $brokerId" }
+    return brokers[brokerId - 1]
+  }
+
+  /** Starts every broker in parallel and waits until all of them have joined the cluster. */
+  suspend fun start() {
+    withContext(Dispatchers.IO) { Startables.deepStart(brokers).join() }
+    Admin.create(mapOf(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG to bootstrapServers)).use { admin ->
+      withTimeout(options.startupTimeout) {
+        while (runCatching { admin.describeCluster().nodes().toCompletionStage().await().size }.getOrDefault(0) < brokers.size) {
+          delay(READINESS_POLL)
+        }
+      }
+    }
+    logger.info("Stove Kafka cluster {} is up with {} brokers: {}", clusterId, brokers.size, bootstrapServers)
+  }
+
+  fun stop() {
+    brokers.forEach { broker -> runCatching { broker.stop() }.onFailure { logger.warn("Could not stop a Kafka broker", it) } }
+    network.close()
+  }
+
+  companion object {
+    private const val CONTROLLER_PORT = 9094
+    private const val MAX_REPLICATION_FACTOR = 3
+    private val READINESS_POLL = 250.milliseconds
+
+    internal fun brokerAlias(brokerId: Int): String = "broker-$brokerId"
+
+    /**
+     * Overrides the single-node KRaft settings of [org.testcontainers.kafka.ConfluentKafkaContainer]
+     * so that the nodes form one quorum.
+     */
+    internal fun clusterEnv(
+      brokerId: Int,
+      brokers: Int,
+      clusterId: String
+    ): Map<String, String> {
+      val replicationFactor = minOf(brokers, MAX_REPLICATION_FACTOR).toString()
+      return mapOf(
+        "CLUSTER_ID" to clusterId,
+        "KAFKA_NODE_ID" to brokerId.toString(),
+        "KAFKA_BROKER_ID" to brokerId.toString(),
+        "KAFKA_CONTROLLER_QUORUM_VOTERS" to (1..brokers).joinToString(",") { "$it@${brokerAlias(it)}:$CONTROLLER_PORT" },
+        "KAFKA_DEFAULT_REPLICATION_FACTOR" to replicationFactor,
+        "KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR" to replicationFactor,
+        "KAFKA_TRANSACTION_STATE_LOG_REPLICATION_FACTOR" to replicationFactor,
+        "KAFKA_TRANSACTION_STATE_LOG_MIN_ISR" to "1",
+        "KAFKA_MIN_INSYNC_REPLICAS" to "1"
+      )
+    }
+  }
+}
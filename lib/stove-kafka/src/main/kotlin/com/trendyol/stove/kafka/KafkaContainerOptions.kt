@@ -7,7 +7,11 @@ import org.testcontainers.utility.DockerImageName
 open class StoveKafkaContainer(
   override val imageNameAccess: DockerImageName
 ) : ConfluentKafkaContainer(imageNameAccess),
-  StoveContainer
+  StoveContainer {
+  /** Prefers this container's own id, since the brokers of a [StoveKafkaCluster] share one image. */
+  override val containerIdAccess: String
+    get() = containerId ?: super.containerIdAccess
+}
 
 data class KafkaContainerOptions(
   override val registry: String = DEFAULT_REGISTRY,
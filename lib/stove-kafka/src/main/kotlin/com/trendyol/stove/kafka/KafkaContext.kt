@@ -77,6 +77,26 @@ suspend fun ValidationDsl.kafka(
  * }
  * ```
  *
+ * For a Kafka Streams topology driven by a TopologyTestDriver, without a broker:
+ * ```kotlin
+ * kafka {
+ *   KafkaSystemOptions(
+ *     topology = KafkaTopologyOptions(topology = { streamsBuilder.build() }),
+ *     configureExposedConfiguration = { cfg -> listOf(...) }
+ *   )
+ * }
+ * ```
+ *
+ * For a multi-broker KRaft cluster:
+ * ```kotlin
+ * kafka {
+ *   KafkaSystemOptions(
+ *     cluster = KafkaClusterOptions(brokers = 3),
+ *     configureExposedConfiguration = { cfg -> listOf(...) }
+ *   )
+ * }
+ * ```
+ *
  * For provided (external) instance:
  * ```kotlin
  * kafka {
@@ -92,26 +112,7 @@ fun WithDsl.kafka(
   configure: () -> KafkaSystemOptions
 ): Stove {
   val options = configure()
-
-  val runtime: SystemRuntime = when {
-    options is ProvidedKafkaSystemOptions -> ProvidedRuntime
-
-    options.useEmbeddedKafka -> EmbeddedKafkaRuntime
-
-    else -> withProvidedRegistry(
-      options.containerOptions.imageWithTag,
-      options.containerOptions.registry,
-      options.containerOptions.compatibleSubstitute
-    ) { dockerImageName ->
-      options.containerOptions
-        .useContainerFn(dockerImageName)
-        .withExposedPorts(*options.containerOptions.ports.toTypedArray())
-        .withReuse(stove.keepDependenciesRunning)
-        .let { c -> c as StoveKafkaContainer }
-        .apply(options.containerOptions.containerFn)
-    }
-  }
-  return stove.withKafka(options, runtime)
+  return stove.withKafka(options, kafkaRuntime(options))
 }
 
 /**
@@ -136,12 +137,36 @@ fun WithDsl.kafka(
   configure: () -> KafkaSystemOptions
 ): Stove {
   val options = configure()
+  return stove.withKafka(key, options, kafkaRuntime(options))
+}
 
-  val runtime: SystemRuntime = when {
+private fun WithDsl.kafkaRuntime(options: KafkaSystemOptions): SystemRuntime {
+  val cluster = options.cluster
+  val topology = options.topology
+  return when {
     options is ProvidedKafkaSystemOptions -> ProvidedRuntime
 
+    topology != null -> {
+      require(options.topicNamespacing == null) { "topicNamespacing needs a Kafka broker and cannot be combined with topology" }
+      KafkaTopologyRuntime(topology)
+    }
+
     options.useEmbeddedKafka -> EmbeddedKafkaRuntime
 
+    cluster != null -> withProvidedRegistry(
+      options.containerOptions.imageWithTag,
+      options.containerOptions.registry,
+      options.containerOptions.compatibleSubstitute
+    ) { dockerImageName ->
+      StoveKafkaCluster(cluster) {
+        options.containerOptions
+          .useContainerFn(dockerImageName)
+          .withExposedPorts(*options.containerOptions.ports.toTypedArray())
+          .let { c -> c as StoveKafkaContainer }
+          .apply(options.containerOptions.containerFn)
+      }
+    }
+
     else -> withProvidedRegistry(
       options.containerOptions.imageWithTag,
       options.containerOptions.registry,
@@ -150,12 +175,11 @@ fun WithDsl.kafka(
       options.containerOptions
         .useContainerFn(dockerImageName)
         .withExposedPorts(*options.containerOptions.ports.toTypedArray())
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveKafkaContainer }
         .apply(options.containerOptions.containerFn)
     }
   }
-  return stove.withKafka(key, options, runtime)
 }
 
 /**
@@ -16,15 +16,20 @@ import io.grpc.Server
 import io.grpc.netty.NettyServerBuilder
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.future.await
+import kotlinx.coroutines.sync.*
 import org.apache.kafka.clients.admin.*
 import org.apache.kafka.clients.consumer.*
 import org.apache.kafka.clients.producer.*
+import org.apache.kafka.common.ElectionType
 import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.TopicPartitionInfo
 import org.apache.kafka.common.serialization.*
 import org.slf4j.*
 import scala.collection.immutable.`Map$`
 import java.net.*
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.reflect.KClass
 import kotlin.time.*
 import kotlin.time.Duration.Companion.milliseconds
@@ -179,12 +184,11 @@ class KafkaSystem(
   override fun snapshot(): SystemSnapshot {
     val currentTestId = reporter.currentTestId()
 
-    val consumed = store.consumedMessages().filter { it.headers.belongsToTest(currentTestId) }
-    val published = store.publishedMessages().filter { it.headers.belongsToTest(currentTestId) }
-    val failed = store.failedMessages().filter { it.headers.belongsToTest(currentTestId) }
-    val retried = store.retriedMessages().filter { it.headers.belongsToTest(currentTestId) }
-    val topicPartitions = consumed.map { it.topic to it.partition }.toSet()
-    val committed = store.committedMessages().filter { (it.topic to it.partition) in topicPartitions }
+    val consumed = store.consumedMessages(currentTestId)
+    val published = store.publishedMessages(currentTestId)
+    val failed = store.failedMessages(currentTestId)
+    val retried = store.retriedMessages(currentTestId)
+    val committed = store.committedMessagesFor(currentTestId)
 
     return SystemSnapshot(
       system = reportSystemName,
@@ -232,19 +236,42 @@ class KafkaSystem(
   private lateinit var exposedConfiguration: KafkaExposedConfiguration
   private lateinit var adminClient: Admin
   private lateinit var kafkaPublisher: KafkaProducer<String, Any>
+
+  // Transactional batches need a producer with a transactional.id; it is created on first use and
+  // serialized by the mutex, since a producer runs one transaction at a time.
+  private val transactionalPublisher = lazy {
+    createPublisher(
+      exposedConfiguration,
+      overrides = mapOf(
+        ProducerConfig.TRANSACTIONAL_ID_CONFIG to "stove-kafka-transactional-${bridgeRuntime.systemId}",
+        ProducerConfig.ACKS_CONFIG to "all"
+      )
+    ).also { it.initTransactions() }
+  }
+  private val transactionMutex = Mutex()
+  private val quotas = KafkaClientQuotas { entities, produce, fetch -> adminClient.setClientQuotas(entities, produce, fetch) }
+  private val topicReaders = ConcurrentHashMap<Triple<String, KClass<*>, KClass<*>>, KafkaTopicReader<*, *>>()
   private lateinit var grpcServer: Server
   private var bridgePortDiscovery: AutoCloseable? = null
-  private val bridgeRuntime = KafkaBridgeRuntime(context.options.serde, context.keyName)
+  private val bridgeRuntime = KafkaBridgeRuntime(context.options.serde, context.keyName, context.options.bridgeBatching)
 
   @PublishedApi
-  internal val store: MessageStore = MessageStore()
+  internal val store: MessageStore = MessageStore(context.options.retention)
   private val recorder = KafkaRecorder(store, context.options.topicSuffixes)
+  private val topologyDriver = (context.runtime as? KafkaTopologyRuntime)?.let { runtime ->
+    KafkaTopologyDriver(runtime.options, recorder, context.options.valueSerializer, context.options.listenPublishedMessagesFromStove)
+  }
   private val assertions = KafkaAssertions(
     store = store.core,
     serde = context.options.serde,
     isErrorTopic = context.options.topicSuffixes::isErrorTopic,
     requireConsumedCommit = true
   )
+  private val retentionListener = KafkaRetentionListener { store.core }
+  private val topicNamespace = context.options.topicNamespacing?.let { namespacing ->
+    kafkaTopicNamespace(namespacing) { adminClient }
+  }
+  private var retentionListenerRegistered = false
   private val logger: Logger = LoggerFactory.getLogger(javaClass)
   private val state: StateStorage<KafkaExposedConfiguration> =
     stove.createStateStorage<KafkaExposedConfiguration, KafkaSystem>(context.keyName)
@@ -256,10 +283,17 @@ class KafkaSystem(
   }
 
   override suspend fun run() {
+    if (!retentionListenerRegistered) {
+      stove.addReportListener(retentionListener)
+      topicNamespace?.let { stove.addReportListener(it) }
+      retentionListenerRegistered = true
+    }
     exposedConfiguration = obtainExposedConfiguration()
+    // The topology test driver runs in-process: no broker clients, observer server or migrations.
+    if (topologyDriver != null) return
     adminClient = createAdminClient(exposedConfiguration)
     grpcServer = startGrpcServer()
-    bridgeRuntime.attach(grpcServer.port)
+    bridgeRuntime.attach(grpcServer.port, recorder)
     bridgePortDiscovery = exposeBridgePortForInJvmDiscovery(context.keyName, grpcServer.port)
     kafkaPublisher = createPublisher(exposedConfiguration)
     runMigrationsIfNeeded()
@@ -277,6 +311,7 @@ class KafkaSystem(
     context.options is ProvidedKafkaSystemOptions -> context.options.runMigrations
     context.runtime is StoveKafkaContainer -> !state.isSubsequentRun() || stove.runMigrationsAlways
     context.runtime is EmbeddedKafkaRuntime -> !state.isSubsequentRun() || stove.runMigrationsAlways
+    context.runtime is StoveKafkaCluster -> true
     else -> throw UnsupportedOperationException("Unsupported runtime type: ${context.runtime::class}")
   }
 
@@ -285,6 +320,8 @@ class KafkaSystem(
       is ProvidedRuntime -> Unit
       is EmbeddedKafkaRuntime -> stopEmbeddedKafka()
       is StoveKafkaContainer -> runtime.stop()
+      is StoveKafkaCluster -> runtime.stop()
+      is KafkaTopologyRuntime -> Unit
       else -> throw UnsupportedOperationException("Unsupported runtime type: ${runtime::class}")
     }
   }
@@ -303,9 +340,21 @@ class KafkaSystem(
       }
     }
 
+    if (retentionListenerRegistered) {
+      closeStep("report listeners") {
+        stove.removeReportListener(retentionListener)
+        topicNamespace?.let { stove.removeReportListener(it) }
+        retentionListenerRegistered = false
+      }
+    }
     if (::adminClient.isInitialized) closeStep("cleanup") { context.options.cleanup(adminClient) }
     // Producer close may execute acknowledgement callbacks, so the observer stays alive until after it finishes.
     if (::kafkaPublisher.isInitialized) closeStep("producer") { kafkaPublisher.close() }
+    if (transactionalPublisher.isInitialized()) closeStep("transactional producer") { transactionalPublisher.value.close() }
+    topicReaders.values.forEach { reader -> closeStep("topic reader") { reader.close() } }
+    topologyDriver?.let { driver -> closeStep("topology driver") { driver.close() } }
+    if (::adminClient.isInitialized) closeStep("quotas") { quotas.removeAll() }
+    if (::adminClient.isInitialized) topicNamespace?.let { namespace -> closeStep("namespaced topics") { namespace.close() } }
     if (::adminClient.isInitialized) closeStep("admin") { adminClient.close() }
     if (::grpcServer.isInitialized) {
       closeStep("observer server") {
@@ -401,6 +450,106 @@ class KafkaSystem(
     extraMetadata = mapOf("sizeBytes" to message.size)
   )
 
+  /**
+   * Publishes every message of [messages] to [topic], pipelined through the producer.
+   *
+   * Up to [maxInFlight] records are sent without waiting for their acknowledgements, the producer
+   * is flushed once at the end, and the whole batch is reported as a single entry with its record
+   * count, serialized bytes and elapsed time. The first failed send stops the batch and is rethrown.
+   *
+   * With [transactional], the batch is written in one Kafka transaction by a dedicated producer and
+   * aborted on failure, so read-committed consumers see all of it or none of it. The cluster must
+   * support transactions; single-broker setups need `transaction.state.log.replication.factor=1`.
+   * With [KafkaSystemOptions.topology], records are piped into the topology one by one, and
+   * [maxInFlight] and [transactional] have no effect.
+   *
+   * @param key derives each record's key from its message; `null` lets the partitioner spread them
+   */
+  suspend fun publishAll(
+    topic: String,
+    messages: Flow<Any>,
+    key: (Any) -> String? = { null },
+    headers: Map<String, String> = mapOf(),
+    maxInFlight: Int = KafkaSendWindow.DEFAULT_MAX_IN_FLIGHT,
+    transactional: Boolean = false
+  ): KafkaSystem {
+    val resolvedTopic = resolveTopic(topic)
+    report(
+      action = "Publish all to '$topic'",
+      metadata = mapOf("topic" to resolvedTopic, "headers" to headers, "maxInFlight" to maxInFlight, "transactional" to transactional)
+    ) {
+      if (topologyDriver != null) {
+        pipeAll(topologyDriver, resolvedTopic, messages, key, headers)
+      } else if (transactional) {
+        transactionMutex.withLock {
+          val publisher = withContext(Dispatchers.IO) { transactionalPublisher.value }
+          publisher.beginTransaction()
+          try {
+            pipeline(publisher, resolvedTopic, messages, key, headers, maxInFlight)
+              .also { withContext(Dispatchers.IO) { publisher.commitTransaction() } }
+          } catch (error: Throwable) {
+            withContext(NonCancellable + Dispatchers.IO) { publisher.abortTransaction() }
+            throw error
+          }
+        }
+      } else {
+        pipeline(kafkaPublisher, resolvedTopic, messages, key, headers, maxInFlight)
+      }
+    }
+    return this
+  }
+
+  /** [publishAll] for an in-memory or lazily generated [Sequence] of messages. */
+  suspend fun publishAll(
+    topic: String,
+    messages: Sequence<Any>,
+    key: (Any) -> String? = { null },
+    headers: Map<String, String> = mapOf(),
+    maxInFlight: Int = KafkaSendWindow.DEFAULT_MAX_IN_FLIGHT,
+    transactional: Boolean = false
+  ): KafkaSystem = publishAll(topic, messages.asFlow(), key, headers, maxInFlight, transactional)
+
+  private suspend fun pipeline(
+    publisher: KafkaProducer<String, Any>,
+    topic: String,
+    messages: Flow<Any>,
+    key: (Any) -> String?,
+    headers: Map<String, String>,
+    maxInFlight: Int
+  ): KafkaBatchPublishResult {
+    // The trace context is thread-bound and the sends run on the IO dispatcher.
+    val trace = TraceContext.current()
+    return pipelineKafkaSends(messages, maxInFlight, publisher::flush) { message, onComplete ->
+      val record = ProducerRecord<String, Any>(topic, key(message), message)
+      headers.forEach { (k, v) -> record.headers().add(k, v.toByteArray()) }
+      injectTraceHeaders(record, trace)
+      publisher.send(record) { metadata, exception -> onComplete(metadata?.serializedBytes() ?: 0, exception) }
+    }
+  }
+
+  private suspend fun pipeAll(
+    driver: KafkaTopologyDriver,
+    topic: String,
+    messages: Flow<Any>,
+    key: (Any) -> String?,
+    headers: Map<String, String>
+  ): KafkaBatchPublishResult {
+    val started = TimeSource.Monotonic.markNow()
+    var records = 0
+    var bytes = 0L
+    messages.collect { message ->
+      val record = ProducerRecord<String, Any>(topic, key(message), message)
+      headers.forEach { (k, v) -> record.headers().add(k, v.toByteArray()) }
+      injectTraceHeaders(record)
+      bytes += driver.pipe(record)
+      records++
+    }
+    return KafkaBatchPublishResult(records, bytes, started.elapsedNow())
+  }
+
+  // Sizes are -1 for a null key or value.
+  private fun RecordMetadata.serializedBytes(): Int = serializedKeySize().coerceAtLeast(0) + serializedValueSize().coerceAtLeast(0)
+
   private suspend fun publishRecord(
     action: String,
     input: Option<Any>,
@@ -415,10 +564,12 @@ class KafkaSystem(
     require(partition == PARTITION_BY_KEY || partition >= 0) {
       "partition must be non-negative or PARTITION_BY_KEY"
     }
+    val resolvedTopic = resolveTopic(topic)
     report(
       action = action,
       input = input,
       metadata = buildMap {
+        if (resolvedTopic != topic) put("resolvedTopic", resolvedTopic)
         key?.let { put("key", it) }
         put("headers", headers)
         put("partition", partition.takeUnless { it == PARTITION_BY_KEY } ?: "partitioner")
@@ -426,17 +577,20 @@ class KafkaSystem(
       }
     ) {
       val selectedPartition = partition.takeUnless { it == PARTITION_BY_KEY }
-      val record = ProducerRecord<String, Any>(topic, selectedPartition, key, value)
+      val record = ProducerRecord<String, Any>(resolvedTopic, selectedPartition, key, value)
       headers.forEach { (k, v) -> record.headers().add(k, v.toByteArray()) }
       testCase.map { record.headers().add("testCase", it.toByteArray()) }
       injectTraceHeaders(record)
-      kafkaPublisher.dispatch(record)
+      if (topologyDriver != null) topologyDriver.pipe(record) else kafkaPublisher.dispatch(record)
     }
     return this
   }
 
-  private fun injectTraceHeaders(record: ProducerRecord<String, Any>) {
-    TraceContext.current()?.let { ctx ->
+  private fun injectTraceHeaders(
+    record: ProducerRecord<String, Any>,
+    trace: TraceContext? = TraceContext.current()
+  ) {
+    trace?.let { ctx ->
       record.headers().remove(TraceContext.TRACEPARENT_HEADER)
       record.headers().remove(TraceContext.STOVE_TEST_ID_HEADER)
       record.headers().add(TraceContext.TRACEPARENT_HEADER, ctx.toTraceparent().toByteArray())
@@ -480,6 +634,50 @@ class KafkaSystem(
     }
   }
 
+  /**
+   * Waits until a published message matches every expectation declared in [expectations].
+   *
+   * Arriving messages are evaluated once against the expectations still pending, under the single
+   * [atLeastIn] timeout, and the call is reported as one assertion. A timeout lists exactly the
+   * expectations that were not met.
+   *
+   * ```kotlin
+   * shouldAllBePublished {
+   *   expect<OrderCreatedEvent> { actual.orderId == orderId }
+   *   expect<StockReservedEvent> { actual.orderId == orderId }
+   * }
+   * ```
+   */
+  suspend fun shouldAllBePublished(
+    atLeastIn: Duration = 5.seconds,
+    expectations: KafkaExpectations.() -> Unit
+  ): KafkaSystem {
+    val declared = KafkaExpectations().apply(expectations)
+    return assertKafkaMessage<List<Any>>(
+      assertionName = "shouldAllBePublished",
+      typeName = declared.typeNames(),
+      timeout = atLeastIn,
+      expected = "${declared.toList().size} message(s) matching their conditions within $atLeastIn"
+    ) { onMatch -> onMatch(assertions.waitUntilAllPublished(atLeastIn, declared.toList())) }
+  }
+
+  /**
+   * Consumed counterpart of [shouldAllBePublished]. An expectation matched by a message that failed
+   * or was retried fails the assertion, the same way as [shouldBeConsumed].
+   */
+  suspend fun shouldAllBeConsumed(
+    atLeastIn: Duration = 5.seconds,
+    expectations: KafkaExpectations.() -> Unit
+  ): KafkaSystem {
+    val declared = KafkaExpectations().apply(expectations)
+    return assertKafkaMessage<List<Any>>(
+      assertionName = "shouldAllBeConsumed",
+      typeName = declared.typeNames(),
+      timeout = atLeastIn,
+      expected = "${declared.toList().size} consumed message(s) matching their conditions within $atLeastIn"
+    ) { onMatch -> onMatch(assertions.waitUntilAllConsumed(atLeastIn, declared.toList())) }
+  }
+
   suspend inline fun <reified T : Any> shouldBeFailed(
     atLeastIn: Duration = 5.seconds,
     crossinline condition: ObservedMessage<T>.() -> Boolean
@@ -608,13 +806,48 @@ class KafkaSystem(
     config,
     keyDeserializer,
     valueDeserializer,
-    topic,
+    resolveTopic(topic),
     pollTimeout,
     keepConsumingAtLeastFor,
     groupId,
     onConsume
   )
 
+  /**
+   * Returns the name [name] has on the broker for the current test, creating the topic on first use.
+   * Without [KafkaSystemOptions.topicNamespacing] it is [name] itself. Use it wherever a test refers
+   * to a topic outside `publish`, such as `metadata.topic` conditions or [lagOf].
+   */
+  suspend fun topic(name: String): String = resolveTopic(name)
+
+  /**
+   * Returns a hot flow of the records on [topic], read by a consumer that stays open across calls.
+   *
+   * Unlike [consumer], no consumer group is involved, so there is no group join or rebalance to wait
+   * for. The first call for a topic and pair of deserializer types assigns every partition and reads
+   * it from the beginning; later calls share that reader. The flow replays the records read so far,
+   * then follows new ones. Reading commits no offsets and does not go through the bridge.
+   * If the reader stops on a Kafka error, the flow fails with it and the next call starts a new reader.
+   */
+  fun <K : Any, V : Any> topicRecords(
+    topic: String,
+    keyDeserializer: Deserializer<K> = StoveKafkaValueDeserializer(),
+    valueDeserializer: Deserializer<V> = StoveKafkaValueDeserializer()
+  ): Flow<ConsumerRecord<K, V>> = topicReader(topicNamespace?.name(topic) ?: topic, keyDeserializer, valueDeserializer).records()
+
+  /**
+   * Waits until a record on [topic] matches [condition] and returns it, reading through [topicRecords].
+   */
+  suspend fun <K : Any, V : Any> peekTopicRecords(
+    atLeastIn: Duration = 5.seconds,
+    topic: String,
+    keyDeserializer: Deserializer<K> = StoveKafkaValueDeserializer(),
+    valueDeserializer: Deserializer<V> = StoveKafkaValueDeserializer(),
+    condition: (ConsumerRecord<K, V>) -> Boolean
+  ): ConsumerRecord<K, V> = withTimeout(atLeastIn) {
+    topicRecords(topic, keyDeserializer, valueDeserializer).first { condition(it) }
+  }
+
   /**
    * Pauses the container. Use with care, as it will pause the container which might affect other tests.
    * This operation is not supported when using a provided instance or embedded Kafka.
@@ -627,12 +860,171 @@ class KafkaSystem(
    */
   fun unpause(): KafkaSystem = withContainerOrWarn("unpause") { it.unpause() }
 
+  /**
+   * Stops broker [brokerId] of the cluster for the rest of the run, so tests can observe a broker
+   * loss. Requires [KafkaSystemOptions.cluster]; broker ids start at 1.
+   */
+  fun stopBroker(brokerId: Int): KafkaSystem = apply { cluster("stopBroker").broker(brokerId).stop() }
+
+  /**
+   * Pauses broker [brokerId] of the cluster; [unpauseBroker] brings it back with its data.
+   * Requires [KafkaSystemOptions.cluster].
+   */
+  fun pauseBroker(brokerId: Int): KafkaSystem = apply { cluster("pauseBroker").broker(brokerId).pause() }
+
+  /**
+   * Unpauses broker [brokerId] of the cluster. Requires [KafkaSystemOptions.cluster].
+   */
+  fun unpauseBroker(brokerId: Int): KafkaSystem = apply { cluster("unpauseBroker").broker(brokerId).unpause() }
+
+  /**
+   * Moves the leadership of [partition] of [topic] to broker [toBroker] and waits until it leads.
+   *
+   * The broker becomes the preferred replica through a partition reassignment (replacing the last
+   * replica if it was not one already, so the replication factor stays the same), then a preferred
+   * leader election runs until the leadership changes. Requires [KafkaSystemOptions.cluster].
+   */
+  suspend fun moveLeader(
+    topic: String,
+    partition: Int,
+    toBroker: Int,
+    within: Duration = 30.seconds
+  ): KafkaSystem {
+    cluster("moveLeader").broker(toBroker)
+    val topicPartition = TopicPartition(topic, partition)
+    report(
+      action = "moveLeader('$topicPartition')",
+      metadata = mapOf("toBroker" to toBroker, "timeout" to within.toString()),
+      expected = Some("Broker $toBroker leads $topicPartition within $within")
+    ) {
+      withTimeoutOrNull(within) { awaitLeader(topicPartition, toBroker) }
+        ?: throw AssertionError("GOT A TIMEOUT: Broker $toBroker did not become the leader of $topicPartition within $within")
+    }
+    return this
+  }
+
+  private suspend fun awaitLeader(partition: TopicPartition, broker: Int) {
+    val replicas = describePartition(partition).replicas().map { it.id() }
+    val reordered = (listOf(broker) + replicas.filter { it != broker }).take(replicas.size)
+    if (replicas != reordered) {
+      adminClient
+        .alterPartitionReassignments(mapOf(partition to Optional.of(NewPartitionReassignment(reordered))))
+        .all()
+        .toCompletionStage()
+        .await()
+    }
+    while (adminClient.listPartitionReassignments(setOf(partition)).reassignments().toCompletionStage().await().isNotEmpty()) {
+      delay(LEADER_POLL_DELAY)
+    }
+    while (leaderOf(partition) != broker) {
+      // The election fails until the broker is in sync; retrying covers that and ElectionNotNeeded alike.
+      runCatching { adminClient.electLeaders(ElectionType.PREFERRED, setOf(partition)).partitions().toCompletionStage().await() }
+      delay(LEADER_POLL_DELAY)
+    }
+  }
+
   /**
    * Provides access to the message store of the KafkaSystem.
    */
   fun messageStore(): MessageStore = this.store
 
-  suspend fun adminOperations(block: suspend Admin.() -> Unit) = block(adminClient)
+  suspend fun adminOperations(block: suspend Admin.() -> Unit) {
+    requireBroker("adminOperations")
+    block(adminClient)
+  }
+
+  /**
+   * Moves the wall-clock time of the topology test driver forward by [by], firing the punctuations
+   * that fall due and recording what the topology publishes meanwhile. Records published afterwards
+   * carry the new time. Requires [KafkaSystemOptions.topology].
+   */
+  suspend fun advanceTime(by: Duration): KafkaSystem {
+    val driver = topologyDriver
+      ?: throw UnsupportedOperationException("advanceTime() requires KafkaSystemOptions.topology, runtime is ${context.runtime::class}")
+    require(by >= Duration.ZERO) { "Time can only move forward, was $by" }
+    report(action = "Advance time by $by") {
+      driver.advanceTime(by)
+    }
+    return this
+  }
+
+  /**
+   * Returns the lag of consumer group [groupId] per partition: the latest offset minus the group's
+   * committed offset. With [topics], every partition of those topics is included and partitions the
+   * group never committed count in full; otherwise only the partitions the group has committed.
+   */
+  suspend fun lagOf(
+    groupId: String,
+    topics: Collection<String> = emptyList()
+  ): Map<TopicPartition, Long> {
+    requireBroker("lagOf")
+    return adminClient.consumerGroupLag(groupId, topics)
+  }
+
+  /**
+   * Waits until consumer group [groupId] has no lag on [topics], or on every partition it has
+   * committed to when [topics] is empty, measuring [lagOf] with exponential backoff. Without [topics],
+   * a group that has not committed anything yet is not drained, so the wait goes on until [within].
+   *
+   * The report entry carries the lag measured over time, so a slow consumer shows up as a curve
+   * rather than only as a timeout.
+   */
+  suspend fun shouldHaveNoLag(
+    groupId: String,
+    topics: Collection<String> = emptyList(),
+    within: Duration = 30.seconds
+  ): KafkaSystem {
+    report(
+      action = "shouldHaveNoLag('$groupId')",
+      metadata = mapOf("topics" to topics, "timeout" to within.toString()),
+      expected = Some("No lag within $within")
+    ) {
+      awaitNoKafkaLag(subject = "While expecting no lag for consumer group '$groupId'", within = within) {
+        lagOf(groupId, topics).mapKeys { (partition, _) -> partition.toString() }
+      }
+    }
+    return this
+  }
+
+  /**
+   * Throttles the clients identified by [clientId] and/or [user] with broker quotas, so tests can
+   * watch how the application copes with a slow broker. Each call replaces the quota of that client;
+   * a `null` rate leaves the direction unthrottled. Brokers apply a quota within moments of the call.
+   *
+   * [unthrottle] removes every quota set this way, and closing the system does so as well.
+   */
+  suspend fun throttle(
+    clientId: String? = null,
+    user: String? = null,
+    produceBytesPerSec: Long? = null,
+    fetchBytesPerSec: Long? = null
+  ): KafkaSystem {
+    requireBroker("throttle")
+    val entity = KafkaClientQuotas.entity(clientId, user, produceBytesPerSec, fetchBytesPerSec)
+    report(
+      action = "throttle($entity)",
+      metadata = buildMap {
+        produceBytesPerSec?.let { put("produceBytesPerSec", it) }
+        fetchBytesPerSec?.let { put("fetchBytesPerSec", it) }
+      }
+    ) {
+      quotas.throttle(entity, produceBytesPerSec, fetchBytesPerSec)
+    }
+    return this
+  }
+
+  /**
+   * Removes the quotas set by [throttle].
+   */
+  suspend fun unthrottle(): KafkaSystem {
+    report(
+      action = "unthrottle",
+      metadata = mapOf("clients" to quotas.clients)
+    ) {
+      quotas.removeAll()
+    }
+    return this
+  }
 
   @PublishedApi
   internal suspend fun <T : Any> shouldBeConsumedInternal(
@@ -668,10 +1060,15 @@ class KafkaSystem(
       context.options is ProvidedKafkaSystemOptions -> context.options.config
       context.runtime is EmbeddedKafkaRuntime -> startEmbeddedKafka()
       context.runtime is StoveKafkaContainer -> startKafkaContainer(context.runtime)
+      context.runtime is StoveKafkaCluster -> startKafkaCluster(context.runtime)
+      context.runtime is KafkaTopologyRuntime -> KafkaExposedConfiguration(
+        KafkaTopologyRuntime.BOOTSTRAP_SERVERS,
+        StoveKafkaBridge::class.java.name
+      )
       else -> throw UnsupportedOperationException("Unsupported runtime type: ${context.runtime::class}")
     }
 
-  private suspend fun startEmbeddedKafka(): KafkaExposedConfiguration = state.capture {
+  private suspend fun startEmbeddedKafka(): KafkaExposedConfiguration = state.capture(BROKERS_PROBE) {
     val config = EmbeddedKafkaConfig.apply(0, 0, `Map$`.`MODULE$`.empty(), `Map$`.`MODULE$`.empty(), `Map$`.`MODULE$`.empty())
     val server = EmbeddedKafka.start(config)
     while (!EmbeddedKafka.isRunning()) {
@@ -680,11 +1077,17 @@ class KafkaSystem(
     KafkaExposedConfiguration("0.0.0.0:${server.config().kafkaPort()}", StoveKafkaBridge::class.java.name)
   }
 
-  private suspend fun startKafkaContainer(container: StoveKafkaContainer): KafkaExposedConfiguration = state.capture {
+  private suspend fun startKafkaContainer(container: StoveKafkaContainer): KafkaExposedConfiguration = state.capture(BROKERS_PROBE) {
     container.start()
+    state.own(container)
     KafkaExposedConfiguration(container.bootstrapServers, StoveKafkaBridge::class.java.name)
   }
 
+  private suspend fun startKafkaCluster(cluster: StoveKafkaCluster): KafkaExposedConfiguration {
+    cluster.start()
+    return KafkaExposedConfiguration(cluster.bootstrapServers, StoveKafkaBridge::class.java.name)
+  }
+
   private suspend fun stopEmbeddedKafka() {
     EmbeddedKafka.stop()
     while (EmbeddedKafka.isRunning()) {
@@ -705,6 +1108,7 @@ class KafkaSystem(
     groupId: String,
     onConsume: suspend (ConsumerRecord<K, V>) -> Unit
   ) = withContext(Dispatchers.IO) {
+    requireBroker("consumer")
     val props = createConsumerProperties(autoOffsetReset, autoCreateTopics, groupId)
       .apply(config)
       .apply { putAll(bridgeRuntime.clientProperties) }
@@ -730,6 +1134,27 @@ class KafkaSystem(
     }
   }
 
+  private suspend fun resolveTopic(topic: String): String = topicNamespace?.resolve(topic) ?: topic
+
+  @Suppress("UNCHECKED_CAST")
+  private fun <K : Any, V : Any> topicReader(
+    topic: String,
+    keyDeserializer: Deserializer<K>,
+    valueDeserializer: Deserializer<V>
+  ): KafkaTopicReader<K, V> = topicReaders.compute(Triple(topic, keyDeserializer::class, valueDeserializer::class)) { _, existing ->
+    // A reader whose poller died is dropped here, so the next call reads the topic again.
+    if (existing != null && !existing.failed) return@compute existing
+    requireBroker("topicRecords")
+    val properties = Properties().apply {
+      putAll(context.options.properties)
+      this[ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG] = exposedConfiguration.bootstrapServers
+      this[ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG] = false
+      this[ConsumerConfig.ALLOW_AUTO_CREATE_TOPICS_CONFIG] = false
+      putIfAbsent(ConsumerConfig.CLIENT_ID_CONFIG, "stove-kafka-topic-reader-$topic-${UUID.randomUUID()}")
+    }
+    KafkaTopicReader(topic, KafkaConsumer(properties, keyDeserializer, valueDeserializer), context.options.retention.maxRecords)
+  } as KafkaTopicReader<K, V>
+
   private fun createConsumerProperties(
     autoOffsetReset: String,
     autoCreateTopics: Boolean,
@@ -746,7 +1171,10 @@ class KafkaSystem(
     putAll(bridgeRuntime.clientProperties)
   }
 
-  private fun createPublisher(config: KafkaExposedConfiguration): KafkaProducer<String, Any> {
+  private fun createPublisher(
+    config: KafkaExposedConfiguration,
+    overrides: Map<String, Any> = emptyMap()
+  ): KafkaProducer<String, Any> {
     val properties = buildMap {
       putAll(context.options.properties)
       put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.bootstrapServers)
@@ -756,6 +1184,7 @@ class KafkaSystem(
         put(ProducerConfig.INTERCEPTOR_CLASSES_CONFIG, config.interceptorClass)
       }
       putAll(bridgeRuntime.clientProperties)
+      putAll(overrides)
     }
     return KafkaProducer(properties, StringSerializer(), context.options.valueSerializer)
   }
@@ -814,12 +1243,32 @@ class KafkaSystem(
     }
   }
 
+  private fun requireBroker(operation: String) {
+    if (topologyDriver != null) {
+      throw UnsupportedOperationException("$operation() requires a Kafka broker and is not available with KafkaSystemOptions.topology")
+    }
+  }
+
+  private fun cluster(operation: String): StoveKafkaCluster = context.runtime as? StoveKafkaCluster
+    ?: throw UnsupportedOperationException("$operation() requires KafkaSystemOptions.cluster, runtime is ${context.runtime::class}")
+
+  private suspend fun leaderOf(partition: TopicPartition): Int? = describePartition(partition).leader()?.id()
+
+  private suspend fun describePartition(partition: TopicPartition): TopicPartitionInfo = adminClient
+    .describeTopics(listOf(partition.topic()))
+    .allTopicNames()
+    .toCompletionStage()
+    .await()
+    .getValue(partition.topic())
+    .partitions()
+    .first { it.partition() == partition.partition() }
+
   private inline fun withContainerOrWarn(
     operation: String,
     action: (StoveKafkaContainer) -> Unit
   ): KafkaSystem = when (val runtime = context.runtime) {
-    is ProvidedRuntime, is EmbeddedKafkaRuntime -> {
-      logger.warn("$operation() is not supported when using embedded Kafka or a provided instance")
+    is ProvidedRuntime, is EmbeddedKafkaRuntime, is KafkaTopologyRuntime -> {
+      logger.warn("$operation() is not supported when using embedded Kafka, a provided instance or the topology test driver")
       this
     }
 
@@ -828,6 +1277,11 @@ class KafkaSystem(
       this
     }
 
+    is StoveKafkaCluster -> {
+      runtime.brokers.forEach(action)
+      this
+    }
+
     else -> {
       throw UnsupportedOperationException("Unsupported runtime type: ${runtime::class}")
     }
@@ -838,6 +1292,8 @@ class KafkaSystem(
     const val PARTITION_BY_KEY: Int = -1
 
     private const val GRPC_SERVER_DELAY = 500L
+    private val LEADER_POLL_DELAY = 200.milliseconds
+    private val BROKERS_PROBE = LivenessProbe.tcp<KafkaExposedConfiguration> { LivenessProbe.addresses(it.bootstrapServers) }
     private const val GRPC_TIMEOUT_IN_SECONDS = 300L
     private const val CLOSE_TIMEOUT_IN_SECONDS = 5L
     private const val MAX_MESSAGE_SIZE = 1024 * 1024 * 1024
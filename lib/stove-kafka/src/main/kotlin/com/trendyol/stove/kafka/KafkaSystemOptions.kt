@@ -2,11 +2,15 @@ package com.trendyol.stove.kafka
 
 import com.trendyol.stove.database.migrations.*
 import com.trendyol.stove.kafka.intercepting.StoveKafkaBridge
+import com.trendyol.stove.messaging.kafka.KafkaRetention
+import com.trendyol.stove.messaging.kafka.KafkaTopicNamespacing
 import com.trendyol.stove.serialization.StoveSerde
 import com.trendyol.stove.system.abstractions.*
 import com.trendyol.stove.system.annotations.StoveDsl
 import org.apache.kafka.clients.admin.Admin
 import org.apache.kafka.common.serialization.Serializer
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
 
 /**
  * Options for configuring the Kafka system in container or embedded mode.
@@ -33,6 +37,28 @@ open class KafkaSystemOptions(
    * The port of the bridge gRPC server that is used to communicate with the Kafka system.
    */
   open val bridgeGrpcServerPort: Int = stoveKafkaBridgePortDefault.toInt(),
+  /**
+   * When set, Stove-configured [StoveKafkaBridge] instances stop making one blocking unary call per
+   * record. Interceptors only enqueue observations; a background sender streams them to the observer
+   * in batches. `null` (the default) keeps the unary calls.
+   *
+   * @see KafkaBridgeBatching
+   */
+  open val bridgeBatching: KafkaBridgeBatching? = null,
+  /**
+   * Hard cap on the records Stove keeps for assertions. Records owned by completed tests are dropped
+   * as the next test starts; this cap bounds the store regardless, evicting the oldest records first.
+   *
+   * @see KafkaRetention
+   */
+  open val retention: KafkaRetention = KafkaRetention(),
+  /**
+   * Gives topics per-test or per-worker names, created on first use and deleted after the test,
+   * so parallel tests never share a topic. `null` (the default) uses topic names as given.
+   *
+   * @see KafkaTopicNamespacing
+   */
+  open val topicNamespacing: KafkaTopicNamespacing? = null,
   /**
    * The Serde that is used while asserting the messages,
    * serializing while bridging the messages.
@@ -52,6 +78,21 @@ open class KafkaSystemOptions(
    * The options for the Kafka container.
    */
   open val containerOptions: KafkaContainerOptions = KafkaContainerOptions(),
+  /**
+   * When set, Stove starts a multi-broker KRaft cluster built from [containerOptions] instead of a
+   * single container. Ignored for embedded and provided Kafka.
+   *
+   * @see KafkaClusterOptions
+   */
+  open val cluster: KafkaClusterOptions? = null,
+  /**
+   * When set, Stove runs the application's Kafka Streams topology through a `TopologyTestDriver`
+   * instead of starting a broker. Takes precedence over [useEmbeddedKafka], [containerOptions] and
+   * [cluster].
+   *
+   * @see KafkaTopologyOptions
+   */
+  open val topology: KafkaTopologyOptions? = null,
   /**
    * A suspend function to clean up data after tests complete.
    */
@@ -92,6 +133,9 @@ open class KafkaSystemOptions(
      * @param topicSuffixes Suffixes for error and retry topics
      * @param listenPublishedMessagesFromStove If true, the system will listen to published messages
      * @param bridgeGrpcServerPort The port of the bridge gRPC server
+     * @param bridgeBatching Streams bridge observations in batches instead of one unary call per record
+     * @param retention Hard cap on the records kept for assertions
+     * @param topicNamespacing Per-test or per-worker topic names for parallel tests
      * @param serde The Serde used for message serialization
      * @param valueSerializer The Value serializer for messages
      * @param runMigrations Whether to run migrations on the external instance (default: true)
@@ -103,6 +147,9 @@ open class KafkaSystemOptions(
       topicSuffixes: TopicSuffixes = TopicSuffixes(),
       listenPublishedMessagesFromStove: Boolean = false,
       bridgeGrpcServerPort: Int = stoveKafkaBridgePortDefault.toInt(),
+      bridgeBatching: KafkaBridgeBatching? = null,
+      retention: KafkaRetention = KafkaRetention(),
+      topicNamespacing: KafkaTopicNamespacing? = null,
       serde: StoveSerde<Any, ByteArray> = stoveSerdeRef,
       valueSerializer: Serializer<Any> = StoveKafkaValueSerializer(serde),
       properties: Map<String, Any> = emptyMap(),
@@ -117,6 +164,9 @@ open class KafkaSystemOptions(
       topicSuffixes = topicSuffixes,
       listenPublishedMessagesFromStove = listenPublishedMessagesFromStove,
       bridgeGrpcServerPort = bridgeGrpcServerPort,
+      bridgeBatching = bridgeBatching,
+      retention = retention,
+      topicNamespacing = topicNamespacing,
       serde = serde,
       valueSerializer = valueSerializer,
       properties = properties,
@@ -140,6 +190,9 @@ class ProvidedKafkaSystemOptions(
   topicSuffixes: TopicSuffixes = TopicSuffixes(),
   listenPublishedMessagesFromStove: Boolean = false,
   bridgeGrpcServerPort: Int = stoveKafkaBridgePortDefault.toInt(),
+  bridgeBatching: KafkaBridgeBatching? = null,
+  retention: KafkaRetention = KafkaRetention(),
+  topicNamespacing: KafkaTopicNamespacing? = null,
   serde: StoveSerde<Any, ByteArray> = stoveSerdeRef,
   valueSerializer: Serializer<Any> = StoveKafkaValueSerializer(serde),
   properties: Map<String, Any> = emptyMap(),
@@ -154,6 +207,9 @@ class ProvidedKafkaSystemOptions(
   topicSuffixes = topicSuffixes,
   listenPublishedMessagesFromStove = listenPublishedMessagesFromStove,
   bridgeGrpcServerPort = bridgeGrpcServerPort,
+  bridgeBatching = bridgeBatching,
+  retention = retention,
+  topicNamespacing = topicNamespacing,
   serde = serde,
   valueSerializer = valueSerializer,
   containerOptions = KafkaContainerOptions(),
@@ -204,3 +260,30 @@ data class TopicSuffixes(
 
   fun isErrorTopic(topic: String): Boolean = error.any { topic.endsWith(it, ignoreCase = true) }
 }
+
+/**
+ * Batching settings for the streaming [StoveKafkaBridge] mode.
+ *
+ * Kafka callbacks enqueue observations into a bounded queue and return immediately. A single
+ * background sender per interceptor drains the queue in order, coalescing up to [maxBatchSize]
+ * observations or whatever arrived within [linger], and streams the batches through the
+ * `onObservedMessages` RPC. When the queue is full the callback waits for space rather than
+ * dropping an observation that an assertion may depend on.
+ */
+data class KafkaBridgeBatching(
+  val maxBatchSize: Int = DEFAULT_MAX_BATCH_SIZE,
+  val linger: Duration = DEFAULT_LINGER,
+  val queueCapacity: Int = DEFAULT_QUEUE_CAPACITY
+) {
+  init {
+    require(maxBatchSize > 0) { "maxBatchSize must be greater than zero" }
+    require(!linger.isNegative()) { "linger must not be negative" }
+    require(queueCapacity >= maxBatchSize) { "queueCapacity must be at least maxBatchSize" }
+  }
+
+  companion object {
+    const val DEFAULT_MAX_BATCH_SIZE: Int = 500
+    const val DEFAULT_QUEUE_CAPACITY: Int = 65_536
+    val DEFAULT_LINGER: Duration = 5.milliseconds
+  }
+}
@@ -0,0 +1,123 @@
+package com.trendyol.stove.kafka
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.*
+import org.apache.kafka.clients.consumer.*
+import org.apache.kafka.common.KafkaException
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.errors.WakeupException
+import org.slf4j.*
+import kotlin.time.*
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * Long-lived reader of one topic behind [KafkaSystem.topicRecords].
+ *
+ * The consumer assigns every partition itself instead of joining a group, so there is no group
+ * coordination or rebalance, and reads each partition from the beginning. Records are kept in
+ * memory, at most [maxRecords] with the oldest evicted first, and [records] replays them before
+ * following new ones. Partitions created after the reader started are picked up on the next refresh.
+ *
+ * The consumer is only touched by the poll coroutine; [close] wakes it up and waits for it to finish.
+ * When polling fails, the reader is [failed]: collectors get the records read so far and then the failure,
+ * and the owner is expected to replace the reader.
+ */
+internal class KafkaTopicReader<K : Any, V : Any>(
+  private val topic: String,
+  private val consumer: Consumer<K, V>,
+  private val maxRecords: Int
+) : AutoCloseable {
+  private val logger: Logger = LoggerFactory.getLogger(KafkaTopicReader::class.java)
+  private val lock = Any()
+  private val buffer = ArrayDeque<ConsumerRecord<K, V>>()
+  private var evicted = 0L
+  private val version = MutableStateFlow(0L)
+
+  @Volatile
+  private var failure: KafkaException? = null
+  private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO + CoroutineName("stove-kafka-topic-reader-$topic"))
+  private val poller: Job = scope.launch { poll() }
+
+  /** Whether polling stopped on an error; a failed reader reads nothing more. */
+  val failed: Boolean
+    get() = failure != null
+
+  /** Every record read so far, then each new one as it is read. */
+  fun records(): Flow<ConsumerRecord<K, V>> = flow {
+    var next = 0L
+    version.collect {
+      val batch = synchronized(lock) {
+        val start = maxOf(next, evicted)
+        next = evicted + buffer.size
+        (start until next).map { buffer[(it - evicted).toInt()] }
+      }
+      batch.forEach { emit(it) }
+      failure?.let { throw IllegalStateException("Topic reader for '$topic' stopped reading", it) }
+    }
+  }
+
+  private suspend fun poll() {
+    var assigned = emptySet<TopicPartition>()
+    var refreshedAt = TimeSource.Monotonic.markNow()
+    try {
+      while (currentCoroutineContext().isActive) {
+        if (assigned.isEmpty() || refreshedAt.elapsedNow() >= PARTITION_REFRESH) {
+          assigned = assign(assigned)
+          refreshedAt = TimeSource.Monotonic.markNow()
+        }
+        if (assigned.isEmpty()) {
+          delay(POLL_TIMEOUT)
+          continue
+        }
+        val polled = consumer.poll(POLL_TIMEOUT.toJavaDuration())
+        if (!polled.isEmpty) append(polled)
+      }
+    } catch (_: WakeupException) {
+      logger.debug("Topic reader for '{}' was woken up to close", topic)
+    } catch (error: KafkaException) {
+      logger.warn("Topic reader for '{}' stopped reading", topic, error)
+      failure = error
+      version.update { it + 1 }
+    } finally {
+      consumer.close()
+    }
+  }
+
+  private fun assign(assigned: Set<TopicPartition>): Set<TopicPartition> {
+    val partitions = consumer
+      .partitionsFor(topic)
+      .orEmpty()
+      .map { TopicPartition(it.topic(), it.partition()) }
+      .toSet()
+    if (partitions == assigned) return assigned
+
+    consumer.assign(partitions)
+    consumer.seekToBeginning(partitions - assigned)
+    return partitions
+  }
+
+  private fun append(polled: ConsumerRecords<K, V>) {
+    synchronized(lock) {
+      polled.forEach { buffer.addLast(it) }
+      while (buffer.size > maxRecords) {
+        buffer.removeFirst()
+        evicted++
+      }
+    }
+    version.update { it + 1 }
+  }
+
+  override fun close() {
+    consumer.wakeup()
+    poller.cancel()
+    runBlocking { withTimeoutOrNull(CLOSE_TIMEOUT) { poller.join() } }
+    scope.cancel()
+  }
+
+  companion object {
+    private val POLL_TIMEOUT = 100.milliseconds
+    private val PARTITION_REFRESH = 1.seconds
+    private val CLOSE_TIMEOUT = 5.seconds
+  }
+}
@@ -0,0 +1,164 @@
+package com.trendyol.stove.kafka
+
+import com.trendyol.stove.kafka.intercepting.KafkaRecorder
+import com.trendyol.stove.system.abstractions.SystemRuntime
+import kotlinx.coroutines.sync.*
+import okio.ByteString.Companion.toByteString
+import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.common.header.Headers
+import org.apache.kafka.common.serialization.*
+import org.apache.kafka.streams.*
+import org.apache.kafka.streams.test.TestRecord
+import java.nio.file.Files
+import java.time.Instant
+import java.util.*
+import kotlin.time.Duration
+import kotlin.time.toJavaDuration
+
+/**
+ * Runs the application's Kafka Streams [Topology] in-process through Kafka's [TopologyTestDriver]
+ * instead of against a broker.
+ *
+ * Records published from the test are piped straight into the topology, which processes them
+ * synchronously, and whatever it writes to its output topics is recorded as published right after.
+ * `publish`, `shouldBeConsumed` and `shouldBePublished` work as with a broker, without round trips or
+ * commit intervals. Time only moves through [KafkaSystem.advanceTime], so punctuations and windows
+ * behave the same on every run.
+ *
+ * [topology] is called on first use, after the application has started, so it can come from the
+ * application, e.g. `{ context.getBean<StreamsBuilder>().build() }`. The application must not start
+ * Kafka Streams itself; with Spring, set `spring.kafka.streams.auto-startup=false`.
+ *
+ * Needs `org.apache.kafka:kafka-streams-test-utils` on the test classpath. Operations that need a
+ * broker, such as admin operations, lag, quotas and ad-hoc consumers, are not available.
+ *
+ * @param properties Streams configuration for the driver, such as the default serdes
+ * @param startTime initial wall-clock time, also the timestamp of piped records until time advances
+ */
+data class KafkaTopologyOptions(
+  val topology: () -> Topology,
+  val properties: Map<String, Any> = emptyMap(),
+  val startTime: Instant = Instant.EPOCH
+)
+
+/** The runtime behind [KafkaTopologyOptions]. There is no broker; the bootstrap servers are a placeholder. */
+class KafkaTopologyRuntime(
+  val options: KafkaTopologyOptions
+) : SystemRuntime {
+  companion object {
+    const val BOOTSTRAP_SERVERS: String = "stove-topology-test-driver:9092"
+  }
+}
+
+/**
+ * Drives one [TopologyTestDriver] for a [KafkaSystem] and records its traffic through [recorder]
+ * the way the bridge interceptors would: piped records as consumed and committed, output records as
+ * published. The driver is not thread-safe, so every call is serialized by [mutex].
+ */
+internal class KafkaTopologyDriver(
+  private val options: KafkaTopologyOptions,
+  private val recorder: KafkaRecorder,
+  private val valueSerializer: Serializer<Any>,
+  private val recordStovePublishes: Boolean
+) : AutoCloseable {
+  private val mutex = Mutex()
+  private val applicationId = options.properties[StreamsConfig.APPLICATION_ID_CONFIG]?.toString() ?: DEFAULT_APPLICATION_ID
+  private val driver = lazy { TopologyTestDriver(options.topology(), driverProperties(), options.startTime) }
+  private val inputTopics = mutableMapOf<String, TestInputTopic<String, ByteArray>>()
+  private val outputTopics = mutableMapOf<String, TestOutputTopic<ByteArray, ByteArray>>()
+  private val inputOffsets = mutableMapOf<String, Long>()
+  private var now: Instant = options.startTime
+
+  /** Pipes [record] into the topology at the current time and returns its serialized size. */
+  suspend fun pipe(record: ProducerRecord<String, Any>): Int = mutex.withLock {
+    val topic = record.topic()
+    val value = record.value()?.let { valueSerializer.serialize(topic, record.headers(), it) }
+    val payload = (value ?: byteArrayOf()).toByteString()
+    val headers = record.headers().textHeaders()
+    val offset = inputOffsets.getOrDefault(topic, 0L)
+    inputOffsets[topic] = offset + 1
+
+    if (recordStovePublishes) {
+      recorder.onMessagePublished(
+        PublishedMessage(id = newId(), message = payload, topic = topic, key = record.key().toString(), headers = headers)
+      )
+    }
+    recorder.onMessageConsumed(
+      ConsumedMessage(
+        id = newId(),
+        message = payload,
+        topic = topic,
+        partition = PARTITION,
+        offset = offset,
+        key = record.key().toString(),
+        headers = headers
+      )
+    )
+    inputTopic(topic).pipeInput(TestRecord(record.key(), value, record.headers(), now))
+    recorder.onMessageCommitted(CommittedMessage(id = newId(), topic = topic, partition = PARTITION, offset = offset + 1))
+    drain()
+    (record.key()?.toByteArray()?.size ?: 0) + (value?.size ?: 0)
+  }
+
+  /** Moves wall-clock time forward by [by], firing due punctuations, and returns the new time. */
+  suspend fun advanceTime(by: Duration): Instant = mutex.withLock {
+    driver.value.advanceWallClockTime(by.toJavaDuration())
+    now = now.plus(by.toJavaDuration())
+    drain()
+    now
+  }
+
+  override fun close() {
+    if (driver.isInitialized()) driver.value.close()
+  }
+
+  private fun drain() {
+    driver.value
+      .producedTopicNames()
+      .filterNot(::isInternal)
+      .forEach { topic ->
+        outputTopic(topic).readRecordsToList().forEach { output ->
+          recorder.onMessagePublished(
+            PublishedMessage(
+              id = newId(),
+              message = (output.value() ?: byteArrayOf()).toByteString(),
+              topic = topic,
+              key = output.key()?.toString(Charsets.UTF_8) ?: "null",
+              headers = output.headers().textHeaders()
+            )
+          )
+        }
+      }
+  }
+
+  private fun inputTopic(topic: String): TestInputTopic<String, ByteArray> = inputTopics.getOrPut(topic) {
+    driver.value.createInputTopic(topic, StringSerializer(), ByteArraySerializer())
+  }
+
+  private fun outputTopic(topic: String): TestOutputTopic<ByteArray, ByteArray> = outputTopics.getOrPut(topic) {
+    driver.value.createOutputTopic(topic, ByteArrayDeserializer(), ByteArrayDeserializer())
+  }
+
+  // Changelog and repartition topics are the topology's own plumbing, not its output.
+  private fun isInternal(topic: String): Boolean =
+    topic.startsWith("$applicationId-") && (topic.endsWith("-changelog") || topic.endsWith("-repartition"))
+
+  private fun driverProperties(): Properties = Properties().apply {
+    put(StreamsConfig.APPLICATION_ID_CONFIG, DEFAULT_APPLICATION_ID)
+    put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, KafkaTopologyRuntime.BOOTSTRAP_SERVERS)
+    // Parallel test JVMs would otherwise share the default state directory.
+    put(StreamsConfig.STATE_DIR_CONFIG, Files.createTempDirectory("stove-topology").toString())
+    putAll(options.properties)
+  }
+
+  private fun Headers.textHeaders(): Map<String, String> = associate { header ->
+    header.key() to (header.value()?.toString(Charsets.UTF_8) ?: "")
+  }
+
+  private fun newId(): String = UUID.randomUUID().toString()
+
+  private companion object {
+    const val DEFAULT_APPLICATION_ID = "stove-topology-test-driver"
+    const val PARTITION = 0
+  }
+}
@@ -0,0 +1,188 @@
+package com.trendyol.stove.kafka
+
+import org.apache.kafka.common.header.Headers
+import org.apache.kafka.common.serialization.*
+import org.apache.kafka.common.utils.Utils
+import java.util.IdentityHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Wraps the application's value serializer so [com.trendyol.stove.kafka.intercepting.StoveKafkaBridge]
+ * observes the exact bytes that went over the wire instead of serializing the value a second time
+ * with Stove's serde.
+ *
+ * Use it either with a delegate instance, or by class name with [VALUE_DELEGATE_CONFIG] /
+ * [KEY_DELEGATE_CONFIG] naming the real serializer. Kafka calls `onSend` before serializing, so the
+ * bridge holds the published observation until this serializer runs on the same thread. The bridge
+ * does that only when this class is the configured `value.serializer` or [CAPTURE_CONFIG] is `true`;
+ * set the latter when the producer is built with serializer instances rather than class names.
+ */
+class StoveKafkaWireSerializer<T : Any>(
+  private var delegate: Serializer<T>? = null
+) : Serializer<T> {
+  private var isKey: Boolean = false
+
+  override fun configure(
+    configs: MutableMap<String, *>,
+    isKey: Boolean
+  ) {
+    this.isKey = isKey
+    delegate = (delegate ?: instantiateDelegate(configs, if (isKey) KEY_DELEGATE_CONFIG else VALUE_DELEGATE_CONFIG))
+      .also { it.configure(configs, isKey) }
+  }
+
+  override fun serialize(
+    topic: String,
+    data: T?
+  ): ByteArray? = serialize(topic, null, data)
+
+  override fun serialize(
+    topic: String,
+    headers: Headers?,
+    data: T?
+  ): ByteArray? = delegate().serialize(topic, headers, data).also { bytes ->
+    if (!isKey && data != null && bytes != null) KafkaWireBytes.onSerialized(data, bytes)
+  }
+
+  override fun close() {
+    delegate?.close()
+  }
+
+  private fun delegate(): Serializer<T> = checkNotNull(delegate) {
+    "StoveKafkaWireSerializer has no delegate; pass one or configure $VALUE_DELEGATE_CONFIG"
+  }
+
+  companion object {
+    const val KEY_DELEGATE_CONFIG: String = "stove.kafka.wire.key.delegate"
+    const val VALUE_DELEGATE_CONFIG: String = "stove.kafka.wire.value.delegate"
+    const val CAPTURE_CONFIG: String = "stove.kafka.bridge.wire.bytes"
+  }
+}
+
+/**
+ * Wraps the application's value deserializer and stashes the bytes each value was decoded from, so
+ * [com.trendyol.stove.kafka.intercepting.StoveKafkaBridge] forwards them on `onConsume` instead of
+ * re-serializing the decoded object. Configure the delegate as for [StoveKafkaWireSerializer].
+ */
+class StoveKafkaWireDeserializer<T : Any>(
+  private var delegate: Deserializer<T>? = null
+) : Deserializer<T> {
+  private var isKey: Boolean = false
+
+  override fun configure(
+    configs: MutableMap<String, *>,
+    isKey: Boolean
+  ) {
+    this.isKey = isKey
+    val key = if (isKey) StoveKafkaWireSerializer.KEY_DELEGATE_CONFIG else StoveKafkaWireSerializer.VALUE_DELEGATE_CONFIG
+    delegate = (delegate ?: instantiateDelegate(configs, key)).also { it.configure(configs, isKey) }
+  }
+
+  override fun deserialize(
+    topic: String,
+    data: ByteArray?
+  ): T? = deserialize(topic, null, data)
+
+  override fun deserialize(
+    topic: String,
+    headers: Headers?,
+    data: ByteArray?
+  ): T? = delegate().deserialize(topic, headers, data).also { value ->
+    if (!isKey && value != null && data != null) KafkaWireBytes.onDeserialized(value, data)
+  }
+
+  override fun close() {
+    delegate?.close()
+  }
+
+  private fun delegate(): Deserializer<T> = checkNotNull(delegate) {
+    "StoveKafkaWireDeserializer has no delegate; pass one or configure ${StoveKafkaWireSerializer.VALUE_DELEGATE_CONFIG}"
+  }
+}
+
+@Suppress("UNCHECKED_CAST")
+private fun <D> instantiateDelegate(
+  configs: Map<String, *>,
+  key: String
+): D {
+  val configured = requireNotNull(configs[key]) { "$key must name the serializer or deserializer to wrap" }
+  val type = when (configured) {
+    is Class<*> -> configured
+    else -> Class.forName(configured.toString(), true, Utils.getContextOrKafkaClassLoader())
+  }
+  return Utils.newInstance(type) as D
+}
+
+/**
+ * Same-thread hand-off of wire bytes between the wrapping serde and the bridge.
+ *
+ * Kafka serializes a produced value right after `ProducerInterceptor.onSend`, and deserializes a
+ * poll's records right before `ConsumerInterceptor.onConsume`, on the calling thread in both cases.
+ * Values are matched by identity, so no equality or hashing of application objects is involved.
+ *
+ * Pending publishes are kept per thread in one shared map rather than in thread-locals, so a bridge
+ * that closes on another thread can still [flush][flushPending] the ones it left behind.
+ */
+internal object KafkaWireBytes {
+  /** Guards against unbounded growth when the deserializer is used without the bridge. */
+  private const val MAX_STASHED_PER_THREAD = 10_000
+
+  private class PendingPublish(
+    val owner: Any,
+    val value: Any,
+    val fallback: () -> ByteArray,
+    val complete: (ByteArray) -> Unit
+  ) {
+    fun flush() = complete(fallback())
+  }
+
+  private val pendingPublish = ConcurrentHashMap<Thread, PendingPublish>()
+  private val deserialized = ThreadLocal.withInitial { IdentityHashMap<Any, ByteArray>() }
+
+  /**
+   * Holds a published observation of [owner] until [onSerialized] sees [value]. A previous observation
+   * still pending on this thread (its send failed before serialization) is completed with [fallback] bytes.
+   */
+  fun awaitSerialized(
+    owner: Any,
+    value: Any,
+    fallback: () -> ByteArray,
+    complete: (ByteArray) -> Unit
+  ) {
+    val thread = Thread.currentThread()
+    pendingPublish.remove(thread)?.flush()
+    pendingPublish[thread] = PendingPublish(owner, value, fallback, complete)
+  }
+
+  fun onSerialized(
+    value: Any,
+    bytes: ByteArray
+  ) {
+    val thread = Thread.currentThread()
+    val pending = pendingPublish[thread] ?: return
+    if (pending.value !== value || !pendingPublish.remove(thread, pending)) return
+    pending.complete(bytes)
+  }
+
+  /** Completes, with fallback bytes, every observation [owner] still holds on any thread. */
+  fun flushPending(owner: Any) {
+    pendingPublish.entries
+      .filter { it.value.owner === owner }
+      .forEach { (thread, pending) -> if (pendingPublish.remove(thread, pending)) pending.flush() }
+  }
+
+  fun onDeserialized(
+    value: Any,
+    bytes: ByteArray
+  ) {
+    val stash = deserialized.get()
+    if (stash.size >= MAX_STASHED_PER_THREAD) stash.clear()
+    stash[value] = bytes
+  }
+
+  fun takeDeserialized(value: Any): ByteArray? = deserialized.get().remove(value)
+
+  fun clearDeserialized() {
+    deserialized.get().clear()
+  }
+}
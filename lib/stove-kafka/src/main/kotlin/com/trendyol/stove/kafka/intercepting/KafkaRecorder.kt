@@ -7,7 +7,7 @@ import org.slf4j.*
  * Write surface of the Kafka observer: records what the bridge reports into the [MessageStore],
  * classifying consumed records into consumed/retried/failed by the application's topic suffixes.
  *
- * Transports (the gRPC observer server here, other interceptors elsewhere) depend on this class
+ * Transports (the gRPC observer server, the same-JVM [StoveKafkaBridge] path, other interceptors) depend on this class
  * only — never on the assertion engine ([KafkaAssertions]) — and the store's raw record methods
  * stay internal behind it.
  */
@@ -50,4 +50,12 @@ class KafkaRecorder(
     store.record(record)
     logger.info("Recorded Acknowledged Message:{}", record)
   }
+
+  /** Dispatches one observation from the streaming or same-JVM bridge paths to the matching callback. */
+  internal fun onObservedMessage(message: ObservedMessage) {
+    message.consumed?.let(::onMessageConsumed)
+    message.published?.let(::onMessagePublished)
+    message.committed?.let(::onMessageCommitted)
+    message.acknowledged?.let(::onMessageAcknowledged)
+  }
 }
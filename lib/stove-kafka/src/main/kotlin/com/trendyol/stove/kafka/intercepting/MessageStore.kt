@@ -5,6 +5,8 @@ import com.trendyol.stove.messaging.MessageMetadata
 import com.trendyol.stove.messaging.kafka.*
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.flow.*
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
 
 sealed interface StoveMessageEvent {
   data class Consumed(val message: ConsumedMessage) : StoveMessageEvent
@@ -20,9 +22,16 @@ sealed interface StoveMessageEvent {
   data class Acknowledged(val message: AcknowledgedMessage) : StoveMessageEvent
 }
 
-/** Standalone Kafka facade over the transport-neutral message store. */
-class MessageStore {
-  internal val core = KafkaMessageStore<DefaultKafkaRecord>()
+/**
+ * Standalone Kafka facade over the transport-neutral message store.
+ *
+ * Consumed and published values are held once, by the core record's payload; the stored Wire message
+ * keeps an empty `message`, which is filled back in when a message is read from this store.
+ */
+class MessageStore(
+  retention: KafkaRetention = KafkaRetention()
+) {
+  internal val core = KafkaMessageStore<DefaultKafkaRecord>(retention)
 
   private val mutableEvents = MutableSharedFlow<StoveMessageEvent>(
     extraBufferCapacity = EVENT_BUFFER_CAPACITY,
@@ -32,15 +41,15 @@ class MessageStore {
   val version: StateFlow<Long> = core.version
   val events: SharedFlow<StoveMessageEvent> = mutableEvents.asSharedFlow()
 
-  fun consumedRecords(): Flow<ConsumedMessage> = core.consumedRecords().mapNotNull { it.source as? ConsumedMessage }
+  fun consumedRecords(): Flow<ConsumedMessage> = core.consumedRecords().mapNotNull { it.restored() as? ConsumedMessage }
 
-  fun publishedRecords(): Flow<PublishedMessage> = core.publishedRecords().mapNotNull { it.source as? PublishedMessage }
+  fun publishedRecords(): Flow<PublishedMessage> = core.publishedRecords().mapNotNull { it.restored() as? PublishedMessage }
 
-  fun committedRecords(): Flow<CommittedMessage> = core.committedRecords().mapNotNull { it.source as? CommittedMessage }
+  fun committedRecords(): Flow<CommittedMessage> = core.committedRecords().mapNotNull { it.restored() as? CommittedMessage }
 
-  fun retriedRecords(): Flow<ConsumedMessage> = core.retriedRecords().mapNotNull { it.source as? ConsumedMessage }
+  fun retriedRecords(): Flow<ConsumedMessage> = core.retriedRecords().mapNotNull { it.restored() as? ConsumedMessage }
 
-  fun failedRecords(): Flow<ConsumedMessage> = core.failedRecords().mapNotNull { it.source as? ConsumedMessage }
+  fun failedRecords(): Flow<ConsumedMessage> = core.failedRecords().mapNotNull { it.restored() as? ConsumedMessage }
 
   internal fun record(message: ConsumedMessage) {
     core.recordConsumed(message.toRecord())
@@ -82,6 +91,18 @@ class MessageStore {
 
   fun retriedMessages(): Collection<ConsumedMessage> = core.retriedMessages().sources()
 
+  internal fun consumedMessages(testId: String?): List<ConsumedMessage> = core.consumedMessages(testId).sources()
+
+  internal fun publishedMessages(testId: String?): List<PublishedMessage> = core.publishedMessages(testId).sources()
+
+  internal fun failedMessages(testId: String?): List<ConsumedMessage> = core.failedMessages(testId).sources()
+
+  internal fun retriedMessages(testId: String?): List<ConsumedMessage> = core.retriedMessages(testId).sources()
+
+  /** Commits on the topic-partitions the test's consumed records came from. */
+  internal fun committedMessagesFor(testId: String?): List<CommittedMessage> =
+    core.committedMessagesFor(core.consumedMessages(testId)).sources()
+
   internal fun isCommitted(
     topic: String,
     offset: Long,
@@ -93,22 +114,28 @@ class MessageStore {
   override fun toString(): String = core.toString()
 
   private inline fun <reified T : Any> Collection<DefaultKafkaRecord>.sources(): List<T> =
-    mapNotNull { it.source as? T }
+    mapNotNull { it.restored() as? T }
+
+  private fun DefaultKafkaRecord.restored(): Any? = when (val source = source) {
+    is ConsumedMessage -> source.copy(message = value.toByteString())
+    is PublishedMessage -> source.copy(message = value.toByteString())
+    else -> source
+  }
 
   private fun ConsumedMessage.toRecord() = DefaultKafkaRecord(
     id = id,
-    value = message.toByteArray(),
+    payload = core.payloadOf(message.asByteBuffer()),
     metadata = metadata(),
     partition = partition,
     offset = offset,
-    source = this
+    source = copy(message = ByteString.EMPTY)
   )
 
   private fun PublishedMessage.toRecord() = DefaultKafkaRecord(
     id = id,
-    value = message.toByteArray(),
+    payload = core.payloadOf(message.asByteBuffer()),
     metadata = metadata(),
-    source = this
+    source = copy(message = ByteString.EMPTY)
   )
 
   private fun CommittedMessage.toRecord() = DefaultKafkaRecord(
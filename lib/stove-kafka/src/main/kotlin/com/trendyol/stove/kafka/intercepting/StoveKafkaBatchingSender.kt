@@ -0,0 +1,129 @@
+@file:Suppress("TooGenericExceptionCaught")
+
+package com.trendyol.stove.kafka.intercepting
+
+import com.trendyol.stove.kafka.*
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.*
+import kotlinx.coroutines.selects.*
+import org.slf4j.*
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TimeSource
+
+/**
+ * Background sender behind the streaming [StoveKafkaBridge] mode.
+ *
+ * Kafka callbacks only [enqueue]; one coroutine drains the queue in order and streams batches
+ * through `onObservedMessages`, so the observer records them in the order the bridge saw them.
+ *
+ * The observer replies once, when a stream ends, so a stream carries whatever is queued (at most
+ * [BATCHES_PER_STREAM] batches) and then ends to collect that reply. Every batch sent on a stream is
+ * kept until the reply arrives; when the stream fails, all of them are sent again on the next one,
+ * so an observer restart loses nothing. Delivery is at-least-once: if the observer recorded part of
+ * a failed stream, those observations are recorded twice.
+ */
+internal class StoveKafkaBatchingSender(
+  private val batching: KafkaBridgeBatching,
+  private val scope: CoroutineScope,
+  private val client: () -> StoveKafkaObserverServiceClient
+) : AutoCloseable {
+  private val logger: Logger = LoggerFactory.getLogger(StoveKafkaBatchingSender::class.java)
+  private val queue = Channel<ObservedMessage>(batching.queueCapacity)
+  private val backpressureLogged = AtomicBoolean(false)
+  private val sender: Job = scope.launch { forward() }
+
+  /**
+   * Non-blocking unless the queue is full. A full queue means the observer is behind; waiting here
+   * slows the application down instead of losing an observation an assertion may be waiting for.
+   */
+  fun enqueue(message: ObservedMessage) {
+    if (queue.trySend(message).isSuccess) return
+    if (backpressureLogged.compareAndSet(false, true)) {
+      logger.warn("Stove Kafka bridge queue is full ({} observations); Kafka callbacks now wait for the sender", batching.queueCapacity)
+    }
+    runBlocking {
+      try {
+        queue.send(message)
+      } catch (_: ClosedSendChannelException) {
+        logger.debug("Dropping Kafka observation because the bridge is closed: {}", message)
+      }
+    }
+  }
+
+  /** Flushes every queued observation, bounded by [timeout], before the interceptor goes away. */
+  fun close(timeout: Duration) {
+    queue.close()
+    runBlocking { withTimeoutOrNull(timeout) { sender.join() } }
+    sender.cancel()
+  }
+
+  override fun close() = close(DRAIN_TIMEOUT)
+
+  @OptIn(ExperimentalCoroutinesApi::class)
+  private suspend fun forward() {
+    val unacknowledged = ArrayList<ObservedMessageBatch>()
+    while (true) {
+      if (unacknowledged.isEmpty()) {
+        unacknowledged += queue.receiveBatch(batching.maxBatchSize, batching.linger) ?: return
+      }
+      try {
+        supervisorScope {
+          val (requests, responses) = client().onObservedMessages().executeIn(this)
+          unacknowledged.forEach { requests.send(it) }
+          while (unacknowledged.size < BATCHES_PER_STREAM && !queue.isEmpty) {
+            val batch = queue.receiveBatch(batching.maxBatchSize, batching.linger) ?: break
+            // Kept before sending: a send that fails half way must still be resent.
+            unacknowledged += batch
+            requests.send(batch)
+          }
+          requests.close()
+          responses.receive()
+        }
+        unacknowledged.clear()
+      } catch (error: Exception) {
+        // A failed call may surface as a cancelled request channel; only our own cancellation stops the sender.
+        currentCoroutineContext().ensureActive()
+        logger.warn("Stove Kafka observer stream failed, resending {} unacknowledged batches: {}", unacknowledged.size, error.message)
+        delay(RECONNECT_BACKOFF)
+      }
+    }
+  }
+
+  companion object {
+    private val DRAIN_TIMEOUT = 30.seconds
+    private val RECONNECT_BACKOFF = 100.milliseconds
+    internal const val BATCHES_PER_STREAM = 64
+  }
+}
+
+/**
+ * Waits for the first observation, then coalesces whatever else is already queued or arrives within
+ * [linger], up to [maxBatchSize]. Returns `null` once the channel is closed and drained.
+ *
+ * `select` with `onTimeout` either receives or times out, so no element is lost to the linger deadline.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+internal suspend fun ReceiveChannel<ObservedMessage>.receiveBatch(
+  maxBatchSize: Int,
+  linger: Duration
+): ObservedMessageBatch? {
+  val first = receiveCatching().getOrNull() ?: return null
+  val messages = ArrayList<ObservedMessage>(maxBatchSize).apply { add(first) }
+  while (messages.size < maxBatchSize) {
+    messages += tryReceive().getOrNull() ?: break
+  }
+  val deadline = TimeSource.Monotonic.markNow() + linger
+  while (messages.size < maxBatchSize) {
+    val remaining = -deadline.elapsedNow()
+    if (!remaining.isPositive()) break
+    val next = select {
+      onReceiveCatching { it.getOrNull() }
+      onTimeout(remaining) { null }
+    } ?: break
+    messages += next
+  }
+  return ObservedMessageBatch(messages = messages)
+}
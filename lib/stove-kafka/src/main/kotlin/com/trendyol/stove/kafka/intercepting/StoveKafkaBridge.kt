@@ -12,7 +12,16 @@ import org.slf4j.Logger
 import java.util.*
 
 /**
- * Kafka client interceptor that forwards observed messages to Stove's unary observer service.
+ * Kafka client interceptor that forwards observed messages to Stove's observer service.
+ *
+ * When the configured bridge id belongs to a [KafkaSystem] in this JVM (the application runs in the
+ * test process), observations go straight to that system's [KafkaRecorder] and never touch gRPC.
+ * Otherwise every observation is a blocking unary call. When the client properties carry
+ * [KafkaBridgeConfig.BRIDGE_BATCH_SIZE_CONFIG], observations are queued and streamed in batches by
+ * [StoveKafkaBatchingSender] instead, so Kafka callbacks no longer wait on a round-trip.
+ *
+ * Payloads are re-serialized with Stove's serde unless the application wraps its serde with
+ * [StoveKafkaWireSerializer] / [StoveKafkaWireDeserializer], in which case the exact wire bytes are forwarded.
  *
  * The service contract is shared with the published Go bridge, so these calls intentionally use
  * the original message DTOs and RPC names.
@@ -28,6 +37,9 @@ class StoveKafkaBridge<K, V> :
   private val clientHandle = lazy { startGrpcClient() }
   private val client: StoveKafkaObserverServiceClient
     get() = clientHandle.value.client
+  private var batchingSender: Lazy<StoveKafkaBatchingSender>? = null
+  private var bridgeId: String? = null
+  private var captureWireBytes: Boolean = false
 
   override fun configure(configs: MutableMap<String, *>) {
     bridgePort = configs[KafkaBridgeConfig.BRIDGE_PORT_CONFIG]
@@ -36,46 +48,77 @@ class StoveKafkaBridge<K, V> :
       ?: System.getenv(STOVE_KAFKA_BRIDGE_PORT)
       ?: System.getProperty(STOVE_KAFKA_BRIDGE_PORT)
       ?: stoveKafkaBridgePortDefault
-    val bridgeId = configs[KafkaBridgeConfig.BRIDGE_ID_CONFIG]
+    bridgeId = configs[KafkaBridgeConfig.BRIDGE_ID_CONFIG]
       ?.toString()
       ?.takeIf(String::isNotBlank)
     serde = bridgeId?.let(KafkaBridgeRuntimeRegistry::serde) ?: stoveSerdeRef
+    captureWireBytes = configs[StoveKafkaWireSerializer.CAPTURE_CONFIG]?.toString()?.toBoolean() == true ||
+      configs[ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG].isWireSerializer()
+    batchingSender = KafkaBridgeConfig.batching(configs)?.let { batching ->
+      lazy { StoveKafkaBatchingSender(batching, scope, { client }) }
+    }
   }
 
-  override fun onSend(record: ProducerRecord<K, V>): ProducerRecord<K, V> =
-    record.also { send(it.toPublishedMessage()) }
+  override fun onSend(record: ProducerRecord<K, V>): ProducerRecord<K, V> = record.also {
+    val value = record.value()
+    if (captureWireBytes && value != null && value !is ByteArray) {
+      // The serializer runs right after this callback; publish once it has produced the wire bytes.
+      KafkaWireBytes.awaitSerialized(this, value, fallback = { serialize(value) }) { bytes ->
+        send(ObservedMessage(published = record.toPublishedMessage(bytes)))
+      }
+    } else {
+      send(ObservedMessage(published = record.toPublishedMessage(serialize(value))))
+    }
+  }
 
-  override fun onConsume(records: ConsumerRecords<K, V>): ConsumerRecords<K, V> =
-    records.also { records.forEach { record -> send(record.toConsumedMessage()) } }
+  override fun onConsume(records: ConsumerRecords<K, V>): ConsumerRecords<K, V> = records.also {
+    try {
+      records.forEach { record -> send(ObservedMessage(consumed = record.toConsumedMessage(record.wireBytes()))) }
+    } finally {
+      KafkaWireBytes.clearDeserialized()
+    }
+  }
 
   override fun onCommit(offsets: MutableMap<TopicPartition, OffsetAndMetadata>) {
-    offsets.forEach { (topicPartition, offset) -> send(topicPartition.toCommittedMessage(offset)) }
+    offsets.forEach { (topicPartition, offset) -> send(ObservedMessage(committed = topicPartition.toCommittedMessage(offset))) }
   }
 
   override fun onAcknowledgement(
     metadata: RecordMetadata?,
     exception: Exception?
-  ) = send(metadata.toAcknowledgedMessage(exception))
+  ) = send(ObservedMessage(acknowledged = metadata.toAcknowledgedMessage(exception)))
 
   override fun close() {
+    KafkaWireBytes.flushPending(owner = this)
+    batchingSender?.takeIf { it.isInitialized() }?.value?.close()
     if (clientHandle.isInitialized()) clientHandle.value.close()
     scope.cancel()
   }
 
-  private fun send(message: ConsumedMessage) = runBlocking {
-    report("consumed", message) { client.onConsumedMessage().execute(message) }
-  }
-
-  private fun send(message: PublishedMessage) = runBlocking {
-    report("published", message) { client.onPublishedMessage().execute(message) }
+  private fun send(message: ObservedMessage) {
+    // Looked up per call: the recorder is attached when the system starts and gone once it closes.
+    val recorder = bridgeId?.let(KafkaBridgeRuntimeRegistry::recorder)
+    val sender = batchingSender
+    when {
+      recorder != null -> recordInJvm(recorder, message)
+      sender != null -> sender.value.enqueue(message)
+      else -> runBlocking { sendUnary(message) }
+    }
   }
 
-  private fun send(message: CommittedMessage) = runBlocking {
-    report("committed", message) { client.onCommittedMessage().execute(message) }
+  private fun recordInJvm(
+    recorder: KafkaRecorder,
+    message: ObservedMessage
+  ) {
+    runCatching { recorder.onObservedMessage(message) }
+      .onFailure { error -> logger.error("Failed to record Kafka message in the same JVM: {}", message, error) }
   }
 
-  private fun send(message: AcknowledgedMessage) = runBlocking {
-    report("acknowledged", message) { client.onAcknowledgedMessage().execute(message) }
+  private suspend fun sendUnary(message: ObservedMessage) {
+    message.consumed?.let { report("consumed", it) { client.onConsumedMessage().execute(it) } }
+    message.published?.let { report("published", it) { client.onPublishedMessage().execute(it) } }
+    message.committed?.let { report("committed", it) { client.onCommittedMessage().execute(it) } }
+    message.acknowledged?.let { report("acknowledged", it) { client.onAcknowledgedMessage().execute(it) } }
   }
 
   private suspend fun report(
@@ -87,18 +130,18 @@ class StoveKafkaBridge<K, V> :
       .onFailure { error -> logger.error("Failed to send {} message to Stove Kafka Bridge: {}", kind, message, error) }
   }
 
-  private fun ProducerRecord<K, V>.toPublishedMessage(): PublishedMessage = PublishedMessage(
+  private fun ProducerRecord<K, V>.toPublishedMessage(payload: ByteArray): PublishedMessage = PublishedMessage(
     id = UUID.randomUUID().toString(),
     key = key().toString(),
-    message = serialize(value()).toByteString(),
+    message = payload.toByteString(),
     topic = topic(),
     headers = headers().textHeaders()
   )
 
-  private fun ConsumerRecord<K, V>.toConsumedMessage(): ConsumedMessage = ConsumedMessage(
+  private fun ConsumerRecord<K, V>.toConsumedMessage(payload: ByteArray): ConsumedMessage = ConsumedMessage(
     id = UUID.randomUUID().toString(),
     key = key().toString(),
-    message = serialize(value()).toByteString(),
+    message = payload.toByteString(),
     topic = topic(),
     offset = offset(),
     partition = partition(),
@@ -121,6 +164,15 @@ class StoveKafkaBridge<K, V> :
     exception = exception?.message.orEmpty()
   )
 
+  private fun ConsumerRecord<K, V>.wireBytes(): ByteArray =
+    value()?.let { value -> KafkaWireBytes.takeDeserialized(value as Any) } ?: serialize(value())
+
+  private fun Any?.isWireSerializer(): Boolean = when (this) {
+    is Class<*> -> StoveKafkaWireSerializer::class.java.isAssignableFrom(this)
+    is String -> this == StoveKafkaWireSerializer::class.java.name
+    else -> this is StoveKafkaWireSerializer<*>
+  }
+
   private fun serialize(value: V?): ByteArray = when (value) {
     null -> byteArrayOf()
     is ByteArray -> value
@@ -1,6 +1,7 @@
 package com.trendyol.stove.kafka.intercepting
 
 import com.trendyol.stove.kafka.*
+import kotlinx.coroutines.channels.ReceiveChannel
 import org.slf4j.*
 
 class StoveKafkaObserverGrpcServer(
@@ -36,4 +37,12 @@ class StoveKafkaObserverGrpcServer(
     recorder.onMessageAcknowledged(request)
     return Reply(status = 200)
   }
+
+  override suspend fun onObservedMessages(request: ReceiveChannel<ObservedMessageBatch>): Reply {
+    for (batch in request) {
+      logger.debug("Received {} observed Kafka messages", batch.messages.size)
+      batch.messages.forEach(recorder::onObservedMessage)
+    }
+    return Reply(status = 200)
+  }
 }
@@ -3,6 +3,7 @@ package com.trendyol.stove.kafka.setup
 import com.trendyol.stove.extensions.kotest.StoveKotestExtension
 import com.trendyol.stove.kafka.*
 import com.trendyol.stove.kafka.setup.example.KafkaTestShared
+import com.trendyol.stove.kafka.setup.example.TestTopologies
 import com.trendyol.stove.system.*
 import com.trendyol.stove.system.Stove
 import com.trendyol.stove.system.abstractions.ApplicationUnderTest
@@ -16,6 +17,7 @@ import org.apache.kafka.common.serialization.*
 import org.slf4j.*
 import org.testcontainers.kafka.ConfluentKafkaContainer
 import org.testcontainers.utility.DockerImageName
+import java.time.Instant
 import java.util.*
 
 private const val KAFKA_BOOTSTRAP_SERVERS = "kafka.bootstrapServers"
@@ -139,9 +141,19 @@ sealed interface KafkaTestStrategy {
       return when {
         useProvided -> ProvidedKafkaStrategy()
         useEmbedded -> EmbeddedKafkaStrategy()
+        useCluster() -> ClusterKafkaStrategy()
+        useTopology() -> TopologyKafkaStrategy()
         else -> ContainerKafkaStrategy()
       }
     }
+
+    fun useCluster(): Boolean = System.getenv("USE_CLUSTER")?.toBoolean()
+      ?: System.getProperty("useKafkaCluster")?.toBoolean()
+      ?: false
+
+    fun useTopology(): Boolean = System.getenv("USE_TOPOLOGY")?.toBoolean()
+      ?: System.getProperty("useKafkaTopology")?.toBoolean()
+      ?: false
   }
 }
 
@@ -184,6 +196,93 @@ class ContainerKafkaStrategy : KafkaTestStrategy {
   }
 }
 
+// ============================================================================
+// Multi-broker KRaft cluster strategy
+// ============================================================================
+
+class ClusterKafkaStrategy : KafkaTestStrategy {
+  override val logger: Logger = LoggerFactory.getLogger(javaClass)
+
+  init {
+    setupBridgePort()
+  }
+
+  override suspend fun start() {
+    logger.info("Starting Kafka tests with a $CLUSTER_BROKERS-broker KRaft cluster")
+
+    val options = KafkaSystemOptions(
+      useEmbeddedKafka = false,
+      listenPublishedMessagesFromStove = true,
+      containerOptions = KafkaContainerOptions(tag = "8.0.3"),
+      cluster = KafkaClusterOptions(brokers = CLUSTER_BROKERS),
+      configureExposedConfiguration = { cfg ->
+        listOf("$KAFKA_BOOTSTRAP_SERVERS=${cfg.bootstrapServers}")
+      }
+    ).migrations {
+      register<CreateTestTopicsMigration>()
+    }
+
+    Stove()
+      .with {
+        kafka { options }
+        applicationUnderTest(KafkaApplicationUnderTest())
+      }.run()
+  }
+
+  override suspend fun stop() {
+    com.trendyol.stove.system.Stove
+      .stop()
+    logger.info("Kafka cluster tests completed")
+  }
+
+  companion object {
+    const val CLUSTER_BROKERS = 3
+  }
+}
+
+// ============================================================================
+// Topology test driver strategy
+// ============================================================================
+
+class TopologyKafkaStrategy : KafkaTestStrategy {
+  override val logger: Logger = LoggerFactory.getLogger(javaClass)
+
+  override suspend fun start() {
+    logger.info("Starting Kafka tests with the topology test driver")
+
+    val options = KafkaSystemOptions(
+      listenPublishedMessagesFromStove = true,
+      topology = KafkaTopologyOptions(topology = TestTopologies::combined, startTime = TOPOLOGY_START),
+      configureExposedConfiguration = { cfg ->
+        listOf("$KAFKA_BOOTSTRAP_SERVERS=${cfg.bootstrapServers}")
+      }
+    )
+
+    // The topology is the application; there is nothing else to start.
+    Stove()
+      .with {
+        kafka { options }
+        applicationUnderTest(
+          object : ApplicationUnderTest<Unit> {
+            override suspend fun start(configurations: List<String>) = Unit
+
+            override suspend fun stop() = Unit
+          }
+        )
+      }.run()
+  }
+
+  override suspend fun stop() {
+    com.trendyol.stove.system.Stove
+      .stop()
+    logger.info("Kafka topology tests completed")
+  }
+
+  companion object {
+    val TOPOLOGY_START: Instant = Instant.parse("2024-01-01T00:00:00Z")
+  }
+}
+
 // ============================================================================
 // Embedded Kafka strategy
 // ============================================================================
@@ -0,0 +1,51 @@
+package com.trendyol.stove.kafka.setup.example
+
+import org.apache.kafka.common.serialization.Serdes
+import org.apache.kafka.streams.StreamsBuilder
+import org.apache.kafka.streams.Topology
+import org.apache.kafka.streams.kstream.*
+import org.apache.kafka.streams.processor.PunctuationType
+import org.apache.kafka.streams.processor.api.*
+import java.time.Instant
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.toJavaDuration
+
+object TestTopologies {
+  /** Uppercases every record from `words` into `words.upper`. */
+  fun uppercase(): Topology = StreamsBuilder().apply { addUppercase(this) }.build()
+
+  /** Forwards one record to `ticks.out` every ten seconds of wall-clock time, stamped with the punctuation time. */
+  fun ticking(): Topology = StreamsBuilder().apply { addTicking(this) }.build()
+
+  /** [uppercase] and [ticking] in one topology, as an application would build it. */
+  fun combined(): Topology = StreamsBuilder()
+    .apply {
+      addUppercase(this)
+      addTicking(this)
+    }.build()
+
+  private fun addUppercase(builder: StreamsBuilder) {
+    builder
+      .stream("words", Consumed.with(Serdes.String(), Serdes.ByteArray()))
+      .mapValues { value -> String(value).uppercase().toByteArray() }
+      .to("words.upper", Produced.with(Serdes.String(), Serdes.ByteArray()))
+  }
+
+  private fun addTicking(builder: StreamsBuilder) {
+    builder
+      .stream("ticks", Consumed.with(Serdes.String(), Serdes.ByteArray()))
+      .process(
+        ProcessorSupplier {
+          object : Processor<String, ByteArray, String, ByteArray> {
+            override fun init(context: ProcessorContext<String, ByteArray>) {
+              context.schedule(10.seconds.toJavaDuration(), PunctuationType.WALL_CLOCK_TIME) { timestamp ->
+                context.forward(Record("tick", Instant.ofEpochMilli(timestamp).toString().toByteArray(), timestamp))
+              }
+            }
+
+            override fun process(record: Record<String, ByteArray>) = Unit
+          }
+        }
+      ).to("ticks.out", Produced.with(Serdes.String(), Serdes.ByteArray()))
+  }
+}
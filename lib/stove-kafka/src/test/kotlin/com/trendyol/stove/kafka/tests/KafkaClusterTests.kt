@@ -0,0 +1,53 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.kafka
+import com.trendyol.stove.kafka.setup.ClusterKafkaStrategy
+import com.trendyol.stove.kafka.setup.KafkaTestStrategy
+import com.trendyol.stove.kafka.setup.example.DomainEvents.ProductCreated
+import com.trendyol.stove.system.stove
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import org.apache.kafka.clients.admin.NewTopic
+import org.apache.kafka.common.serialization.StringDeserializer
+import kotlin.random.Random
+import kotlin.time.Duration.Companion.seconds
+
+/** Runs only in the `testWithCluster` task, where the system is a multi-broker KRaft cluster. */
+class KafkaClusterTests :
+  FunSpec({
+    val randomString = { Random.nextInt(0, Int.MAX_VALUE).toString() }
+
+    test("leadership moves between brokers and a replicated topic survives losing a broker")
+      .config(enabledIf = { KafkaTestStrategy.useCluster() }) {
+        stove {
+          kafka {
+            val topic = randomString()
+            val brokers = ClusterKafkaStrategy.CLUSTER_BROKERS
+            adminOperations {
+              createTopics(listOf(NewTopic(topic, 1, brokers.toShort()))).all().get()
+            }
+            val leader = suspend {
+              var id = -1
+              adminOperations {
+                id = describeTopics(listOf(topic)).allTopicNames().get().getValue(topic).partitions().single().leader().id()
+              }
+              id
+            }
+
+            val initialLeader = leader()
+            val newLeader = (1..brokers).first { it != initialLeader }
+            moveLeader(topic, partition = 0, toBroker = newLeader)
+            leader() shouldBe newLeader
+
+            stopBroker(newLeader)
+            val message = ProductCreated(randomString())
+            publish(topic, message)
+
+            peekTopicRecords<String, Any>(atLeastIn = 30.seconds, topic = topic, keyDeserializer = StringDeserializer()) {
+              (it.value() as Map<*, *>)["productId"] == message.productId
+            }
+            (leader() in (1..brokers).filter { it != newLeader }) shouldBe true
+          }
+        }
+      }
+  })
@@ -3,6 +3,7 @@ package com.trendyol.stove.kafka.tests
 import com.trendyol.stove.kafka.*
 import com.trendyol.stove.kafka.intercepting.StoveKafkaBridge
 import com.trendyol.stove.serialization.StoveSerde
+import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.booleans.shouldBeFalse
 import io.kotest.matchers.booleans.shouldBeTrue
@@ -10,6 +11,7 @@ import io.kotest.matchers.shouldBe
 import io.kotest.matchers.shouldNotBe
 import io.kotest.matchers.string.shouldNotBeBlank
 import kotlinx.coroutines.isActive
+import kotlin.time.Duration.Companion.milliseconds
 
 private class MarkerSerde(private val marker: String) : StoveSerde<Any, ByteArray> {
   override fun serialize(value: Any): ByteArray = "$marker:$value".toByteArray()
@@ -185,4 +187,43 @@ class KafkaOptionsTests :
         second.close()
       }
     }
+
+    test("bridge batching travels through client properties and stays off by default") {
+      val serde = StoveSerde.jackson.anyByteArraySerde()
+      val unary = KafkaBridgeRuntime(serde, "unary")
+      val batching = KafkaBridgeBatching(maxBatchSize = 50, linger = 20.milliseconds, queueCapacity = 100)
+      val batched = KafkaBridgeRuntime(serde, "batched", batching)
+
+      try {
+        unary.attach(31003)
+        batched.attach(31004)
+
+        KafkaBridgeConfig.batching(unary.clientProperties) shouldBe null
+        KafkaBridgeConfig.batching(batched.clientProperties) shouldBe batching
+      } finally {
+        unary.close()
+        batched.close()
+      }
+    }
+
+    test("bridge batching rejects a queue smaller than a batch") {
+      shouldThrow<IllegalArgumentException> {
+        KafkaBridgeBatching(maxBatchSize = 100, queueCapacity = 10)
+      }
+    }
+
+    test("cluster brokers share one KRaft quorum and replicate internal topics") {
+      val env = StoveKafkaCluster.clusterEnv(brokerId = 2, brokers = 4, clusterId = "cluster")
+
+      env["CLUSTER_ID"] shouldBe "cluster"
+      env["KAFKA_NODE_ID"] shouldBe "2"
+      env["KAFKA_CONTROLLER_QUORUM_VOTERS"] shouldBe "1@broker-1:9094,2@broker-2:9094,3@broker-3:9094,4@broker-4:9094"
+      env["KAFKA_OFFSETS_TOPIC_REPLICATION_FACTOR"] shouldBe "3"
+      StoveKafkaCluster.clusterEnv(brokerId = 1, brokers = 2, clusterId = "cluster")["KAFKA_DEFAULT_REPLICATION_FACTOR"] shouldBe "2"
+    }
+
+    test("cluster options are off by default and reject an empty cluster") {
+      object : KafkaSystemOptions(configureExposedConfiguration = { _ -> listOf() }) {}.cluster shouldBe null
+      shouldThrow<IllegalArgumentException> { KafkaClusterOptions(brokers = 0) }
+    }
   })
@@ -2,18 +2,28 @@ package com.trendyol.stove.kafka.tests
 
 import arrow.core.some
 import com.trendyol.stove.kafka.kafka
+import com.trendyol.stove.kafka.kafkaTopicNamespace
 import com.trendyol.stove.kafka.setup.example.DomainEvents.ProductCreated
 import com.trendyol.stove.kafka.setup.example.DomainEvents.ProductFailingCreated
+import com.trendyol.stove.messaging.kafka.KafkaTopicNamespacing
 import com.trendyol.stove.system.stove
 import io.github.nomisRev.kafka.createTopic
+import io.kotest.assertions.nondeterministic.eventually
 import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldContainAll
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
 import io.kotest.matchers.collections.shouldNotContainAll
+import io.kotest.matchers.collections.shouldNotContainAnyOf
 import io.kotest.matchers.nulls.shouldNotBeNull
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
 import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.*
+import org.apache.kafka.clients.admin.Admin
 import org.apache.kafka.clients.admin.NewTopic
 import org.apache.kafka.clients.consumer.ConsumerRecord
+import org.apache.kafka.common.quota.*
 import org.apache.kafka.common.serialization.*
 import org.apache.kafka.common.utils.Utils
 import kotlin.random.Random
@@ -225,6 +235,136 @@ class KafkaSystemTests :
       }
     }
 
+    test("publishAll pipelines a batch and every record is consumed") {
+      stove {
+        kafka {
+          val messages = ProductCreated.randoms(200)
+          publishAll("product", messages.asSequence(), key = { randomString() }, maxInFlight = 16)
+
+          shouldAllBeConsumed(1.minutes) {
+            messages.forEach { message -> expect<ProductCreated> { actual.productId == message.productId } }
+          }
+        }
+      }
+    }
+
+    test("consumer group lag drains once the group commits everything") {
+      stove {
+        kafka {
+          val topic = randomString()
+          val group = randomString()
+          adminOperations {
+            createTopic(NewTopic(topic, 1, 1))
+          }
+          publishAll(topic, ProductCreated.randoms(3).asSequence())
+
+          lagOf(group, listOf(topic)).values.sum() shouldBe 3L
+          shouldThrow<AssertionError> { shouldHaveNoLag(group, listOf(topic), within = 300.milliseconds) }
+            .message shouldContain "Lag over time"
+
+          consumer<String, ProductCreated>(topic, readOnly = false, groupId = group, keepConsumingAtLeastFor = 3.seconds) { }
+          shouldHaveNoLag(group, listOf(topic), within = 10.seconds)
+        }
+      }
+    }
+
+    test("a group that has not committed anything yet is not drained") {
+      stove {
+        kafka {
+          val topic = randomString()
+          adminOperations {
+            createTopic(NewTopic(topic, 1, 1))
+          }
+          publishAll(topic, ProductCreated.randoms(3).asSequence())
+
+          shouldThrow<AssertionError> { shouldHaveNoLag(randomString(), within = 300.milliseconds) }
+            .message shouldContain "No partition was measured"
+        }
+      }
+    }
+
+    test("pooled topic reader replays records and follows new ones without a consumer group") {
+      stove {
+        kafka {
+          val topic = randomString()
+          adminOperations {
+            createTopic(NewTopic(topic, 2, 1))
+          }
+          val productId = { record: ConsumerRecord<String, Any> -> (record.value() as Map<*, *>)["productId"] }
+          val before = ProductCreated.randoms(3)
+          publishAll(topic, before.asSequence(), key = { randomString() })
+
+          before.forEach { message ->
+            peekTopicRecords<String, Any>(atLeastIn = 10.seconds, topic = topic, keyDeserializer = StringDeserializer()) {
+              productId(it) == message.productId
+            }
+          }
+
+          val after = ProductCreated(randomString())
+          publish(topic, after)
+          peekTopicRecords<String, Any>(topic = topic, keyDeserializer = StringDeserializer()) { productId(it) == after.productId }
+
+          val read = topicRecords<String, Any>(topic, keyDeserializer = StringDeserializer()).take(4).toList()
+          read.map(productId) shouldContainExactlyInAnyOrder (before + after).map { it.productId }
+        }
+      }
+    }
+
+    test("throttle sets a client quota and unthrottle removes it") {
+      stove {
+        kafka {
+          val clientId = randomString()
+          val filter = ClientQuotaFilter.containsOnly(listOf(ClientQuotaFilterComponent.ofEntity(ClientQuotaEntity.CLIENT_ID, clientId)))
+          val quotas = suspend {
+            var found: Map<String, Double> = emptyMap()
+            adminOperations { found = describeClientQuotas(filter).entities().get().values.firstOrNull().orEmpty() }
+            found
+          }
+
+          throttle(clientId = clientId, produceBytesPerSec = 1024, fetchBytesPerSec = 2048)
+          eventually(10.seconds) {
+            quotas() shouldBe mapOf("producer_byte_rate" to 1024.0, "consumer_byte_rate" to 2048.0)
+          }
+
+          unthrottle()
+          eventually(10.seconds) { quotas() shouldBe emptyMap() }
+        }
+      }
+    }
+
+    test("a topic namespace creates its topics on the broker and deletes them on close") {
+      stove {
+        kafka {
+          lateinit var admin: Admin
+          adminOperations { admin = this }
+          val worker = randomString()
+          val namespacing = KafkaTopicNamespacing.perWorker(worker = worker, topics = listOf("audit"), partitions = 2)
+          val namespace = kafkaTopicNamespace(namespacing) { admin }
+          val topics = suspend {
+            var names: Set<String> = emptySet()
+            adminOperations { names = listTopics().names().get() }
+            names
+          }
+
+          val resolved = namespace.resolve("orders")
+          resolved shouldBe "orders.$worker"
+          topics() shouldContainAll setOf("orders.$worker", "audit.$worker")
+          adminOperations {
+            describeTopics(listOf(resolved)).allTopicNames().get().getValue(resolved).partitions().size shouldBe 2
+          }
+
+          val message = ProductCreated(randomString())
+          publish(resolved, message)
+          peekTopicRecords<String, Any>(atLeastIn = 20.seconds, topic = resolved, keyDeserializer = StringDeserializer()) {
+            (it.value() as Map<*, *>)["productId"] == message.productId
+          }
+
+          namespace.close()
+          eventually(10.seconds) { topics() shouldNotContainAnyOf setOf("orders.$worker", "audit.$worker") }
+        }
+      }
+    }
+
     test("When publish to a failing consumer should end-up throwing exception") {
       stove {
         kafka {
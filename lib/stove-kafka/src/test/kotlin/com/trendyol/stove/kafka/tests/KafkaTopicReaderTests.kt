@@ -0,0 +1,43 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.KafkaTopicReader
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.withTimeout
+import org.apache.kafka.clients.consumer.*
+import org.apache.kafka.common.*
+import kotlin.time.Duration.Companion.seconds
+
+class KafkaTopicReaderTests :
+  FunSpec({
+    test("a reader whose poller fails ends its collectors' flow with the failure") {
+      val partition = TopicPartition("topic", 0)
+      val consumer = MockConsumer<String, String>("earliest").apply {
+        updatePartitions("topic", listOf(PartitionInfo("topic", 0, null, emptyArray(), emptyArray())))
+        updateBeginningOffsets(mapOf(partition to 0L))
+      }
+      val failure = KafkaException("broker is gone")
+      val reader = KafkaTopicReader("topic", consumer, maxRecords = 10)
+      val read = mutableListOf<String>()
+      try {
+        consumer.schedulePollTask {
+          consumer.addRecord(ConsumerRecord("topic", 0, 0L, "key", "before the failure"))
+          consumer.setPollException(failure)
+        }
+
+        val error = shouldThrow<IllegalStateException> {
+          withTimeout(10.seconds) { reader.records().collect { read += it.value() } }
+        }
+
+        error.cause shouldBeSameInstanceAs failure
+        read shouldContainExactly listOf("before the failure")
+        reader.failed.shouldBeTrue()
+      } finally {
+        reader.close()
+      }
+    }
+  })
@@ -0,0 +1,49 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.kafka
+import com.trendyol.stove.kafka.setup.KafkaTestStrategy
+import com.trendyol.stove.kafka.setup.TopologyKafkaStrategy
+import com.trendyol.stove.system.stove
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.FunSpec
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlin.random.Random
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+
+/** Runs only in the `testWithTopology` task, where the system drives [TopologyKafkaStrategy]'s topology. */
+class KafkaTopologyDslTests :
+  FunSpec({
+    val randomString = { Random.nextInt(0, Int.MAX_VALUE).toString() }
+
+    test("published records are consumed by the topology and its output is published")
+      .config(enabledIf = { KafkaTestStrategy.useTopology() }) {
+        stove {
+          kafka {
+            val word = "word-${randomString()}"
+            publish("words", word)
+
+            shouldBeConsumed<String>(1.seconds) { actual == word && metadata.topic == "words" }
+            shouldBePublished<String>(1.seconds) { actual == word.uppercase() && metadata.topic == "words.upper" }
+          }
+        }
+      }
+
+    test("punctuations fire only when time is advanced")
+      .config(enabledIf = { KafkaTestStrategy.useTopology() }) {
+        stove {
+          kafka {
+            val tick = TopologyKafkaStrategy.TOPOLOGY_START.plusSeconds(10).toString()
+            publish("ticks", "start")
+
+            advanceTime(5.seconds)
+            shouldThrow<TimeoutCancellationException> {
+              peekPublishedMessages(atLeastIn = 500.milliseconds, topic = "ticks.out") { String(it.value) == tick }
+            }
+
+            advanceTime(5.seconds)
+            peekPublishedMessages(atLeastIn = 1.seconds, topic = "ticks.out") { String(it.value) == tick }
+          }
+        }
+      }
+  })
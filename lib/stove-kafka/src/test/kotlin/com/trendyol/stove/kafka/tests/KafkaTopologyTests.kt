@@ -0,0 +1,51 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.*
+import com.trendyol.stove.kafka.intercepting.*
+import com.trendyol.stove.kafka.setup.example.TestTopologies
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import org.apache.kafka.clients.producer.ProducerRecord
+import java.time.Instant
+import kotlin.time.Duration.Companion.seconds
+
+private fun driver(
+  store: MessageStore,
+  options: KafkaTopologyOptions
+) = KafkaTopologyDriver(options, KafkaRecorder(store, TopicSuffixes()), StoveKafkaValueSerializer(), recordStovePublishes = false)
+
+class KafkaTopologyTests :
+  FunSpec({
+    test("piped records are consumed, committed and processed synchronously") {
+      val store = MessageStore()
+      driver(store, KafkaTopologyOptions(topology = TestTopologies::uppercase)).use { driver ->
+        driver.pipe(ProducerRecord<String, Any>("words", "key-1", "hello".toByteArray()))
+
+        store.consumedMessages().map { it.topic to it.message.utf8() } shouldContainExactly listOf("words" to "hello")
+        store.isCommitted("words", 0, 0) shouldBe true
+        store.publishedMessages().map { it.topic to it.key to it.message.utf8() } shouldContainExactly
+          listOf("words.upper" to "key-1" to "HELLO")
+      }
+    }
+
+    test("wall-clock time only moves when advanced") {
+      val store = MessageStore()
+      val start = Instant.parse("2024-01-01T00:00:00Z")
+      driver(store, KafkaTopologyOptions(topology = TestTopologies::ticking, startTime = start)).use { driver ->
+        driver.pipe(ProducerRecord<String, Any>("ticks", "key-1", "start".toByteArray()))
+        store.publishedMessages().shouldBeEmpty()
+
+        driver.advanceTime(5.seconds) shouldBe start.plusSeconds(5)
+        store.publishedMessages().shouldBeEmpty()
+
+        driver.advanceTime(5.seconds)
+        driver.advanceTime(10.seconds)
+        store.publishedMessages().map { it.message.utf8() } shouldContainExactly listOf(
+          "2024-01-01T00:00:10Z",
+          "2024-01-01T00:00:20Z"
+        )
+      }
+    }
+  })
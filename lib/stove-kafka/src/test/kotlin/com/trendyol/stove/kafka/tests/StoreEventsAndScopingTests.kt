@@ -10,9 +10,13 @@ import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.shouldBe
 import io.kotest.matchers.string.*
 import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.flow.*
 import okio.ByteString.Companion.EMPTY
 import okio.ByteString.Companion.toByteString
+import org.apache.kafka.clients.consumer.OffsetAndMetadata
+import org.apache.kafka.clients.producer.ProducerRecord
+import org.apache.kafka.common.TopicPartition
 import java.util.*
 import kotlin.time.Duration.Companion.milliseconds
 import kotlin.time.Duration.Companion.seconds
@@ -138,6 +142,73 @@ class StoreEventsAndScopingTests :
       observer.store.committedMessages().size shouldBe 1
     }
 
+    test("observer records streamed batches in the order the bridge sent them") {
+      val observer = observer()
+      val server = StoveKafkaObserverGrpcServer(observer.recorder)
+      val batches = Channel<ObservedMessageBatch>(Channel.UNLIMITED)
+      val names = (1..5).map { "event-$it" }
+
+      batches.send(ObservedMessageBatch(names.take(3).map { ObservedMessage(consumed = consumed(payload = ScopedEvent(it))) }))
+      batches.send(
+        ObservedMessageBatch(
+          names.drop(3).map { ObservedMessage(consumed = consumed(payload = ScopedEvent(it))) } +
+            ObservedMessage(published = published()) +
+            ObservedMessage(committed = committed())
+        )
+      )
+      batches.close()
+
+      server.onObservedMessages(batches).status shouldBe 200
+
+      observer.store
+        .consumedMessages()
+        .map { serde.deserialize(it.message.toByteArray(), ScopedEvent::class.java).name } shouldBe names
+      observer.store.publishedMessages().size shouldBe 1
+      observer.store.committedMessages().size shouldBe 1
+    }
+
+    test("bridge records directly when its observer lives in the same JVM") {
+      val observer = observer()
+      val runtime = KafkaBridgeRuntime(serde, "in-jvm")
+      val bridge = StoveKafkaBridge<String, ScopedEvent>()
+
+      try {
+        runtime.attach(port = 0, recorder = observer.recorder)
+        bridge.configure(runtime.clientProperties.toMutableMap())
+
+        bridge.onSend(ProducerRecord("topic", "key", ScopedEvent("direct")))
+        bridge.onCommit(mutableMapOf(TopicPartition("topic", 0) to OffsetAndMetadata(1)))
+
+        val published = observer.store.publishedMessages().single()
+        serde.deserialize(published.message.toByteArray(), ScopedEvent::class.java).name shouldBe "direct"
+        observer.store.committedMessages().size shouldBe 1
+      } finally {
+        bridge.close()
+        runtime.close()
+      }
+    }
+
+    test("bridge batches coalesce queued observations up to the batch size") {
+      val queue = Channel<ObservedMessage>(Channel.UNLIMITED)
+      repeat(5) { queue.send(ObservedMessage(committed = committed(offset = it.toLong()))) }
+      queue.close()
+
+      queue.receiveBatch(maxBatchSize = 3, linger = 0.milliseconds)?.messages?.size shouldBe 3
+      queue.receiveBatch(maxBatchSize = 3, linger = 0.milliseconds)?.messages?.size shouldBe 2
+      queue.receiveBatch(maxBatchSize = 3, linger = 0.milliseconds) shouldBe null
+    }
+
+    test("bridge batches wait for the linger before sending a partial batch") {
+      val queue = Channel<ObservedMessage>(Channel.UNLIMITED)
+      queue.send(ObservedMessage(committed = committed()))
+      launch {
+        delay(20)
+        queue.send(ObservedMessage(committed = committed()))
+      }
+
+      queue.receiveBatch(maxBatchSize = 10, linger = 200.milliseconds)?.messages?.size shouldBe 2
+    }
+
     test("record flows replay records stored before subscription") {
       val store = MessageStore()
       store.record(consumed(payload = ScopedEvent("early")))
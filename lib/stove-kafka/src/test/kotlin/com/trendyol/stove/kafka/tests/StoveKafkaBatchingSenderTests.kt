@@ -0,0 +1,62 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.*
+import com.trendyol.stove.kafka.intercepting.*
+import io.grpc.Server
+import io.grpc.netty.NettyServerBuilder
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldNotBeEmpty
+import kotlinx.coroutines.*
+import okio.ByteString.Companion.EMPTY
+import okio.ByteString.Companion.encodeUtf8
+import java.net.*
+import java.util.*
+import java.util.concurrent.TimeUnit
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+
+class StoveKafkaBatchingSenderTests :
+  FunSpec({
+    val port = ServerSocket(0).use { it.localPort }
+
+    fun serve(store: MessageStore): Server = NettyServerBuilder
+      .forAddress(InetSocketAddress(InetAddress.getLoopbackAddress(), port))
+      .addService(StoveKafkaObserverGrpcServer(KafkaRecorder(store, TopicSuffixes())))
+      .build()
+      .start()
+
+    fun published(id: String) = ObservedMessage(
+      published = PublishedMessage(id = id, message = id.encodeUtf8(), topic = "topic", key = "key", unknownFields = EMPTY)
+    )
+
+    test("an observer killed mid-stream loses no observation") {
+      val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+      val client = GrpcUtils.createClientHandle(port.toString(), scope)
+      val batching = KafkaBridgeBatching(maxBatchSize = 10, linger = 5.milliseconds, queueCapacity = 1_000)
+      val sender = StoveKafkaBatchingSender(batching, scope, { client.client })
+      val killed = MessageStore()
+      val restarted = MessageStore()
+      val ids = List(2_000) { UUID.randomUUID().toString() }
+      var server = serve(killed)
+      try {
+        ids.forEachIndexed { index, id ->
+          sender.enqueue(published(id))
+          delay(1.milliseconds)
+          if (index == ids.size / 2) {
+            killed.publishedMessages().shouldNotBeEmpty()
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS)
+            server = serve(restarted)
+          }
+        }
+        sender.close(30.seconds)
+
+        val recorded = (killed.publishedMessages() + restarted.publishedMessages()).map { it.id }.toSet()
+        ids.filterNot(recorded::contains).shouldBeEmpty()
+      } finally {
+        server.shutdownNow()
+        client.close()
+        scope.cancel()
+      }
+    }
+  })
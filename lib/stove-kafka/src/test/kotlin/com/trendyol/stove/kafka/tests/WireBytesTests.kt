@@ -0,0 +1,96 @@
+package com.trendyol.stove.kafka.tests
+
+import com.trendyol.stove.kafka.*
+import com.trendyol.stove.kafka.intercepting.*
+import com.trendyol.stove.serialization.StoveSerde
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import org.apache.kafka.clients.consumer.*
+import org.apache.kafka.clients.producer.*
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.serialization.*
+import kotlin.concurrent.thread
+
+private class WireBridge(
+  captureWireBytes: Boolean
+) : AutoCloseable {
+  val store = MessageStore()
+  private val runtime = KafkaBridgeRuntime(StoveSerde.jackson.anyByteArraySerde(), "wire")
+  val bridge = StoveKafkaBridge<String, String>()
+
+  init {
+    runtime.attach(port = 0, recorder = KafkaRecorder(store, TopicSuffixes()))
+    val configs = runtime.clientProperties.toMutableMap()
+    if (captureWireBytes) configs[ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG] = StoveKafkaWireSerializer::class.java
+    bridge.configure(configs)
+  }
+
+  fun published(): List<String> = store.publishedMessages().map { it.message.utf8() }
+
+  fun consumed(): List<String> = store.consumedMessages().map { it.message.utf8() }
+
+  override fun close() {
+    bridge.close()
+    runtime.close()
+  }
+}
+
+class WireBytesTests :
+  FunSpec({
+
+    test("published observations carry the bytes produced by the wrapped serializer") {
+      WireBridge(captureWireBytes = true).use { wire ->
+        val serializer = StoveKafkaWireSerializer(StringSerializer())
+        val record = ProducerRecord("topic", "key", "hello")
+
+        wire.bridge.onSend(record)
+        wire.published() shouldBe emptyList()
+
+        serializer.serialize(record.topic(), record.headers(), record.value())
+        wire.published() shouldBe listOf("hello")
+      }
+    }
+
+    test("a send that never reached the serializer is published with re-serialized bytes") {
+      WireBridge(captureWireBytes = true).use { wire ->
+        val serializer = StoveKafkaWireSerializer(StringSerializer())
+        val next = ProducerRecord("topic", "key", "second")
+
+        wire.bridge.onSend(ProducerRecord("topic", "key", "first"))
+        wire.bridge.onSend(next)
+        serializer.serialize(next.topic(), next.headers(), next.value())
+
+        wire.published() shouldBe listOf("\"first\"", "second")
+      }
+    }
+
+    test("closing the bridge flushes observations left pending on other threads") {
+      val wire = WireBridge(captureWireBytes = true)
+
+      thread { wire.bridge.onSend(ProducerRecord("topic", "key", "unsent")) }.join()
+      wire.published() shouldBe emptyList()
+
+      wire.close()
+      wire.published() shouldBe listOf("\"unsent\"")
+    }
+
+    test("consumed observations carry the bytes the wrapped deserializer decoded") {
+      WireBridge(captureWireBytes = false).use { wire ->
+        val deserializer = StoveKafkaWireDeserializer(StringDeserializer())
+        val value = deserializer.deserialize("topic", "hello".toByteArray())
+        val partition = TopicPartition("topic", 0)
+
+        wire.bridge.onConsume(ConsumerRecords(mapOf(partition to listOf(ConsumerRecord("topic", 0, 0L, "key", value))), emptyMap()))
+
+        wire.consumed() shouldBe listOf("hello")
+      }
+    }
+
+    test("without the wrappers the bridge keeps re-serializing with Stove's serde") {
+      WireBridge(captureWireBytes = false).use { wire ->
+        wire.bridge.onSend(ProducerRecord("topic", "key", "hello"))
+
+        wire.published() shouldBe listOf("\"hello\"")
+      }
+    }
+  })
@@ -342,8 +342,9 @@ class MongodbSystem internal constructor(
     }
 
   private suspend fun startMongoContainer(container: StoveMongoContainer): MongodbExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       MongodbExposedConfiguration(
         connectionString = container.connectionString,
         host = container.host,
@@ -116,7 +116,7 @@ fun WithDsl.mongodb(
     ) { dockerImageName ->
       options.container
         .useContainerFn(dockerImageName)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMongoContainer }
         .apply(options.container.containerFn)
     }
@@ -140,7 +140,7 @@ fun WithDsl.mongodb(
     ) { dockerImageName ->
       options.container
         .useContainerFn(dockerImageName)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMongoContainer }
         .apply(options.container.containerFn)
     }
@@ -250,7 +250,7 @@ fun WithDsl.mssql(
         .withEnv("MSSQL_SA_PASSWORD", options.password)
         .withEnv("MSSQL_DB", options.databaseName)
         .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMsSqlContainer }
         .apply(options.container.containerFn)
     }
@@ -279,7 +279,7 @@ fun WithDsl.mssql(
         .withEnv("MSSQL_SA_PASSWORD", options.password)
         .withEnv("MSSQL_DB", options.databaseName)
         .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMsSqlContainer }
         .apply(options.container.containerFn)
     }
@@ -123,8 +123,9 @@ class MsSqlSystem internal constructor(
     }
 
   private suspend fun startMsSqlContainer(container: StoveMsSqlContainer): RelationalDatabaseExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       RelationalDatabaseExposedConfiguration(
         jdbcUrl = container.jdbcUrl,
         host = container.host,
@@ -120,8 +120,9 @@ class MySqlSystem internal constructor(
     }
 
   private suspend fun startMySqlContainer(container: StoveMySqlContainer): RelationalDatabaseExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       RelationalDatabaseExposedConfiguration(
         jdbcUrl = container.jdbcUrl,
         host = container.host,
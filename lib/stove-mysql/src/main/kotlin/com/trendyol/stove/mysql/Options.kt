@@ -223,7 +223,7 @@ fun WithDsl.mysql(
         .withDatabaseName(options.databaseName)
         .withUsername(options.username)
         .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMySqlContainer }
         .apply(options.container.containerFn)
     }
@@ -250,7 +250,7 @@ fun WithDsl.mysql(
         .withDatabaseName(options.databaseName)
         .withUsername(options.username)
         .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveMySqlContainer }
         .apply(options.container.containerFn)
     }
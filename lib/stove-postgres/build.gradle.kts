@@ -18,6 +18,18 @@ val testWithProvided = tasks.register<Test>("testWithProvided") {
   }
 }
 
+val testWithBakedImage = tasks.register<Test>("testWithBakedImage") {
+  group = "verification"
+  description = "Runs the tests that bake a migrated PostgreSQL image and start from it"
+  testClassesDirs = sourceSets.test.get().output.classesDirs
+  classpath = sourceSets.test.get().runtimeClasspath
+  useJUnitPlatform()
+  systemProperty("useBakedImage", "true")
+  filter {
+    includeTestsMatching("*PostgresqlBakedImageTests")
+  }
+}
+
 tasks.test.configure {
-  dependsOn(testWithProvided)
+  dependsOn(testWithProvided, testWithBakedImage)
 }
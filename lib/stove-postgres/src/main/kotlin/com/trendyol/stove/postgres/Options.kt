@@ -9,6 +9,7 @@ import com.trendyol.stove.rdbms.*
 import com.trendyol.stove.system.*
 import com.trendyol.stove.system.abstractions.*
 import com.trendyol.stove.system.annotations.StoveDsl
+import org.testcontainers.containers.wait.strategy.Wait
 import org.testcontainers.postgresql.PostgreSQLContainer
 import org.testcontainers.utility.DockerImageName
 
@@ -142,26 +143,62 @@ typealias PostgresqlMigration = DatabaseMigration<PostgresSqlMigrationContext>
 internal class PostgresqlContext(
   val runtime: SystemRuntime,
   val options: PostgresqlOptions,
-  val keyName: String? = null
+  val keyName: String? = null,
+  val images: MigratedImageCache? = null
 )
 
 internal fun Stove.withPostgresql(
   options: PostgresqlOptions,
-  runtime: SystemRuntime
+  runtime: SystemRuntime,
+  images: MigratedImageCache? = null
 ): Stove {
-  getOrRegister(PostgresqlSystem(this, PostgresqlContext(runtime, options)))
+  getOrRegister(PostgresqlSystem(this, PostgresqlContext(runtime, options, images = images)))
   return this
 }
 
 internal fun Stove.withPostgresql(
   key: SystemKey,
   options: PostgresqlOptions,
-  runtime: SystemRuntime
+  runtime: SystemRuntime,
+  images: MigratedImageCache? = null
 ): Stove {
-  getOrRegister(key, PostgresqlSystem(this, PostgresqlContext(runtime, options, keyName = keyDisplayName(key))))
+  getOrRegister(key, PostgresqlSystem(this, PostgresqlContext(runtime, options, keyName = keyDisplayName(key), images = images)))
   return this
 }
 
+/**
+ * Creates the container, from the image baked by [images] when there is one. While baking is enabled, the data
+ * directory is moved out of the image's volume so that `docker commit` keeps it. A baked image skips `initdb`,
+ * so it reports readiness once instead of twice.
+ */
+private fun WithDsl.postgresqlRuntime(
+  options: PostgresqlOptions,
+  images: MigratedImageCache
+): SystemRuntime = if (options is ProvidedPostgresqlOptions) {
+  ProvidedRuntime
+} else {
+  withProvidedRegistry(
+    if (images.isBaked) images.bakedImage else options.container.imageWithTag,
+    if (images.isBaked) "" else options.container.registry,
+    options.container.compatibleSubstitute ?: options.container.imageWithTag
+  ) { dockerImageName ->
+    options.container
+      .useContainerFn(dockerImageName)
+      .withDatabaseName(options.databaseName)
+      .withUsername(options.username)
+      .withPassword(options.password)
+      .withReuse(stove.reuseContainers)
+      .let { c -> c as StovePostgresqlContainer }
+      .apply {
+        if (images.enabled) withEnv("PGDATA", BAKED_PGDATA)
+        if (images.isBaked) waitingFor(Wait.forLogMessage(READY_LOG, 1))
+      }.apply(options.container.containerFn)
+  }
+}
+
+private const val BAKED_PGDATA = "/var/lib/stove-postgresql/data"
+private const val READY_LOG = ".*database system is ready to accept connections.*\\s"
+
 internal fun Stove.postgresql(): PostgresqlSystem =
   getOrNone<PostgresqlSystem>().getOrElse {
     throw SystemNotRegisteredException(PostgresqlSystem::class)
@@ -207,25 +244,8 @@ fun WithDsl.postgresql(
 ): Stove {
   val options = configure()
 
-  val runtime: SystemRuntime = if (options is ProvidedPostgresqlOptions) {
-    ProvidedRuntime
-  } else {
-    withProvidedRegistry(
-      options.container.imageWithTag,
-      options.container.registry,
-      options.container.compatibleSubstitute
-    ) { dockerImageName ->
-      options.container
-        .useContainerFn(dockerImageName)
-        .withDatabaseName(options.databaseName)
-        .withUsername(options.username)
-        .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
-        .let { c -> c as StovePostgresqlContainer }
-        .apply(options.container.containerFn)
-    }
-  }
-  return stove.withPostgresql(options, runtime)
+  val images = MigratedImageCache(stove.bakeMigratedImages, options.container.imageWithTag, options.migrationCollection)
+  return stove.withPostgresql(options, postgresqlRuntime(options, images), images)
 }
 
 fun WithDsl.postgresql(
@@ -234,25 +254,8 @@ fun WithDsl.postgresql(
 ): Stove {
   val options = configure()
 
-  val runtime: SystemRuntime = if (options is ProvidedPostgresqlOptions) {
-    ProvidedRuntime
-  } else {
-    withProvidedRegistry(
-      options.container.imageWithTag,
-      options.container.registry,
-      options.container.compatibleSubstitute
-    ) { dockerImageName ->
-      options.container
-        .useContainerFn(dockerImageName)
-        .withDatabaseName(options.databaseName)
-        .withUsername(options.username)
-        .withPassword(options.password)
-        .withReuse(stove.keepDependenciesRunning)
-        .let { c -> c as StovePostgresqlContainer }
-        .apply(options.container.containerFn)
-    }
-  }
-  return stove.withPostgresql(key, options, runtime)
+  val images = MigratedImageCache(stove.bakeMigratedImages, options.container.imageWithTag, options.migrationCollection)
+  return stove.withPostgresql(key, options, postgresqlRuntime(options, images), images)
 }
 
 suspend fun ValidationDsl.postgresql(validation: @StoveDsl suspend PostgresqlSystem.() -> Unit): Unit =
@@ -253,8 +253,9 @@ class PostgresqlSystem internal constructor(
     }
 
   private suspend fun startPostgresContainer(container: StovePostgresqlContainer): RelationalDatabaseExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       RelationalDatabaseExposedConfiguration(
         jdbcUrl = container.jdbcUrl,
         host = container.host,
@@ -270,15 +271,27 @@ class PostgresqlSystem internal constructor(
       postgresContext.options.migrationCollection.run(
         PostgresSqlMigrationContext(postgresContext.options, sqlOperations) { executeAsRoot(it) }
       )
+      bakeMigratedImage()
     }
   }
 
   private fun shouldRunMigrations(): Boolean = when {
     postgresContext.options is ProvidedPostgresqlOptions -> postgresContext.options.runMigrations
-    postgresContext.runtime is StovePostgresqlContainer -> !state.isSubsequentRun() || stove.runMigrationsAlways
+    postgresContext.runtime is StovePostgresqlContainer ->
+      (!state.isSubsequentRun() && postgresContext.images?.isBaked != true) || stove.runMigrationsAlways
     else -> throw UnsupportedOperationException("Unsupported runtime type: ${postgresContext.runtime::class}")
   }
 
+  // A fresh container migrated in this run; the checkpoint flushes the migrations to disk before the commit.
+  private fun bakeMigratedImage() {
+    val images = postgresContext.images ?: return
+    if (!images.enabled || state.isSubsequentRun()) return
+    whenContainer { container ->
+      sqlOperations.execute("CHECKPOINT")
+      images.bake(container)
+    }
+  }
+
   private fun createExecuteAsRootFn(): suspend (String) -> Unit = when {
     postgresContext.options is ProvidedPostgresqlOptions -> { sql: String -> sqlOperations.execute(sql) }
 
@@ -0,0 +1,80 @@
+package com.trendyol.stove.postgres
+
+import com.trendyol.stove.containers.MigratedImageCache
+import com.trendyol.stove.system.Stove
+import com.trendyol.stove.system.stove
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import org.testcontainers.DockerClientFactory
+import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+
+/** Runs only in the `testWithBakedImage` task, where no Stove is started for the project. */
+class PostgresqlBakedImageTests :
+  FunSpec({
+    test("a system started from the baked image skips the migrations and keeps the migrated schema")
+      .config(enabledIf = { PostgresTestStrategy.useBakedImage() }) {
+        // A content hash unique to this run, so an image baked by an earlier run is never found.
+        val runId = UUID.randomUUID().toString()
+        val runs = AtomicInteger()
+        val options = {
+          PostgresqlOptions(databaseName = "testing", configureExposedConfiguration = { _ -> listOf() }).migrations {
+            register<BakedMigration> { BakedMigration(runId, runs) }
+          }
+        }
+        val images = MigratedImageCache(true, options().container.imageWithTag, options().migrationCollection)
+
+        suspend fun withStove(validation: suspend PostgresqlSystem.() -> Unit) {
+          Stove { bakeMigratedImages() }
+            .with {
+              postgresql { options() }
+              applicationUnderTest(NoOpApplication())
+            }.run()
+          try {
+            stove { postgresql { validation() } }
+          } finally {
+            Stove.stop()
+          }
+        }
+
+        try {
+          withStove { runs.get() shouldBe 1 }
+          MigratedImageCache(true, options().container.imageWithTag, options().migrationCollection).isBaked.shouldBeTrue()
+
+          withStove {
+            runs.get() shouldBe 1
+            shouldQuery<String>("SELECT description FROM BakedHistory", mapper = { it.string("description") }) { actual ->
+              actual shouldContainExactly listOf("BakedMigration")
+            }
+          }
+        } finally {
+          DockerClientFactory
+            .lazyClient()
+            .removeImageCmd(images.bakedImage)
+            .withForce(true)
+            .exec()
+        }
+      }
+  })
+
+private class BakedMigration(
+  override val contentHash: String,
+  private val runs: AtomicInteger
+) : PostgresqlMigration {
+  override val order: Int = 1
+
+  override suspend fun execute(connection: PostgresSqlMigrationContext) {
+    runs.incrementAndGet()
+    connection.operations.execute(
+      """
+      CREATE TABLE BakedHistory (
+        id serial PRIMARY KEY,
+        description VARCHAR (50) NOT NULL
+      );
+      INSERT INTO BakedHistory (description) VALUES ('BakedMigration');
+      """.trimIndent()
+    )
+  }
+}
@@ -57,8 +57,16 @@ sealed interface PostgresTestStrategy {
         ?: System.getProperty("useProvided")?.toBoolean()
         ?: false
 
-      return if (useProvided) ProvidedPostgresStrategy() else ContainerPostgresStrategy()
+      return when {
+        useBakedImage() -> BakedImagePostgresStrategy()
+        useProvided -> ProvidedPostgresStrategy()
+        else -> ContainerPostgresStrategy()
+      }
     }
+
+    fun useBakedImage(): Boolean = System.getenv("USE_BAKED_IMAGE")?.toBoolean()
+      ?: System.getProperty("useBakedImage")?.toBoolean()
+      ?: false
   }
 }
 
@@ -148,6 +156,22 @@ class ProvidedPostgresStrategy : PostgresTestStrategy {
   }
 }
 
+// ============================================================================
+// Baked image strategy
+// ============================================================================
+
+/**
+ * Used by the `testWithBakedImage` task. [PostgresqlBakedImageTests] runs Stove twice itself, once to bake the
+ * migrated image and once to start from it, so nothing is started for the project.
+ */
+class BakedImagePostgresStrategy : PostgresTestStrategy {
+  override val logger: Logger = LoggerFactory.getLogger(javaClass)
+
+  override suspend fun start() = logger.info("Starting PostgreSQL tests with baked image mode")
+
+  override suspend fun stop() = logger.info("PostgreSQL baked image tests completed")
+}
+
 // ============================================================================
 // Kotest project config - selects strategy based on environment
 // ============================================================================
@@ -37,8 +37,9 @@ abstract class RelationalDatabaseSystem<SELF : RelationalDatabaseSystem<SELF>> p
     exposedConfiguration = when (val runtime = context.runtime) {
       is StoveContainer -> {
         val jdbcContainer = runtime as JdbcDatabaseContainer<*>
-        state.capture {
+        state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
           jdbcContainer.start()
+          state.own(runtime)
           RelationalDatabaseExposedConfiguration(
             jdbcUrl = jdbcContainer.jdbcUrl,
             host = jdbcContainer.host,
@@ -197,7 +197,7 @@ fun WithDsl.redis(
       options.container
         .useContainerFn(dockerImageName)
         .withCommand("redis-server", "--requirepass", options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveRedisContainer }
         .apply(options.container.containerFn)
     }
@@ -222,7 +222,7 @@ fun WithDsl.redis(
       options.container
         .useContainerFn(dockerImageName)
         .withCommand("redis-server", "--requirepass", options.password)
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveRedisContainer }
         .apply(options.container.containerFn)
     }
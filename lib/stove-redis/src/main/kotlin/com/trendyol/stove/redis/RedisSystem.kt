@@ -194,8 +194,9 @@ class RedisSystem(
     }
 
   private suspend fun startRedisContainer(container: StoveRedisContainer): RedisExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { listOf(it.host to it.port) }) {
       container.start()
+      state.own(container)
       RedisExposedConfiguration(
         host = container.host,
         port = container.firstMappedPort,
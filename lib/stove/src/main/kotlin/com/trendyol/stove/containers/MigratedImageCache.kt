@@ -0,0 +1,69 @@
+package com.trendyol.stove.containers
+
+import com.github.dockerjava.api.DockerClient
+import com.trendyol.stove.database.migrations.*
+import org.slf4j.*
+import org.testcontainers.DockerClientFactory
+import java.util.*
+
+/**
+ * Keeps migrated containers as local images, so later runs start with the migrations already applied.
+ *
+ * The first run starts the configured [image], runs the migrations, and [bakes][bake] the container
+ * into [bakedImage] with `docker commit`. The image is tagged with the [fingerprint][MigrationCollection.fingerprint]
+ * of the migration set, so a later run whose image and migrations match finds it, starts from it and
+ * skips the migrations. Changing a migration's class, `order` or `contentHash`, or the image tag, bakes
+ * a new image.
+ *
+ * `docker commit` does not keep volumes. A system only benefits when the container writes its data
+ * outside the volumes its image declares, for example PostgreSQL with `PGDATA` moved out of its volume.
+ *
+ * Enabled with [StoveOptionsDsl.bakeMigratedImages][com.trendyol.stove.system.StoveOptionsDsl.bakeMigratedImages].
+ * Used by systems while they register their containers:
+ *
+ * ```kotlin
+ * val images = MigratedImageCache(stove.bakeMigratedImages, options.container.imageWithTag, options.migrationCollection)
+ * val image = if (images.isBaked) images.bakedImage else options.container.imageWithTag
+ * // after the migrations ran
+ * images.bake(container)
+ * ```
+ *
+ * @param image the configured image with its tag
+ */
+class MigratedImageCache(
+  val enabled: Boolean,
+  image: String,
+  migrations: MigrationCollection<*>,
+  private val docker: Lazy<DockerClient> = lazy { DockerClientFactory.lazyClient() }
+) {
+  private val logger: Logger = LoggerFactory.getLogger(javaClass)
+
+  val fingerprint: String = migrations.fingerprint(image)
+
+  /** `stove-migrated/<image>:<fingerprint>`, a local image that is never pulled. */
+  val bakedImage: String =
+    "$REPOSITORY/${image.substringBeforeLast(':').substringAfterLast('/').lowercase(Locale.ROOT)}:${fingerprint.take(TAG_LENGTH)}"
+
+  /** Whether [bakedImage] exists locally; when it does, the migrations are already in it. */
+  val isBaked: Boolean by lazy {
+    enabled && docker.value.listImagesCmd().withReferenceFilter(bakedImage).exec().isNotEmpty()
+  }
+
+  /** Commits [container] as [bakedImage], unless caching is disabled or the container was started from it. */
+  fun bake(container: StoveContainer) {
+    if (!enabled || isBaked) return
+    docker.value
+      .commitCmd(container.containerIdAccess)
+      .withRepository(bakedImage.substringBeforeLast(':'))
+      .withTag(bakedImage.substringAfterLast(':'))
+      .withLabels(mapOf(FINGERPRINT_LABEL to fingerprint))
+      .exec()
+    logger.info("Migrated container is baked into {} for later runs", bakedImage)
+  }
+
+  companion object {
+    const val REPOSITORY: String = "stove-migrated"
+    const val FINGERPRINT_LABEL: String = "com.trendyol.stove.migrations"
+    private const val TAG_LENGTH = 32
+  }
+}
@@ -6,6 +6,7 @@ import com.github.dockerjava.api.async.ResultCallback
 import com.github.dockerjava.api.model.*
 import com.trendyol.stove.system.abstractions.SystemRuntime
 import org.testcontainers.DockerClientFactory
+import org.testcontainers.containers.GenericContainer
 import org.testcontainers.utility.DockerImageName
 import java.io.ByteArrayOutputStream
 import java.util.concurrent.*
@@ -87,8 +88,12 @@ import java.util.concurrent.*
 interface StoveContainer : SystemRuntime {
   val imageNameAccess: DockerImageName
 
+  /**
+   * The id of the running container: the one Testcontainers started, or else the first container running [imageNameAccess],
+   * such as a container reused from an earlier run.
+   */
   val containerIdAccess: String
-    get() = dockerClientAccess.value
+    get() = (this as? GenericContainer<*>)?.containerId ?: dockerClientAccess.value
       .listContainersCmd()
       .exec()
       .firstOrNone { it.image == imageNameAccess.asCanonicalNameString() }
@@ -110,6 +110,16 @@ interface DatabaseMigration<in TConnection> {
    * @see MigrationPriority
    */
   val order: Int
+
+  /**
+   * A hash of what this migration applies, such as its SQL script, or `null` when its class name and
+   * [order] identify it well enough.
+   *
+   * It is part of the [MigrationCollection.fingerprint], so changing it invalidates images that
+   * [MigratedImageCache][com.trendyol.stove.containers.MigratedImageCache] baked with the old content.
+   */
+  val contentHash: String?
+    get() = null
 }
 
 /**
@@ -1,8 +1,17 @@
 package com.trendyol.stove.database.migrations
 
+import com.trendyol.stove.reporting.StartupPhaseScope
+import com.trendyol.stove.reporting.StartupProfile
 import com.trendyol.stove.system.annotations.StoveDsl
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.currentCoroutineContext
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.security.MessageDigest
 import kotlin.reflect.KClass
 import kotlin.reflect.full.createInstance
+import kotlin.time.measureTime
 
 /**
  * A registry for database migrations that manages registration, ordering, and execution.
@@ -65,6 +74,8 @@ import kotlin.reflect.full.createInstance
  * }
  * ```
  *
+ * Migrations with the same order run one at a time unless [parallelism] allows more.
+ *
  * @param TConnection The database connection type (e.g., `Connection`, `MongoClient`).
  * @see DatabaseMigration
  * @see MigrationPriority
@@ -72,6 +83,7 @@ import kotlin.reflect.full.createInstance
 @StoveDsl
 class MigrationCollection<TConnection> {
   private val types: MutableMap<KClass<*>, DatabaseMigration<TConnection>> = mutableMapOf()
+  private var parallelism: Int = 1
 
   /**
    * Registers a migration by its class, creating an instance using reflection.
@@ -189,18 +201,93 @@ class MigrationCollection<TConnection> {
     > replace(): MigrationCollection<TConnection> =
     this.replace(TOld::class, TNew::class.createInstance()).let { this }
 
+  /**
+   * Runs up to [parallelism] migrations of the same [DatabaseMigration.order] at a time.
+   *
+   * Migrations sharing an order form one stage; stages still run one after another, in ascending order.
+   * The default of `1` runs every migration sequentially, in registration order within a stage.
+   * Raise it for independent migrations, such as one index or collection each:
+   *
+   * ```kotlin
+   * migrations {
+   *     parallelism(8)
+   *     register<CreateProductsIndex>()  // order = 1
+   *     register<CreateOrdersIndex>()    // order = 1, runs alongside CreateProductsIndex
+   *     register<SeedProducts>()         // order = 2, runs once both indices exist
+   * }
+   * ```
+   *
+   * Every migration of a stage receives the same connection the system passed to [run]. Clients such as the
+   * Elasticsearch, MongoDB or Couchbase ones take concurrent calls, but the relational systems pass one JDBC
+   * session: concurrent migrations interleave their statements on it and share its transaction. Keep the default
+   * for those, or open a connection of your own inside each migration.
+   *
+   * @param parallelism How many migrations of one stage may run concurrently.
+   * @return This collection for fluent chaining.
+   */
+  fun parallelism(parallelism: Int): MigrationCollection<TConnection> = apply {
+    require(parallelism > 0) { "parallelism must be positive" }
+    this.parallelism = parallelism
+  }
+
   /**
    * Executes all registered migrations in order.
    *
-   * Migrations are sorted by [DatabaseMigration.order] (ascending)
-   * and executed sequentially.
+   * Migrations are grouped into stages by [DatabaseMigration.order] (ascending), and the migrations
+   * of a stage run up to [parallelism] at a time. The first failure cancels the rest of its stage.
+   * During startup, the wall time of each migration and of all of them is recorded in the [StartupProfile]
+   * of the system running them.
    *
    * @param connection The active database connection for executing migrations.
    */
-  suspend fun run(connection: TConnection): Unit = types
-    .map {
-      it.value
-    }.sortedBy {
-      it.order
-    }.forEach { it.execute(connection) }
+  suspend fun run(connection: TConnection) {
+    val scope = currentCoroutineContext()[StartupPhaseScope]
+    val elapsed = measureTime {
+      types.values
+        .groupBy { it.order }
+        .toSortedMap()
+        .values
+        .forEach { stage -> runStage(stage, connection, scope) }
+    }
+    scope?.record(StartupProfile.MIGRATIONS, elapsed)
+  }
+
+  private suspend fun runStage(
+    stage: List<DatabaseMigration<TConnection>>,
+    connection: TConnection,
+    scope: StartupPhaseScope?
+  ) {
+    if (parallelism == 1 || stage.size == 1) {
+      stage.forEach { execute(it, connection, scope) }
+      return
+    }
+    val permits = Semaphore(parallelism)
+    coroutineScope {
+      stage.forEach { migration -> launch { permits.withPermit { execute(migration, connection, scope) } } }
+    }
+  }
+
+  private suspend fun execute(
+    migration: DatabaseMigration<TConnection>,
+    connection: TConnection,
+    scope: StartupPhaseScope?
+  ) {
+    val elapsed = measureTime { migration.execute(connection) }
+    scope?.record(StartupProfile.migration(migration::class.simpleName ?: migration::class.java.name), elapsed)
+  }
+
+  /**
+   * Identifies the result of running these migrations on [image]: a SHA-256 over the image and every
+   * migration's class name, [DatabaseMigration.order] and [DatabaseMigration.contentHash].
+   * Registration order does not matter.
+   */
+  fun fingerprint(image: String): String {
+    val migrations = types.values
+      .map { "${it::class.java.name}:${it.order}:${it.contentHash.orEmpty()}" }
+      .sorted()
+    return MessageDigest
+      .getInstance("SHA-256")
+      .digest((listOf(image) + migrations).joinToString("\n").toByteArray())
+      .joinToString("") { "%02x".format(it) }
+  }
 }
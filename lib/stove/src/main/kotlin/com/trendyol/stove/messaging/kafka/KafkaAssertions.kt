@@ -10,6 +10,8 @@ import com.trendyol.stove.tracing.TraceContext
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.withTimeoutOrNull
 import org.slf4j.*
+import java.lang.ref.SoftReference
+import java.lang.ref.WeakReference
 import kotlin.reflect.KClass
 import kotlin.time.Duration
 
@@ -22,6 +24,7 @@ class KafkaAssertions<R : KafkaRecord>(
   private val failIfConsumedWhileWaitingForFailure: Boolean = false
 ) {
   private val logger: Logger = LoggerFactory.getLogger(javaClass)
+  private val parsedValues = ParsedValueCache(PARSED_VALUE_CACHE_SIZE)
 
   suspend fun <T : Any> waitUntilConsumed(
     atLeastIn: Duration,
@@ -33,15 +36,9 @@ class KafkaAssertions<R : KafkaRecord>(
       within = atLeastIn,
       subject = "While expecting consuming of ${clazz.java.simpleName}",
       testId = testId,
-      query = {
-        store.consumedMessages().scoped(testId).map(ConsumptionOutcome<R>::Consumed) +
-          store.failedMessages().scoped(testId).map(ConsumptionOutcome<R>::Failed) +
-          store.retriedMessages().scoped(testId).map(ConsumptionOutcome<R>::Retried)
-      }
-    ) { outcome ->
-      matches(outcome.record, clazz, condition) &&
-        (outcome !is ConsumptionOutcome.Consumed || !requireConsumedCommit || store.isCommitted(outcome.record))
-    }
+      sources = consumptionSources(),
+      ready = ::isSettled
+    ) { record -> matches(record, clazz, condition) }
 
     matching.filterIsInstance<ConsumptionOutcome.Failed<R>>().firstOrNull()?.let {
       throw AssertionError(
@@ -65,10 +62,59 @@ class KafkaAssertions<R : KafkaRecord>(
       within = atLeastIn,
       subject = "While expecting publishing of ${clazz.java.simpleName}",
       testId = testId,
-      query = { store.publishedMessages().scoped(testId) }
+      sources = listOf(source(store.publishedCursor()))
     ) { matches(it, clazz, condition) }
   }
 
+  /**
+   * Waits until a published record matches each of [expectations] and returns the matched values in
+   * the order the expectations were declared.
+   */
+  suspend fun waitUntilAllPublished(
+    atLeastIn: Duration,
+    expectations: List<KafkaExpectation<*>>
+  ): List<Any> {
+    val testId = TraceContext.current()?.testId
+    val matched = awaitAll(
+      within = atLeastIn,
+      subject = "While expecting publishing of ${expectations.size} message(s)",
+      testId = testId,
+      expectations = expectations,
+      sources = listOf(source(store.publishedCursor()))
+    )
+    return expectations.zip(matched) { expectation, record -> valueOf(expectation, record) }
+  }
+
+  /**
+   * Waits until a consumed record matches each of [expectations] and returns the matched values in
+   * the order the expectations were declared. Expectations matched by a failed or retried record
+   * are reported together once every expectation is resolved.
+   */
+  suspend fun waitUntilAllConsumed(
+    atLeastIn: Duration,
+    expectations: List<KafkaExpectation<*>>
+  ): List<Any> {
+    val testId = TraceContext.current()?.testId
+    val matched = awaitAll(
+      within = atLeastIn,
+      subject = "While expecting consuming of ${expectations.size} message(s)",
+      testId = testId,
+      expectations = expectations,
+      sources = consumptionSources(),
+      ready = ::isSettled
+    )
+
+    val unsuccessful = expectations.zip(matched).filter { (_, outcome) -> outcome !is ConsumptionOutcome.Consumed }
+    if (unsuccessful.isNotEmpty()) {
+      val details = unsuccessful.joinToString("\n") { (expectation, outcome) ->
+        val verb = if (outcome is ConsumptionOutcome.Failed) "failed" else "was retried"
+        "  - ${expectation.description} $verb: ${outcome.record}"
+      }
+      throw AssertionError("Messages were expected to be consumed successfully, but:\n$details \n ${dumpMessages(testId)}")
+    }
+    return expectations.zip(matched) { expectation, outcome -> valueOf(expectation, outcome.record) }
+  }
+
   suspend fun <T : Any> waitUntilFailed(
     atLeastIn: Duration,
     clazz: KClass<T>,
@@ -79,17 +125,14 @@ class KafkaAssertions<R : KafkaRecord>(
       within = atLeastIn,
       subject = "While expecting failure of ${clazz.java.simpleName}",
       testId = testId,
-      query = {
-        store.failedMessages().scoped(testId) +
-          store
-            .publishedMessages()
-            .filter { isErrorTopic(it.topic) }
-            .scoped(testId)
-      }
+      sources = listOf(
+        source(store.failedCursor()),
+        source(store.publishedCursor(), include = { isErrorTopic(it.topic) })
+      )
     ) { record -> matches(record, clazz, condition) }
 
     if (failIfConsumedWhileWaitingForFailure) {
-      store.consumedMessages().scoped(testId).firstOrNull { consumed ->
+      store.consumedMessages(testId).firstOrNull { consumed ->
         matching.any { failed -> consumed.sameMessageAs(failed) }
       }?.let {
         throw AssertionError("Message was expected to fail, but was consumed successfully: $it \n ${dumpMessages(testId)}")
@@ -111,24 +154,44 @@ class KafkaAssertions<R : KafkaRecord>(
       subject = "While expecting retrying of ${clazz.java.simpleName}",
       testId = testId,
       count = times,
-      query = { store.retriedMessages().scoped(testId) }
+      sources = listOf(source(store.retriedCursor()))
     ) { matches(it, clazz, condition) }
   }
 
+  /**
+   * Waits until [count] records from [sources] satisfy [predicate] and [ready].
+   *
+   * Each source is read through a cursor, so every record is scoped, deserialized, and tested
+   * against [predicate] once per waiter; later version bumps only look at new arrivals. Records
+   * that matched are kept, keyed by source and id, and only [ready] is re-evaluated for them.
+   */
   private suspend fun <T> awaitRecords(
     within: Duration,
     subject: String,
     testId: String?,
     count: Int = 1,
-    query: () -> Collection<T>,
-    predicate: (T) -> Boolean
+    sources: List<RecordSource<R, T>>,
+    ready: (T) -> Boolean = { true },
+    predicate: (R) -> Boolean
   ): Collection<T> {
     require(count > 0) { "count must be greater than zero" }
 
+    val candidates = LinkedHashMap<Pair<Int, String>, T>()
     var matching = emptyList<T>()
     val matched = withTimeoutOrNull(within) {
       store.version.first {
-        matching = query().filter(predicate)
+        sources.forEachIndexed { index, source ->
+          source.cursor.advance().forEach { record ->
+            val key = index to record.id
+            if (record.headers.belongsToTest(testId) && source.include(record) && predicate(record)) {
+              candidates[key] = source.wrap(record)
+            } else {
+              // A re-recorded id replaces its earlier version, which may have matched.
+              candidates.remove(key)
+            }
+          }
+        }
+        matching = candidates.values.filter(ready)
         matching.size >= count
       }
       matching
@@ -139,11 +202,71 @@ class KafkaAssertions<R : KafkaRecord>(
     )
   }
 
+  /**
+   * Batch form of [awaitRecords]: waits until each of [expectations] is matched by a record from
+   * [sources] that is also [ready], and returns one match per expectation in declaration order.
+   *
+   * Every arriving record is scoped once and tested only against the expectations still pending;
+   * an expectation stops looking at records once it is resolved. On timeout, the failure lists
+   * exactly the expectations that were never met.
+   */
+  private suspend fun <T : Any> awaitAll(
+    within: Duration,
+    subject: String,
+    testId: String?,
+    expectations: List<KafkaExpectation<*>>,
+    sources: List<RecordSource<R, T>>,
+    ready: (T) -> Boolean = { true }
+  ): List<T> {
+    require(expectations.isNotEmpty()) { "at least one expectation is required" }
+
+    val candidates = List(expectations.size) { LinkedHashMap<Pair<Int, String>, T>() }
+    val resolved = HashMap<Int, T>()
+    val pending = expectations.indices.toMutableList()
+    val completed = withTimeoutOrNull(within) {
+      store.version.first {
+        sources.forEachIndexed { index, source ->
+          source.cursor.advance().forEach { record ->
+            val key = index to record.id
+            val eligible = record.headers.belongsToTest(testId) && source.include(record)
+            pending.forEach { expectation ->
+              if (eligible && matches(record, expectations[expectation])) {
+                candidates[expectation][key] = source.wrap(record)
+              } else {
+                candidates[expectation].remove(key)
+              }
+            }
+          }
+        }
+        pending.removeAll { expectation ->
+          candidates[expectation].values.firstOrNull(ready)?.also { resolved[expectation] = it } != null
+        }
+        pending.isEmpty()
+      }
+    }
+    if (completed == null) {
+      val unmet = pending.joinToString("\n") { "  - ${expectations[it].description}" }
+      throw AssertionError(
+        "GOT A TIMEOUT: $subject. ${pending.size} of ${expectations.size} expectation(s) were not met within $within:\n" +
+          "$unmet\n${dumpMessages(testId)}"
+      )
+    }
+    return expectations.indices.map(resolved::getValue)
+  }
+
+  private fun <T : Any> matches(record: R, expectation: KafkaExpectation<T>): Boolean =
+    matches(record, expectation.clazz, expectation.condition)
+
+  private fun <T : Any> valueOf(expectation: KafkaExpectation<T>, record: R): T = parsedValues
+    .getOrParse(record, expectation.clazz.java) { deserializeCatching(record.value, expectation.clazz) }
+    .getOrThrow()
+
   private fun <T : Any> matches(
     record: R,
     clazz: KClass<T>,
     condition: (ParsedMessage<T>) -> Boolean
-  ): Boolean = deserializeCatching(record.value, clazz)
+  ): Boolean = parsedValues
+    .getOrParse(record, clazz.java) { deserializeCatching(record.value, clazz) }
     .map { value ->
       val parsed = record.reason?.let { FailedParsedMessage(value.some(), record.metadata, it) }
         ?: SuccessfulParsedMessage(value.some(), record.metadata)
@@ -161,7 +284,26 @@ class KafkaAssertions<R : KafkaRecord>(
     runCatching { serde.deserialize(value, clazz.java) }
       .onFailure { exception -> logger.debug("Failed to deserialize Kafka message: ${String(value)}", exception) }
 
-  private fun Collection<R>.scoped(testId: String?): List<R> = filter { it.headers.belongsToTest(testId) }
+  private class RecordSource<R : KafkaRecord, out T>(
+    val cursor: KafkaRecordCursor<R>,
+    val include: (R) -> Boolean = { true },
+    val wrap: (R) -> T
+  )
+
+  private fun source(
+    cursor: KafkaRecordCursor<R>,
+    include: (R) -> Boolean = { true }
+  ): RecordSource<R, R> = RecordSource(cursor, include) { it }
+
+  private fun consumptionSources(): List<RecordSource<R, ConsumptionOutcome<R>>> = listOf(
+    RecordSource(store.consumedCursor(), wrap = ConsumptionOutcome<R>::Consumed),
+    RecordSource(store.failedCursor(), wrap = ConsumptionOutcome<R>::Failed),
+    RecordSource(store.retriedCursor(), wrap = ConsumptionOutcome<R>::Retried)
+  )
+
+  // A commit can arrive after its record, so readiness is re-checked while the match is memoized.
+  private fun isSettled(outcome: ConsumptionOutcome<R>): Boolean =
+    outcome !is ConsumptionOutcome.Consumed || !requireConsumedCommit || store.isCommitted(outcome.record)
 
   private fun dumpMessages(testId: String?): String =
     compactKafkaAssertionDump(
@@ -169,6 +311,10 @@ class KafkaAssertions<R : KafkaRecord>(
       runningOnCI = isRunningOnCI()
     )
 
+  private companion object {
+    const val PARSED_VALUE_CACHE_SIZE = 10_000
+  }
+
   private sealed interface ConsumptionOutcome<out R : KafkaRecord> {
     val record: R
 
@@ -180,6 +326,47 @@ class KafkaAssertions<R : KafkaRecord>(
   }
 }
 
+/**
+ * Bounded LRU of parsed record values keyed by (record id, target class), so a payload is decoded at
+ * most once per type across every assertion that waits on it. Failures are cached too. Entries hold
+ * the parsed record weakly, so they never keep an evicted record's payload alive, and a record
+ * re-recorded under the same id is parsed again. Parsed values are held softly: under memory pressure
+ * the collector may drop them, and the next lookup parses the record again.
+ */
+internal class ParsedValueCache(
+  private val maxEntries: Int
+) {
+  private class Entry(
+    val record: WeakReference<KafkaRecord>,
+    val value: SoftReference<Result<Any>>
+  )
+
+  private val entries = object : LinkedHashMap<Pair<String, Class<*>>, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true) {
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Pair<String, Class<*>>, Entry>?): Boolean = size > maxEntries
+  }
+
+  @Suppress("UNCHECKED_CAST")
+  fun <T : Any> getOrParse(
+    record: KafkaRecord,
+    clazz: Class<T>,
+    parse: () -> Result<T>
+  ): Result<T> {
+    val key = record.id to clazz
+    synchronized(entries) {
+      entries[key]?.takeIf { it.record.get() === record }?.value?.get()?.let { return it as Result<T> }
+    }
+    // Parsed outside the lock: two racing waiters may both decode once, which is harmless.
+    val parsed = parse()
+    synchronized(entries) { entries[key] = Entry(WeakReference(record), SoftReference(parsed)) }
+    return parsed
+  }
+
+  private companion object {
+    const val INITIAL_CAPACITY = 16
+    const val LOAD_FACTOR = 0.75f
+  }
+}
+
 internal fun compactKafkaAssertionDump(
   dump: String,
   runningOnCI: Boolean,
@@ -0,0 +1,65 @@
+package com.trendyol.stove.messaging.kafka
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Broker quotas behind the Kafka systems' `throttle` and `unthrottle`. Every client throttled through
+ * [throttle] is remembered, so [removeAll] can lift the quotas again, including when a system closes.
+ *
+ * A quota entity is a map of entity types to names, such as `client-id` or `user`. [alter] replaces the
+ * quotas of the given entities on the broker; a `null` rate removes that quota. The Kafka systems pass
+ * their admin client's `alterClientQuotas`.
+ */
+class KafkaClientQuotas(
+  private val alter: suspend (entities: List<Map<String, String>>, produceBytesPerSec: Long?, fetchBytesPerSec: Long?) -> Unit
+) {
+  private val throttled: MutableSet<Map<String, String>> = ConcurrentHashMap.newKeySet()
+
+  /** The clients currently throttled, as quota entity entries. */
+  val clients: List<Map<String, String>>
+    get() = throttled.toList()
+
+  /** Replaces the quota of [entity]; a `null` rate leaves that direction unthrottled. */
+  suspend fun throttle(
+    entity: Map<String, String>,
+    produceBytesPerSec: Long?,
+    fetchBytesPerSec: Long?
+  ) {
+    alter(listOf(entity), produceBytesPerSec, fetchBytesPerSec)
+    throttled += entity
+  }
+
+  /** Removes every quota set through [throttle]. */
+  suspend fun removeAll() {
+    val entities = throttled.toList()
+    if (entities.isEmpty()) return
+    alter(entities, null, null)
+    throttled -= entities.toSet()
+  }
+
+  companion object {
+    const val CLIENT_ID: String = "client-id"
+    const val USER: String = "user"
+    const val PRODUCER_BYTE_RATE: String = "producer_byte_rate"
+    const val CONSUMER_BYTE_RATE: String = "consumer_byte_rate"
+
+    /**
+     * The quota entity of the clients identified by [clientId] and/or [user], validating the
+     * arguments of a `throttle` call.
+     */
+    fun entity(
+      clientId: String?,
+      user: String?,
+      produceBytesPerSec: Long?,
+      fetchBytesPerSec: Long?
+    ): Map<String, String> {
+      require(clientId != null || user != null) { "throttle needs a clientId or a user" }
+      require(produceBytesPerSec != null || fetchBytesPerSec != null) { "throttle needs a produce or a fetch rate" }
+      require((produceBytesPerSec ?: 1L) > 0 && (fetchBytesPerSec ?: 1L) > 0) { "Quota rates must be greater than zero" }
+      return buildMap {
+        clientId?.let { put(CLIENT_ID, it) }
+        user?.let { put(USER, it) }
+      }
+    }
+  }
+}
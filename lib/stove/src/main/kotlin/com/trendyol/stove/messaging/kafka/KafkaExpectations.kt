@@ -0,0 +1,44 @@
+package com.trendyol.stove.messaging.kafka
+
+import com.trendyol.stove.messaging.*
+import com.trendyol.stove.system.annotations.StoveDsl
+import kotlin.reflect.KClass
+
+/**
+ * One predicate of a batch Kafka assertion such as `shouldAllBePublished`.
+ *
+ * @param description names the expectation when the batch fails without matching it
+ */
+class KafkaExpectation<T : Any>(
+  val clazz: KClass<T>,
+  val description: String,
+  val condition: (ParsedMessage<T>) -> Boolean
+)
+
+/**
+ * Collects the expectations of one batch Kafka assertion. They share a single timeout and are
+ * evaluated together against each arriving record, instead of one wait and store scan per message.
+ */
+@StoveDsl
+class KafkaExpectations {
+  @PublishedApi
+  internal val expectations = mutableListOf<KafkaExpectation<*>>()
+
+  /**
+   * Expects a message of type [T] that satisfies [condition]. The same message may satisfy several
+   * expectations. [description] defaults to the type name and the expectation's position.
+   */
+  inline fun <reified T : Any> expect(
+    description: String = "${T::class.simpleName ?: "Unknown"} #${expectations.size + 1}",
+    crossinline condition: ObservedMessage<T>.() -> Boolean
+  ) {
+    expectations += KafkaExpectation(T::class, description) { parsed ->
+      parsed.message.isSome { condition(ObservedMessage(it, parsed.metadata)) }
+    }
+  }
+
+  fun toList(): List<KafkaExpectation<*>> = expectations.toList()
+
+  /** Distinct type names of the expectations, for report entries. */
+  fun typeNames(): String = expectations.map { it.clazz.simpleName ?: "Unknown" }.distinct().joinToString()
+}
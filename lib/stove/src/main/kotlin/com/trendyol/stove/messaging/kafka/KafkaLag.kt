@@ -0,0 +1,61 @@
+package com.trendyol.stove.messaging.kafka
+
+import kotlinx.coroutines.delay
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TimeSource
+
+/**
+ * Lag of one consumer group, measured [elapsed] after a lag wait started.
+ *
+ * @param byPartition end offset minus committed offset, keyed by `topic-partition`
+ */
+data class KafkaLagSample(
+  val elapsed: Duration,
+  val byPartition: Map<String, Long>
+) {
+  val total: Long get() = byPartition.values.sum()
+
+  override fun toString(): String = "$elapsed: $total"
+}
+
+/**
+ * Measures lag with [measure] until it drops to zero, backing off exponentially from
+ * [initialBackoff] up to [maxBackoff] between measurements.
+ *
+ * A measurement without partitions does not count as drained: a group that has not joined or
+ * committed yet has nothing to measure, not nothing left to read.
+ *
+ * Returns every sample taken, so callers can report the lag curve instead of only its last value.
+ * A timeout throws an [AssertionError] that carries the whole series and the partitions still
+ * lagging.
+ */
+suspend fun awaitNoKafkaLag(
+  subject: String,
+  within: Duration,
+  initialBackoff: Duration = 100.milliseconds,
+  maxBackoff: Duration = 2.seconds,
+  measure: suspend () -> Map<String, Long>
+): List<KafkaLagSample> {
+  val started = TimeSource.Monotonic.markNow()
+  val samples = mutableListOf<KafkaLagSample>()
+  var backoff = initialBackoff
+  while (true) {
+    val sample = KafkaLagSample(started.elapsedNow(), measure())
+    samples += sample
+    if (sample.byPartition.isNotEmpty() && sample.total == 0L) return samples
+
+    val remaining = within - started.elapsedNow()
+    if (remaining <= Duration.ZERO) {
+      val lagging = sample.byPartition.filterValues { it > 0 }.entries.joinToString { (partition, lag) -> "$partition=$lag" }
+      val state = if (sample.byPartition.isEmpty()) "No partition was measured" else "Lag was still ${sample.total}"
+      throw AssertionError(
+        "GOT A TIMEOUT: $subject. $state after $within ($lagging). " +
+          "Lag over time: ${samples.joinToString(prefix = "[", postfix = "]")}"
+      )
+    }
+    delay(minOf(backoff, remaining))
+    backoff = minOf(backoff * 2, maxBackoff)
+  }
+}
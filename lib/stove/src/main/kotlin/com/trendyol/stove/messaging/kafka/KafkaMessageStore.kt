@@ -1,24 +1,44 @@
 package com.trendyol.stove.messaging.kafka
 
 import kotlinx.coroutines.flow.*
+import org.slf4j.*
+import java.nio.ByteBuffer
+import java.util.TreeMap
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentSkipListMap
-import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.*
 
 /**
  * Signal-driven store shared by every Kafka integration.
  *
  * The generic record keeps transport-specific data available to its owning module while all
  * storage, replay, scoping, commit, and dump semantics remain common.
+ *
+ * Records are indexed by test id and topic, and commits by topic-partition, when they are stored,
+ * so scoped reads cost time proportional to a test's own records rather than the suite's history.
+ *
+ * Retention is bounded two ways. [KafkaRetentionListener] drops records owned by completed tests and
+ * untagged records outside every open test window; [retention] caps the whole store, evicting the
+ * oldest records first once either limit is exceeded. Record values can also be spilled off-heap, see
+ * [payloadOf].
  */
-class KafkaMessageStore<R : KafkaRecord> {
+class KafkaMessageStore<R : KafkaRecord>(
+  private val retention: KafkaRetention = KafkaRetention()
+) {
   private val consumed = InsertionOrderedRecordStore<R>()
   private val published = InsertionOrderedRecordStore<R>()
   private val committed = InsertionOrderedRecordStore<R>()
   private val retried = InsertionOrderedRecordStore<R>()
   private val failed = InsertionOrderedRecordStore<R>()
   private val acknowledged = InsertionOrderedRecordStore<R>()
-  private val nextSequence = AtomicLong()
+  private val kinds = listOf(consumed, published, committed, retried, failed, acknowledged)
+  private val writeLock = Any()
+  private val committedOffsets = ConcurrentHashMap<Pair<String, Int>, Long>()
+  private var nextSequence = 0L
+  private val testWindowStarts = ConcurrentHashMap<String, Long>()
+  private val spilledPayloads = retention.spill?.let(::KafkaPayloadSegments)
+  private val capReached = AtomicBoolean(false)
+  private val logger: Logger = LoggerFactory.getLogger(javaClass)
 
   private val mutableVersion = MutableStateFlow(0L)
 
@@ -28,7 +48,12 @@ class KafkaMessageStore<R : KafkaRecord> {
 
   fun recordPublished(record: R) = record(published, record)
 
-  fun recordCommitted(record: R) = record(committed, record)
+  fun recordCommitted(record: R) {
+    val partition = record.partition
+    val offset = record.offset
+    if (partition != null && offset != null) committedOffsets.merge(record.topic to partition, offset, ::maxOf)
+    record(committed, record)
+  }
 
   fun recordRetried(record: R) = record(retried, record)
 
@@ -48,17 +73,45 @@ class KafkaMessageStore<R : KafkaRecord> {
 
   fun acknowledgedMessages(): Collection<R> = acknowledged.values()
 
-  fun consumedRecords(): Flow<R> = replayThenLive(::consumedMessages)
+  /** Consumed records that belong to [testId] (untagged records included), in insertion order. */
+  fun consumedMessages(testId: String?): Collection<R> = consumed.scoped(testId)
+
+  fun publishedMessages(testId: String?): Collection<R> = published.scoped(testId)
+
+  fun retriedMessages(testId: String?): Collection<R> = retried.scoped(testId)
+
+  fun failedMessages(testId: String?): Collection<R> = failed.scoped(testId)
+
+  /** Commits on the topic-partitions [records] were consumed from. */
+  fun committedMessagesFor(records: Collection<KafkaRecord>): List<R> {
+    val topicPartitions = records.map { it.topic to it.partition }.toSet()
+    return topicPartitions
+      .map { (topic, _) -> topic }
+      .distinct()
+      .flatMap { topic -> committed.onTopic(topic) }
+      .filter { (it.topic to it.partition) in topicPartitions }
+      .sortedBy { committed.sequenceOf(it) }
+  }
+
+  fun consumedRecords(): Flow<R> = replayThenLive(consumed)
+
+  fun publishedRecords(): Flow<R> = replayThenLive(published)
+
+  fun committedRecords(): Flow<R> = replayThenLive(committed)
 
-  fun publishedRecords(): Flow<R> = replayThenLive(::publishedMessages)
+  fun retriedRecords(): Flow<R> = replayThenLive(retried)
 
-  fun committedRecords(): Flow<R> = replayThenLive(::committedMessages)
+  fun failedRecords(): Flow<R> = replayThenLive(failed)
 
-  fun retriedRecords(): Flow<R> = replayThenLive(::retriedMessages)
+  fun acknowledgedRecords(): Flow<R> = replayThenLive(acknowledged)
 
-  fun failedRecords(): Flow<R> = replayThenLive(::failedMessages)
+  internal fun consumedCursor(): KafkaRecordCursor<R> = KafkaRecordCursor(consumed)
 
-  fun acknowledgedRecords(): Flow<R> = replayThenLive(::acknowledgedMessages)
+  internal fun publishedCursor(): KafkaRecordCursor<R> = KafkaRecordCursor(published)
+
+  internal fun retriedCursor(): KafkaRecordCursor<R> = KafkaRecordCursor(retried)
+
+  internal fun failedCursor(): KafkaRecordCursor<R> = KafkaRecordCursor(failed)
 
   fun isCommitted(record: KafkaRecord): Boolean {
     val partition = record.partition ?: return false
@@ -70,31 +123,63 @@ class KafkaMessageStore<R : KafkaRecord> {
     topic: String,
     partition: Int,
     offset: Long
-  ): Boolean = committedMessages()
-    .asSequence()
-    .filter { it.topic == topic && it.partition == partition }
-    .any { committedRecord -> committedRecord.offset?.let { it > offset } == true }
+  ): Boolean = committedOffsets[topic to partition]?.let { it > offset } == true
+
+  /**
+   * Payload for a record about to be stored. With [KafkaRetention.spill] set, large values are copied
+   * off-heap; otherwise the record shares [value], which the caller must not modify afterwards.
+   */
+  fun payloadOf(value: ByteBuffer): KafkaPayload = spilledPayloads?.store(value) ?: BufferPayload(value)
+
+  /** Opens the window in which untagged records may belong to [testId]. */
+  fun startTest(testId: String) {
+    synchronized(writeLock) { testWindowStarts[testId] = nextSequence }
+  }
+
+  /**
+   * Drops the records tagged with [testId] and closes its window. Committed offsets are kept, so
+   * [isCommitted] still answers for partitions whose commit records are gone.
+   */
+  fun clear(testId: String) {
+    synchronized(writeLock) {
+      testWindowStarts.remove(testId)
+      kinds.forEach { it.removeTagged(testId) }
+    }
+  }
+
+  /**
+   * Drops untagged records stored before the oldest open test window started; no open test can claim
+   * them. Commit and acknowledgement records carry no headers and are pruned the same way.
+   */
+  fun pruneUntaggedOutsideWindows() {
+    synchronized(writeLock) {
+      val oldestRetained = testWindowStarts.values.minOrNull() ?: nextSequence
+      kinds.forEach { it.removeUntaggedThrough(oldestRetained) }
+    }
+  }
 
   fun dump(testId: String?): String {
     if (testId == null) return toString()
 
-    val scopedConsumed = consumedMessages().filter { it.headers.belongsToTest(testId) }
-    val scopedPublished = publishedMessages().filter { it.headers.belongsToTest(testId) }
-    val scopedRetried = retriedMessages().filter { it.headers.belongsToTest(testId) }
-    val scopedFailed = failedMessages().filter { it.headers.belongsToTest(testId) }
-    val topicPartitions = scopedConsumed.map { it.topic to it.partition }.toSet()
-    val publishedTopics = scopedPublished.map { it.topic }.toSet()
-    val scopedCommitted = committedMessages().filter { (it.topic to it.partition) in topicPartitions }
+    val scopedConsumed = consumedMessages(testId)
+    val scopedPublished = publishedMessages(testId)
+    val scopedRetried = retriedMessages(testId)
+    val scopedFailed = failedMessages(testId)
     // Commit and acknowledgement wire records do not carry headers. Scope them through the
     // header-bearing records they describe instead of pretending they have their own test id.
-    val scopedAcknowledged = acknowledgedMessages().filter { it.topic in publishedTopics }
-
-    val hidden = (consumedMessages().size - scopedConsumed.size) +
-      (publishedMessages().size - scopedPublished.size) +
-      (committedMessages().size - scopedCommitted.size) +
-      (retriedMessages().size - scopedRetried.size) +
-      (failedMessages().size - scopedFailed.size) +
-      (acknowledgedMessages().size - scopedAcknowledged.size)
+    val scopedCommitted = committedMessagesFor(scopedConsumed)
+    val scopedAcknowledged = scopedPublished
+      .map { it.topic }
+      .distinct()
+      .flatMap { topic -> acknowledged.onTopic(topic) }
+      .sortedBy { acknowledged.sequenceOf(it) }
+
+    val hidden = (consumed.size() - scopedConsumed.size) +
+      (published.size() - scopedPublished.size) +
+      (committed.size() - scopedCommitted.size) +
+      (retried.size() - scopedRetried.size) +
+      (failed.size() - scopedFailed.size) +
+      (acknowledged.size() - scopedAcknowledged.size)
 
     val hiddenNote = if (hidden > 0) "\n|($hidden message(s) from other tests hidden)" else ""
     return render(
@@ -121,14 +206,30 @@ class KafkaMessageStore<R : KafkaRecord> {
     target: InsertionOrderedRecordStore<R>,
     record: R
   ) {
-    target.put(nextSequence.incrementAndGet(), record)
+    // Sequence allocation and insertion are one step, so a cursor that has seen sequence n has also
+    // seen every record below it; otherwise a slower writer could land behind an advanced cursor.
+    synchronized(writeLock) {
+      target.put(++nextSequence, record)
+      evictBeyondCap()
+    }
     mutableVersion.update { it + 1 }
   }
 
-  private fun replayThenLive(query: () -> Collection<R>): Flow<R> = flow {
+  private fun evictBeyondCap() {
+    while (kinds.sumOf { it.size() } > retention.maxRecords || kinds.sumOf { it.bytes() } > retention.maxBytes) {
+      val oldest = kinds.minByOrNull { it.oldestSequence() ?: Long.MAX_VALUE }?.takeIf { it.size() > 0 } ?: return
+      if (capReached.compareAndSet(false, true)) {
+        logger.warn("Kafka message store exceeded {}; evicting the oldest records. Assertions on them will not see them.", retention)
+      }
+      oldest.removeOldest()
+    }
+  }
+
+  private fun replayThenLive(records: InsertionOrderedRecordStore<R>): Flow<R> = flow {
+    val cursor = KafkaRecordCursor(records)
     val seen = HashSet<String>()
     version.collect {
-      query().forEach { record -> if (seen.add(record.id)) emit(record) }
+      cursor.advance().forEach { record -> if (seen.add(record.id)) emit(record) }
     }
   }
 
@@ -149,18 +250,98 @@ class KafkaMessageStore<R : KafkaRecord> {
     |Acknowledged: $acknowledged$suffix
   """.trimIndent().trimMargin()
 
-  private class InsertionOrderedRecordStore<R : KafkaRecord> {
+  internal class InsertionOrderedRecordStore<R : KafkaRecord> {
     private val sequenceById = ConcurrentHashMap<String, Long>()
     private val recordsBySequence = ConcurrentSkipListMap<Long, R>()
+    private val untagged = ConcurrentSkipListMap<Long, R>()
+    private val byTestId = ConcurrentHashMap<String, ConcurrentSkipListMap<Long, R>>()
+    private val byTopic = ConcurrentHashMap<String, ConcurrentSkipListMap<Long, R>>()
+    private val payloadBytes = AtomicLong()
 
     fun put(sequence: Long, record: R) {
       sequenceById.compute(record.id) { _, previousSequence ->
-        previousSequence?.let(recordsBySequence::remove)
+        previousSequence?.let(recordsBySequence::remove)?.let { previous -> unindex(previousSequence, previous) }
         recordsBySequence[sequence] = record
+        index(sequence, record)
         sequence
       }
     }
 
     fun values(): Collection<R> = recordsBySequence.values
+
+    /** Constant-time count; the skip list's own `size` walks every node. */
+    fun size(): Int = sequenceById.size
+
+    fun bytes(): Long = payloadBytes.get()
+
+    fun oldestSequence(): Long? = recordsBySequence.firstEntry()?.key
+
+    fun removeOldest() {
+      oldestSequence()?.let(::remove)
+    }
+
+    fun removeTagged(testId: String) {
+      byTestId.remove(testId)?.keys?.forEach(::remove)
+    }
+
+    fun removeUntaggedThrough(sequence: Long) {
+      untagged.headMap(sequence, true).keys.toList().forEach(::remove)
+    }
+
+    private fun remove(sequence: Long) {
+      val record = recordsBySequence.remove(sequence) ?: return
+      sequenceById.remove(record.id, sequence)
+      unindex(sequence, record)
+    }
+
+    fun after(sequence: Long): List<Map.Entry<Long, R>> = recordsBySequence.tailMap(sequence, false).entries.toList()
+
+    /** Mirrors [belongsToTest]: records tagged with [testId] plus untagged ones, in insertion order. */
+    fun scoped(testId: String?): Collection<R> {
+      if (testId == null) return values()
+      val tagged = byTestId[testId] ?: return untagged.values.toList()
+      if (untagged.isEmpty()) return tagged.values.toList()
+      return TreeMap<Long, R>(untagged).apply { putAll(tagged) }.values.toList()
+    }
+
+    fun onTopic(topic: String): Collection<R> = byTopic[topic]?.values.orEmpty()
+
+    fun sequenceOf(record: R): Long = sequenceById[record.id] ?: Long.MAX_VALUE
+
+    private fun index(sequence: Long, record: R) {
+      testBucket(record, create = true)?.put(sequence, record)
+      byTopic.computeIfAbsent(record.topic) { ConcurrentSkipListMap() }[sequence] = record
+      payloadBytes.addAndGet(record.heapSize.toLong())
+    }
+
+    private fun unindex(sequence: Long, record: R) {
+      testBucket(record, create = false)?.remove(sequence)
+      byTopic[record.topic]?.remove(sequence)
+      payloadBytes.addAndGet(-record.heapSize.toLong())
+    }
+
+    private fun testBucket(record: R, create: Boolean): ConcurrentSkipListMap<Long, R>? {
+      val testId = record.headers.stoveTestId() ?: return untagged
+      return if (create) byTestId.computeIfAbsent(testId) { ConcurrentSkipListMap() } else byTestId[testId]
+    }
+  }
+}
+
+/**
+ * Read position in one record kind of a [KafkaMessageStore].
+ *
+ * [advance] returns only the records stored since the previous call, so a waiter evaluates each
+ * record once instead of re-scanning the store on every version bump. A record re-recorded under the
+ * same id moves to a newer sequence and is returned again.
+ */
+internal class KafkaRecordCursor<R : KafkaRecord>(
+  private val records: KafkaMessageStore.InsertionOrderedRecordStore<R>
+) {
+  private var position = 0L
+
+  fun advance(): List<R> {
+    val fresh = records.after(position)
+    fresh.lastOrNull()?.let { position = it.key }
+    return fresh.map { it.value }
   }
 }
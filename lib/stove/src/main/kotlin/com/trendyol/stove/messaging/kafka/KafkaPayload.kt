@@ -0,0 +1,142 @@
+package com.trendyol.stove.messaging.kafka
+
+import java.lang.ref.SoftReference
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.*
+import java.nio.file.StandardOpenOption.*
+
+/**
+ * Value bytes of a record kept by a [KafkaMessageStore].
+ *
+ * A payload may wrap a heap array, share a buffer owned by the transport, or live in a memory-mapped
+ * spill segment. Only [size] is known up front; [bytes] materializes the value when an assertion or
+ * a dump reads it.
+ */
+sealed class KafkaPayload {
+  abstract val size: Int
+
+  /** Bytes this payload keeps on the Java heap; a spilled payload keeps none. */
+  open val heapSize: Int
+    get() = size
+
+  /**
+   * Heap payloads return their own array. The others copy once and keep the copy softly, so repeated
+   * reads share it until the collector needs the memory back. Callers must not modify the array.
+   */
+  abstract fun bytes(): ByteArray
+
+  companion object {
+    fun of(value: ByteArray): KafkaPayload = HeapPayload(value)
+  }
+}
+
+internal class HeapPayload(
+  private val value: ByteArray
+) : KafkaPayload() {
+  override val size: Int = value.size
+
+  override fun bytes(): ByteArray = value
+}
+
+/** A payload held outside a heap array, materialized on first read and then cached softly. */
+internal sealed class MaterializedPayload : KafkaPayload() {
+  @Volatile
+  private var materialized: SoftReference<ByteArray>? = null
+
+  protected abstract fun copy(): ByteArray
+
+  // Racing readers may each copy once; either copy is a valid value.
+  override fun bytes(): ByteArray = materialized?.get() ?: copy().also { materialized = SoftReference(it) }
+}
+
+/** Shares a buffer nobody mutates after the record is created, such as a Wire `ByteString`'s data. */
+internal class BufferPayload(
+  buffer: ByteBuffer
+) : MaterializedPayload() {
+  private val view = buffer.slice()
+  override val size: Int = view.remaining()
+
+  override fun copy(): ByteArray = ByteArray(size).also { view.get(0, it) }
+}
+
+internal class SpilledPayload(
+  private val segment: MappedByteBuffer,
+  private val position: Int,
+  override val size: Int
+) : MaterializedPayload() {
+  override val heapSize: Int
+    get() = 0
+
+  override fun copy(): ByteArray = ByteArray(size).also { segment.get(position, it) }
+}
+
+/**
+ * Opt-in spill of large record values into append-only, memory-mapped segment files.
+ *
+ * Values of at least [thresholdBytes] are copied into the current segment of [segmentBytes] and the
+ * record keeps only the segment, offset and length; smaller values stay where they are. Segment files
+ * are unlinked as soon as they are mapped, so nothing is left on disk after the JVM exits. A segment
+ * is unmapped once the records pointing into it are dropped by retention and garbage collected.
+ *
+ * @param directory where segment files are created; the JVM temp directory when `null`
+ */
+data class KafkaPayloadSpill(
+  val thresholdBytes: Int = DEFAULT_THRESHOLD_BYTES,
+  val segmentBytes: Int = DEFAULT_SEGMENT_BYTES,
+  val directory: Path? = null
+) {
+  init {
+    require(thresholdBytes > 0) { "thresholdBytes must be greater than zero" }
+    require(segmentBytes >= thresholdBytes) { "segmentBytes must be at least thresholdBytes" }
+  }
+
+  companion object {
+    const val DEFAULT_THRESHOLD_BYTES: Int = 64 * 1024
+    const val DEFAULT_SEGMENT_BYTES: Int = 64 * 1024 * 1024
+  }
+}
+
+internal class KafkaPayloadSegments(
+  private val spill: KafkaPayloadSpill
+) {
+  private class Segment(
+    val buffer: MappedByteBuffer
+  ) {
+    var written: Int = 0
+
+    fun remaining(): Int = buffer.capacity() - written
+  }
+
+  private val lock = Any()
+  private var active: Segment? = null
+
+  /** Spills [value] and returns its payload, or `null` when it is below the threshold. */
+  fun store(value: ByteBuffer): KafkaPayload? {
+    val size = value.remaining()
+    if (size < spill.thresholdBytes) return null
+    val (segment, position) = synchronized(lock) { reserve(size) }
+    // The range is reserved for this caller alone, so the copy runs outside the lock.
+    segment.buffer.put(position, value, value.position(), size)
+    return SpilledPayload(segment.buffer, position, size)
+  }
+
+  private fun reserve(size: Int): Pair<Segment, Int> {
+    // Oversized values get a segment of their own and leave the active one in place.
+    if (size > spill.segmentBytes) return map(size) to 0
+    val segment = active?.takeIf { it.remaining() >= size } ?: map(spill.segmentBytes).also { active = it }
+    val position = segment.written
+    segment.written += size
+    return segment to position
+  }
+
+  private fun map(capacity: Int): Segment {
+    val directory = spill.directory ?: Path.of(System.getProperty("java.io.tmpdir"))
+    val file = Files.createTempFile(directory, "stove-kafka-payloads-", ".segment")
+    // The mapping outlives the channel; closing it unlinks the file while the pages stay mapped.
+    return FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE).use { channel ->
+      Segment(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity.toLong()))
+    }
+  }
+}
@@ -17,6 +17,14 @@ interface KafkaRecord {
   val timestamp: Long?
   val reason: Throwable?
 
+  /** Size of [value] without materializing it. */
+  val valueSize: Int
+    get() = value.size
+
+  /** Bytes of [value] this record keeps on the Java heap, counted towards the store's byte budget. */
+  val heapSize: Int
+    get() = valueSize
+
   val topic: String
     get() = metadata.topic
 
@@ -27,10 +35,17 @@ interface KafkaRecord {
     get() = metadata.headers
 }
 
-/** Default adapter used by integrations that need to retain their native source record. */
+/**
+ * Default adapter used by integrations that need to retain their native source record.
+ *
+ * The value is held as a [KafkaPayload]: records built from an array keep it as is, while a record
+ * built from a shared buffer or a spill segment copies it on first read. Integrations that keep the
+ * payload out of [source] should not rely on it to describe the value; [toString] then renders the
+ * record itself.
+ */
 class DefaultKafkaRecord(
   override val id: String,
-  override val value: ByteArray,
+  value: ByteArray,
   override val metadata: MessageMetadata,
   override val partition: Int? = null,
   override val offset: Long? = null,
@@ -38,7 +53,34 @@ class DefaultKafkaRecord(
   override val reason: Throwable? = null,
   val source: Any? = null
 ) : KafkaRecord {
-  override fun toString(): String = source?.toString() ?: "KafkaRecord(" +
+  var payload: KafkaPayload = KafkaPayload.of(value)
+    private set
+
+  constructor(
+    id: String,
+    payload: KafkaPayload,
+    metadata: MessageMetadata,
+    partition: Int? = null,
+    offset: Long? = null,
+    timestamp: Long? = null,
+    reason: Throwable? = null,
+    source: Any? = null
+  ) : this(id, EMPTY_VALUE, metadata, partition, offset, timestamp, reason, source) {
+    this.payload = payload
+  }
+
+  override val value: ByteArray
+    get() = payload.bytes()
+
+  override val valueSize: Int
+    get() = payload.size
+
+  override val heapSize: Int
+    get() = payload.heapSize
+
+  override fun toString(): String = source?.takeIf { payload is HeapPayload }?.toString() ?: "KafkaRecord(" +
     "id=$id, topic=$topic, key=$key, partition=$partition, offset=$offset, " +
     "headers=$headers, value=${String(value)}, reason=${reason?.message})"
 }
+
+private val EMPTY_VALUE = ByteArray(0)
@@ -0,0 +1,56 @@
+package com.trendyol.stove.messaging.kafka
+
+import com.trendyol.stove.reporting.*
+import com.trendyol.stove.scoping.TestScopeCleanupListener
+
+/**
+ * Hard cap for a [KafkaMessageStore], counted over every record kind together.
+ *
+ * It is the backstop behind [KafkaRetentionListener]: suites that run without a Stove test extension,
+ * or whose records never carry a test id, still stay within [maxRecords] records and [maxBytes] bytes
+ * of on-heap payload. Once either limit is exceeded the oldest records are evicted first. Spilled
+ * values do not count towards [maxBytes]; [maxRecords] still bounds them.
+ *
+ * @param spill moves large values out of the Java heap; `null` (the default) keeps them on-heap
+ */
+data class KafkaRetention(
+  val maxRecords: Int = DEFAULT_MAX_RECORDS,
+  val maxBytes: Long = DEFAULT_MAX_BYTES,
+  val spill: KafkaPayloadSpill? = null
+) {
+  init {
+    require(maxRecords > 0) { "maxRecords must be greater than zero" }
+    require(maxBytes > 0) { "maxBytes must be greater than zero" }
+  }
+
+  companion object {
+    const val DEFAULT_MAX_RECORDS: Int = 100_000
+    const val DEFAULT_MAX_BYTES: Long = 256L * 1024 * 1024
+  }
+}
+
+/**
+ * Report listener that bounds a [KafkaMessageStore] by the test lifecycle.
+ *
+ * When a test starts, records tagged with tests that have completed since are dropped, and so are
+ * untagged records stored before the oldest still-open test began. Without a test extension no
+ * lifecycle events arrive and nothing is dropped. [store] returns `null` while the store is not
+ * available yet, for example before the application context exists.
+ */
+class KafkaRetentionListener(
+  private val store: () -> KafkaMessageStore<*>?
+) : ReportEventListener {
+  private val cleanup = TestScopeCleanupListener { testId -> store()?.clear(testId) }
+
+  override fun onTestStarted(ctx: StoveTestContext) {
+    cleanup.onTestStarted(ctx)
+    store()?.run {
+      pruneUntaggedOutsideWindows()
+      startTest(ctx.testId)
+    }
+  }
+
+  override fun onTestEnded(testId: String) {
+    cleanup.onTestEnded(testId)
+  }
+}
@@ -0,0 +1,100 @@
+package com.trendyol.stove.messaging.kafka
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.sync.Semaphore
+import java.util.concurrent.atomic.*
+import kotlin.coroutines.CoroutineContext
+import kotlin.time.Duration
+import kotlin.time.TimeSource
+
+/** Outcome of a pipelined batch publish, reported as a single entry instead of one per record. */
+data class KafkaBatchPublishResult(
+  val records: Int,
+  val bytes: Long,
+  val elapsed: Duration
+)
+
+/**
+ * Bounded window of outstanding sends for the `publishAll` implementations.
+ *
+ * [submit] suspends while [maxInFlight] sends are unacknowledged, so a large batch is pipelined
+ * through the producer without waiting on each record and without buffering it all at once. The
+ * first failed acknowledgement stops further submissions and is rethrown by [awaitAll].
+ */
+class KafkaSendWindow(
+  private val maxInFlight: Int = DEFAULT_MAX_IN_FLIGHT
+) {
+  init {
+    require(maxInFlight > 0) { "maxInFlight must be greater than zero" }
+  }
+
+  private val started = TimeSource.Monotonic.markNow()
+  private val permits = Semaphore(maxInFlight)
+  private val acknowledged = AtomicInteger()
+  private val bytes = AtomicLong()
+  private val failure = AtomicReference<Throwable?>()
+
+  /**
+   * Starts one send with [send], which must invoke the given callback once the broker acknowledged
+   * or rejected the record, passing the serialized key and value size on success.
+   */
+  @Suppress("TooGenericExceptionCaught")
+  suspend fun submit(send: (onComplete: (serializedBytes: Int, error: Throwable?) -> Unit) -> Unit) {
+    failure.get()?.let { throw it }
+    permits.acquire()
+    val completed = AtomicBoolean(false)
+    val onComplete = { serializedBytes: Int, error: Throwable? ->
+      // A producer may both invoke the callback and throw for the same record; count it once.
+      if (completed.compareAndSet(false, true)) {
+        if (error == null) {
+          acknowledged.incrementAndGet()
+          bytes.addAndGet(serializedBytes.toLong())
+        } else {
+          failure.compareAndSet(null, error)
+        }
+        permits.release()
+      }
+    }
+    try {
+      send(onComplete)
+    } catch (error: Throwable) {
+      onComplete(0, error)
+      throw error
+    }
+  }
+
+  /** Waits until every submitted send is acknowledged, then rethrows the first failure, if any. */
+  suspend fun awaitAll(): KafkaBatchPublishResult {
+    repeat(maxInFlight) { permits.acquire() }
+    repeat(maxInFlight) { permits.release() }
+    failure.get()?.let { throw it }
+    return KafkaBatchPublishResult(acknowledged.get(), bytes.get(), started.elapsedNow())
+  }
+
+  companion object {
+    const val DEFAULT_MAX_IN_FLIGHT: Int = 1_000
+  }
+}
+
+/**
+ * The `publishAll` pipeline shared by the Kafka systems: submits every message of [messages] through a
+ * [KafkaSendWindow] of [maxInFlight] with [send], [flush]es the producer once, then waits for every
+ * acknowledgement.
+ *
+ * Everything runs in [context], [Dispatchers.IO] by default, since a producer's `send` blocks while it
+ * fetches metadata or waits for buffer space. Read thread-bound state, such as the trace context,
+ * before calling this.
+ */
+suspend fun <T> pipelineKafkaSends(
+  messages: Flow<T>,
+  maxInFlight: Int,
+  flush: () -> Unit,
+  context: CoroutineContext = Dispatchers.IO,
+  send: (message: T, onComplete: (serializedBytes: Int, error: Throwable?) -> Unit) -> Unit
+): KafkaBatchPublishResult = withContext(context) {
+  val window = KafkaSendWindow(maxInFlight)
+  messages.collect { message -> window.submit { onComplete -> send(message, onComplete) } }
+  flush()
+  window.awaitAll()
+}
@@ -0,0 +1,151 @@
+package com.trendyol.stove.messaging.kafka
+
+import com.trendyol.stove.reporting.ReportEventListener
+import com.trendyol.stove.tracing.TraceContext
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.*
+import org.slf4j.*
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * Opt-in topic namespacing for the Kafka systems, so tests running in parallel never share a topic.
+ *
+ * [topicResolver] maps a topic name and the current test id (`null` outside a test) to the name
+ * used on the broker. The systems resolve the topics of their `publish` calls with it. A resolved
+ * topic is created the first time it is used, together with the resolved [topics], in one batched
+ * call. With [deleteAfterTest], the topics of a test are deleted in the background once it ends;
+ * otherwise they are deleted when the system closes.
+ *
+ * The application must read from the same names: feed [resolve] into `configureExposedConfiguration`
+ * for [perWorker] names. [perTest] names only exist once a test publishes to them, so they suit tests
+ * that publish and assert through Stove; an application reads them only with a pattern subscription.
+ *
+ * @param topics topics created together with the first topic a test resolves
+ */
+data class KafkaTopicNamespacing(
+  val topics: List<String> = emptyList(),
+  val partitions: Int = 1,
+  val replicationFactor: Short = 1,
+  val deleteAfterTest: Boolean = true,
+  val topicResolver: (topic: String, testId: String?) -> String
+) {
+  init {
+    require(partitions > 0) { "partitions must be greater than zero" }
+    require(replicationFactor > 0) { "replicationFactor must be greater than zero" }
+  }
+
+  fun resolve(topic: String, testId: String? = null): String = topicResolver(topic, testId)
+
+  companion object {
+    private const val MAX_SUFFIX_LENGTH = 100
+    private val ILLEGAL_TOPIC_CHARACTERS = Regex("[^a-zA-Z0-9._-]")
+
+    /**
+     * Suffixes every topic with the current test id. Calls outside a test use the plain name.
+     *
+     * The names are made up while the test runs, so only Stove's own `publish`, assertions and
+     * `topicRecords` see them. An application listening on fixed topic names never receives these
+     * records; to consume them it has to subscribe with a pattern such as `orders\..*`.
+     */
+    fun perTest(
+      topics: List<String> = emptyList(),
+      partitions: Int = 1,
+      replicationFactor: Short = 1
+    ): KafkaTopicNamespacing = KafkaTopicNamespacing(topics, partitions, replicationFactor, deleteAfterTest = true) { topic, testId ->
+      testId?.let { "$topic.${topicSafe(it)}" } ?: topic
+    }
+
+    /**
+     * Suffixes every topic with [worker], by default the Gradle test worker or the process id, so
+     * parallel test JVMs never share a topic. The names do not depend on the test, so the
+     * application can be configured with them up front.
+     */
+    fun perWorker(
+      worker: String = System.getProperty("org.gradle.test.worker") ?: ProcessHandle.current().pid().toString(),
+      topics: List<String> = emptyList(),
+      partitions: Int = 1,
+      replicationFactor: Short = 1
+    ): KafkaTopicNamespacing = KafkaTopicNamespacing(topics, partitions, replicationFactor, deleteAfterTest = false) { topic, _ ->
+      "$topic.${topicSafe(worker)}"
+    }
+
+    /** Kafka accepts only `[a-zA-Z0-9._-]` and at most 249 characters in topic names. */
+    internal fun topicSafe(value: String): String {
+      val safe = value.replace(ILLEGAL_TOPIC_CHARACTERS, "_")
+      return if (safe.length <= MAX_SUFFIX_LENGTH) safe else "${safe.take(MAX_SUFFIX_LENGTH - 9)}-${"%08x".format(safe.hashCode())}"
+    }
+  }
+}
+
+/**
+ * Applies a [KafkaTopicNamespacing] for one Kafka system: resolves topics for the current test,
+ * creates them lazily through [createTopics], and deletes them through [deleteTopics].
+ *
+ * Register it as a report listener so test completion triggers the background deletion.
+ */
+class KafkaTopicNamespace(
+  val namespacing: KafkaTopicNamespacing,
+  private val createTopics: suspend (Set<String>) -> Unit,
+  private val deleteTopics: suspend (Set<String>) -> Unit
+) : ReportEventListener {
+  private val logger: Logger = LoggerFactory.getLogger(KafkaTopicNamespace::class.java)
+  private val created: MutableSet<String> = ConcurrentHashMap.newKeySet()
+  private val owned = ConcurrentHashMap<String, MutableSet<String>>()
+  private val creation = Mutex()
+  private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO + CoroutineName("stove-kafka-topic-cleanup"))
+
+  /** The broker-side name of [topic] for the current test, without creating it. */
+  fun name(topic: String): String = namespacing.resolve(topic, TraceContext.current()?.testId)
+
+  /** The broker-side name of [topic] for the current test, creating it and the declared topics on first use. */
+  suspend fun resolve(topic: String): String {
+    val testId = TraceContext.current()?.testId
+    val resolved = namespacing.resolve(topic, testId)
+    if (resolved in created) return resolved
+
+    creation.withLock {
+      val missing = (namespacing.topics.map { namespacing.resolve(it, testId) } + resolved).toSet() - created
+      if (missing.isNotEmpty()) {
+        createTopics(missing)
+        created += missing
+        owned.getOrPut(ownerOf(testId)) { ConcurrentHashMap.newKeySet() } += missing
+      }
+    }
+    return resolved
+  }
+
+  override fun onTestEnded(testId: String) {
+    if (!namespacing.deleteAfterTest) return
+    val topics = owned.remove(testId)?.toSet() ?: return
+    scope.launch { delete(topics) }
+  }
+
+  /** Waits for pending background deletions, then deletes every topic still owned. */
+  suspend fun close() {
+    withTimeoutOrNull(CLOSE_TIMEOUT) { scope.coroutineContext[Job]?.children?.forEach { it.join() } }
+    scope.cancel()
+    val remaining = owned.values.flatten().toSet()
+    owned.clear()
+    if (remaining.isNotEmpty()) delete(remaining)
+  }
+
+  private fun ownerOf(testId: String?): String = if (namespacing.deleteAfterTest && testId != null) testId else RUN_OWNER
+
+  @Suppress("TooGenericExceptionCaught")
+  private suspend fun delete(topics: Set<String>) {
+    try {
+      deleteTopics(topics)
+      created -= topics
+    } catch (e: CancellationException) {
+      throw e
+    } catch (e: Exception) {
+      logger.warn("Could not delete namespaced Kafka topics {}", topics, e)
+    }
+  }
+
+  private companion object {
+    const val RUN_OWNER = ""
+    val CLOSE_TIMEOUT = 30.seconds
+  }
+}
@@ -3,7 +3,8 @@ package com.trendyol.stove.reporting
 /**
  * Listener for report lifecycle events.
  *
- * Implementors receive callbacks when tests start, end, and when report entries are recorded.
+ * Implementors receive callbacks when tests start, end, when report entries are recorded, and
+ * when the [StartupProfile] of the environment is ready.
  * All methods have default no-op implementations — override only what you need.
  *
  * Methods are non-suspending. Implementors should dispatch async work internally
@@ -14,4 +15,7 @@ interface ReportEventListener {
   fun onTestFailed(testId: String, error: String) {}
   fun onTestEnded(testId: String) {}
   fun onEntryRecorded(entry: ReportEntry) {}
+
+  /** Called once Stove has started every system, and again with the teardown phases once it closes. */
+  fun onStartupProfile(profile: StartupProfile) {}
 }
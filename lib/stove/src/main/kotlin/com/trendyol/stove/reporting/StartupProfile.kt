@@ -0,0 +1,95 @@
+package com.trendyol.stove.reporting
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import java.util.concurrent.ConcurrentLinkedQueue
+import kotlin.coroutines.AbstractCoroutineContextElement
+import kotlin.coroutines.CoroutineContext
+import kotlin.time.Duration
+import kotlin.time.measureTimedValue
+
+/**
+ * Wall time of one lifecycle [phase] of a [system].
+ *
+ * [system] is the registered type's simple name, with the key for keyed systems (`HttpClientSystem[PaymentService]`),
+ * or [StartupProfile.APPLICATION] for the application under test.
+ */
+data class StartupPhaseTiming(
+  val system: String,
+  val phase: String,
+  val duration: Duration
+)
+
+/**
+ * Where the time of environment bring-up and teardown goes.
+ *
+ * Systems start in parallel, so [startup] is the wall time of `Stove.run` rather than the sum of its phases.
+ * Migrations are measured within the phase that runs them, each one and all together. [teardown] stays `null`
+ * until Stove closes.
+ *
+ * Delivered to [ReportEventListener.onStartupProfile] once startup completes and again after teardown, and
+ * written as [FILE_NAME] under the report directory.
+ */
+data class StartupProfile(
+  val phases: List<StartupPhaseTiming>,
+  val startup: Duration,
+  val teardown: Duration? = null
+) {
+  /** Phases of [system], in completion order. */
+  fun phasesOf(system: String): List<StartupPhaseTiming> = phases.filter { it.system == system }
+
+  fun toJson(): String = mapper.writeValueAsString(
+    mapOf(
+      "startupMs" to startup.inWholeMilliseconds,
+      "teardownMs" to teardown?.inWholeMilliseconds,
+      "phases" to phases.map { mapOf("system" to it.system, "phase" to it.phase, "durationMs" to it.duration.inWholeMilliseconds) }
+    )
+  )
+
+  companion object {
+    const val FILE_NAME: String = "startup-profile.json"
+    const val APPLICATION: String = "application"
+    const val BEFORE_RUN: String = "beforeRun"
+    const val RUN: String = "run"
+    const val MIGRATIONS: String = "migrations"
+    const val AFTER_RUN: String = "afterRun"
+    const val START: String = "start"
+    const val STOP: String = "stop"
+    const val CLOSE: String = "close"
+
+    /** The phase of one migration, recorded next to [MIGRATIONS], which covers all of them. */
+    fun migration(name: String): String = "$MIGRATIONS:$name"
+
+    private val mapper = ObjectMapper().apply { enable(SerializationFeature.INDENT_OUTPUT) }
+  }
+}
+
+/** Collects [StartupPhaseTiming]s from every system of one Stove instance. */
+internal class StartupProfiler {
+  private val phases = ConcurrentLinkedQueue<StartupPhaseTiming>()
+
+  fun phases(): List<StartupPhaseTiming> = phases.toList()
+
+  fun record(system: String, phase: String, duration: Duration) {
+    phases += StartupPhaseTiming(system, phase, duration)
+  }
+
+  suspend fun <T> measure(system: String, phase: String, block: suspend () -> T): T {
+    val (value, duration) = measureTimedValue { block() }
+    record(system, phase, duration)
+    return value
+  }
+}
+
+/**
+ * Marks the coroutines running the lifecycle of [system], so that work nested in a phase, such as migrations,
+ * can record its own timing without knowing which system it belongs to.
+ */
+internal class StartupPhaseScope(
+  val system: String,
+  private val profiler: StartupProfiler
+) : AbstractCoroutineContextElement(Key) {
+  companion object Key : CoroutineContext.Key<StartupPhaseScope>
+
+  fun record(phase: String, duration: Duration): Unit = profiler.record(system, phase, duration)
+}
@@ -70,6 +70,13 @@ class StoveReporter(
     }
   }
 
+  /** Deliver the [StartupProfile] of the environment to listeners */
+  fun reportStartupProfile(profile: StartupProfile) {
+    listeners.forEach {
+      runCatching { it.onStartupProfile(profile) }.onFailure { e -> logger.warn("Listener failed on onStartupProfile", e) }
+    }
+  }
+
   /** Get report for current test, creating if needed */
   fun currentTest(): TestReport =
     reports.computeIfAbsent(currentTestId()) { TestReport(it, it) }
@@ -0,0 +1,120 @@
+package com.trendyol.stove.system
+
+import com.trendyol.stove.reporting.*
+import com.trendyol.stove.reporting.StartupProfile.Companion.AFTER_RUN
+import com.trendyol.stove.reporting.StartupProfile.Companion.APPLICATION
+import com.trendyol.stove.reporting.StartupProfile.Companion.BEFORE_RUN
+import com.trendyol.stove.reporting.StartupProfile.Companion.RUN
+import com.trendyol.stove.reporting.StartupProfile.Companion.START
+import com.trendyol.stove.system.abstractions.*
+import kotlinx.coroutines.*
+import org.slf4j.*
+import kotlin.reflect.KClass
+
+/**
+ * Starts the registered systems as a dependency graph instead of phase by phase.
+ *
+ * Every system runs its own `beforeRun → run` pipeline on [Dispatchers.IO] as soon as the systems
+ * it [depends on][DependsOnSystems] are running. The application starts as soon as the systems in
+ * [applicationDependencies] are running, with their configuration; `null` means every system, as
+ * before. Systems implementing [AfterRunAwareWithContext] receive the application context while it
+ * starts, so they are always waited for. Each system's [AfterRunAware.afterRun] runs once both the
+ * system and the application are up. [start] returns when every system has finished, and the first
+ * failure cancels the rest.
+ *
+ * Every phase is measured into [profiler]; each system's coroutines carry a [StartupPhaseScope] so
+ * that nested work such as migrations is attributed to it.
+ */
+internal class StartupScheduler(
+  private val systems: List<Pair<String, PluggedSystem>>,
+  private val applicationDependencies: Set<KClass<out PluggedSystem>>?,
+  private val profiler: StartupProfiler
+) {
+  private val logger: Logger = LoggerFactory.getLogger(StartupScheduler::class.java)
+
+  private class Node(
+    val name: String,
+    val system: PluggedSystem
+  ) {
+    val running: CompletableDeferred<Unit> = CompletableDeferred()
+  }
+
+  suspend fun <T> start(startApplication: suspend (configurations: List<String>) -> T): T = coroutineScope {
+    val nodes = systems.map { (name, system) -> Node(name, system) }
+    val dependencies = nodes.associateWith { dependenciesOf(it, nodes) }
+    checkAcyclic(nodes, dependencies)
+
+    nodes.forEach { node ->
+      launch(Dispatchers.IO + StartupPhaseScope(node.name, profiler)) {
+        dependencies.getValue(node).map { it.running }.awaitAll()
+        (node.system as? BeforeRunAware)?.let { system -> timed(node.name, BEFORE_RUN) { system.beforeRun() } }
+        (node.system as? RunAware)?.let { system -> timed(node.name, RUN) { system.run() } }
+        node.running.complete(Unit)
+      }
+    }
+
+    val required = nodes.filter(::isRequiredByApplication)
+    val warming = nodes - required.toSet()
+    if (warming.isNotEmpty()) {
+      logger.info(
+        "Starting the application without waiting for {}; it does not receive their configuration",
+        warming.map { it.name }
+      )
+    }
+    required.map { it.running }.awaitAll()
+    val configurations = required.map { it.system }.filterIsInstance<ExposesConfiguration>().flatMap { it.configuration() }
+    val context = timed(APPLICATION, START) { startApplication(configurations) }
+
+    nodes
+      .filter { it.system is AfterRunAware }
+      .map { node ->
+        async(Dispatchers.IO + StartupPhaseScope(node.name, profiler)) {
+          node.running.await()
+          timed(node.name, AFTER_RUN) { (node.system as AfterRunAware).afterRun() }
+        }
+      }.awaitAll()
+    nodes.map { it.running }.awaitAll()
+    logSummary()
+    context
+  }
+
+  private fun dependenciesOf(node: Node, nodes: List<Node>): List<Node> {
+    val declared = (node.system as? DependsOnSystems)?.dependsOn.orEmpty()
+    return declared.flatMap { type ->
+      nodes
+        .filter { it !== node && type.isInstance(it.system) }
+        .ifEmpty { error("${node.name} depends on ${type.simpleName}, which is not registered in Stove") }
+    }.distinct()
+  }
+
+  private fun isRequiredByApplication(node: Node): Boolean {
+    val types = applicationDependencies ?: return true
+    return node.system is AfterRunAwareWithContext<*> || types.any { it.isInstance(node.system) }
+  }
+
+  private fun checkAcyclic(nodes: List<Node>, dependencies: Map<Node, List<Node>>) {
+    applicationDependencies?.forEach { type ->
+      check(nodes.any { type.isInstance(it.system) }) {
+        "The application depends on ${type.simpleName}, which is not registered in Stove"
+      }
+    }
+    val visited = mutableSetOf<Node>()
+    fun visit(node: Node, path: List<Node>) {
+      check(node !in path) {
+        "Systems depend on each other in a cycle: ${(path.dropWhile { it !== node } + node).joinToString(" -> ") { it.name }}"
+      }
+      if (!visited.add(node)) return
+      dependencies.getValue(node).forEach { visit(it, path + node) }
+    }
+    nodes.forEach { visit(it, emptyList()) }
+  }
+
+  private suspend fun <T> timed(system: String, phase: String, block: suspend () -> T): T = profiler.measure(system, phase, block)
+
+  private fun logSummary() {
+    val lines = profiler.phases().groupBy { it.system }.map { (system, systemPhases) ->
+      "  $system: " + systemPhases.joinToString { "${it.phase} ${it.duration.inWholeMilliseconds}ms" }
+    }
+    logger.info("Stove startup phases:\n{}", lines.joinToString("\n"))
+  }
+}
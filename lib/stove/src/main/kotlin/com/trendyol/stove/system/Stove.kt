@@ -8,7 +8,10 @@ import com.trendyol.stove.system.abstractions.*
 import com.trendyol.stove.system.annotations.StoveDsl
 import kotlinx.coroutines.*
 import org.slf4j.*
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.io.path.*
 import kotlin.reflect.KClass
+import kotlin.time.measureTimedValue
 
 /**
  * Entrance of entire Stove test system.
@@ -86,11 +89,16 @@ class Stove(
     configure(optionsDsl)
   }
 
-  private var cleanup: MutableList<(suspend () -> Unit)> = mutableListOf()
+  private val cleanup: MutableList<TeardownScheduler.Disposal> = mutableListOf()
+  private var applicationStop: TeardownScheduler.Disposal? = null
+  private val profiler = StartupProfiler()
+  private var startupProfile: StartupProfile? = null
 
   @PublishedApi
   internal val activeSystems: MutableMap<KClass<*>, PluggedSystem> = mutableMapOf()
 
+  private val stateStorages: MutableMap<Pair<KClass<*>, String?>, StateStorage<*>> = ConcurrentHashMap()
+
   @PublishedApi
   internal val keyedSystems: MutableMap<Pair<KClass<*>, SystemKey>, PluggedSystem> = mutableMapOf()
 
@@ -128,17 +136,31 @@ class Stove(
   val keepDependenciesRunning: Boolean
     get() = options.keepDependenciesRunning
 
+  /**
+   * Whether containers are created reusable, so they outlive this process: with [keepDependenciesRunning], and when
+   * other processes share them through [SharedStateStorageFactory]. Testcontainers only honours it with reuse enabled,
+   * see [StoveOptionsDsl.enableReuseForTestContainers].
+   */
+  val reuseContainers: Boolean
+    get() = options.keepDependenciesRunning || options.stateStorageFactory is SharedStateStorageFactory
+
   /**
    * Whether migrations should always run, even when reusing containers.
    */
   val runMigrationsAlways: Boolean
     get() = options.runMigrationsAlways
 
+  /**
+   * Whether migrated containers are baked into local images and reused by later runs.
+   */
+  val bakeMigratedImages: Boolean
+    get() = options.bakeMigratedImages
+
   /**
    * Creates a state storage for the given system and configuration types.
    */
   inline fun <reified TState : ExposedConfiguration, reified TSystem : PluggedSystem> createStateStorage(): StateStorage<TState> =
-    options.createStateStorage<TState, TSystem>()
+    trackStateStorage(TSystem::class, null, options.createStateStorage<TState, TSystem>())
 
   /**
    * Creates a keyed state storage for the given system and configuration types.
@@ -147,7 +169,7 @@ class Stove(
   inline fun <reified TState : ExposedConfiguration, reified TSystem : PluggedSystem> createStateStorage(
     key: SystemKey
   ): StateStorage<TState> =
-    options.stateStorageFactory.createWithKey(options, TSystem::class, TState::class, keyDisplayName(key))
+    createStateStorage<TState, TSystem>(keyDisplayName(key))
 
   /**
    * Creates a state storage with an optional key name for disambiguation.
@@ -157,11 +179,30 @@ class Stove(
     keyName: String?
   ): StateStorage<TState> =
     if (keyName != null) {
-      options.stateStorageFactory.createWithKey(options, TSystem::class, TState::class, keyName)
+      trackStateStorage(TSystem::class, keyName, options.stateStorageFactory.createWithKey(options, TSystem::class, TState::class, keyName))
     } else {
-      options.createStateStorage<TState, TSystem>()
+      createStateStorage<TState, TSystem>()
     }
 
+  @PublishedApi
+  internal fun <TState> trackStateStorage(
+    system: KClass<*>,
+    keyName: String?,
+    storage: StateStorage<TState>
+  ): StateStorage<TState> = storage.also { stateStorages[system to keyName] = it }
+
+  /**
+   * Releases the state storages of [system] when it closes, see [StateStorage.release].
+   * Returns whether the system may stop its dependencies as far as the storages are concerned.
+   */
+  internal suspend fun releaseStateOf(system: Any): Boolean {
+    val keyName = keyedSystems.entries.firstOrNull { it.value === system }?.key?.second?.let(::keyDisplayName)
+    val storages = stateStorages.keys
+      .filter { (type, key) -> key == keyName && type.isInstance(system) }
+      .mapNotNull { stateStorages.remove(it) }
+    return storages.map { it.release() }.all { it }
+  }
+
   /**
    * Registers a listener to receive report events.
    */
@@ -259,37 +300,53 @@ class Stove(
 
   /**
    * Runs the entire dependency tree that implements [RunnableSystemWithContext] since only the [RunnableSystemWithContext] can be run.
-   * Note that all the dependencies will run as parallel.
-   * It will invoke the runnable methods of [RunnableSystemWithContext]s with the order:
+   * Each system runs its own pipeline, in parallel with the others:
    * - [RunnableSystemWithContext.beforeRun]
    * - [RunnableSystemWithContext.run]
-   * - [RunnableSystemWithContext.afterRun]
+   * - [RunnableSystemWithContext.afterRun], once the application under test has started
+   *
+   * A system waits only for the systems it [depends on][DependsOnSystems], and the application starts as soon
+   * as the systems it needs are running, see [StoveOptionsDsl.startApplicationAfter].
    */
   override suspend fun run() {
-    coroutineScope {
-      val allSystems = allRegisteredSystems()
-
-      allSystems.filterIsInstance<BeforeRunAware>()
-        .map { async(context = Dispatchers.IO) { it.beforeRun() } }.awaitAll()
+    val scheduler = StartupScheduler(systemsByName(), options.applicationDependencies, profiler)
+    val (context, startup) = measureTimedValue {
+      scheduler.start { configurations -> applicationUnderTest.start(configurations) }
+    }
+    applicationUnderTestContext = context
 
-      allSystems.filterIsInstance<RunAware>()
-        .map { async(context = Dispatchers.IO) { it.run() } }.awaitAll()
+    // Systems are closed through registerForDispose; only the application is stopped separately, before them
+    applicationStop = TeardownScheduler.Disposal(StartupProfile.APPLICATION, StartupProfile.STOP, applicationUnderTest) {
+      applicationUnderTest.stop()
+    }
 
-      val dependencyConfigurations =
-        allSystems
-          .filterIsInstance<ExposesConfiguration>()
-          .flatMap { it.configuration() }
+    instance = this
+    publishStartupProfile(StartupProfile(profiler.phases(), startup))
+  }
 
-      applicationUnderTestContext = applicationUnderTest.start(dependencyConfigurations)
+  /**
+   * Wall times of the environment bring-up, including teardown once Stove is closed.
+   * `null` until [run] completes.
+   */
+  fun startupProfile(): StartupProfile? = startupProfile
 
-      allSystems.filterIsInstance<AfterRunAware>()
-        .map { async(context = Dispatchers.IO) { it.afterRun() } }.awaitAll()
+  private fun systemsByName(): List<Pair<String, PluggedSystem>> =
+    activeSystems.map { (type, system) -> systemName(type) to system } +
+      keyedSystems.map { (registration, system) -> systemName(registration.first, registration.second) to system }
 
-      // Cleanup is handled by registerForDispose — no duplication here
-      cleanup.add { applicationUnderTest.stop() }
+  /** The name a system is reported under, e.g. in the [StartupProfile]. */
+  @PublishedApi
+  internal fun systemName(type: KClass<*>, key: SystemKey? = null): String =
+    key?.let { "${type.simpleName}[${keyDisplayName(it)}]" } ?: type.simpleName.orEmpty()
+
+  private fun publishStartupProfile(profile: StartupProfile) {
+    startupProfile = profile
+    reporter.reportStartupProfile(profile)
+    if (options.reportingEnabled) {
+      Try {
+        Path(options.reportFilePath).createDirectories().resolve(StartupProfile.FILE_NAME).writeText(profile.toJson())
+      }.recover { logger.warn("Could not write the startup profile to ${options.reportFilePath}: ${it.message}") }
     }
-
-    instance = this
   }
 
   /**
@@ -334,7 +391,7 @@ class Stove(
    * ```
    */
   inline fun <reified T : PluggedSystem> getOrRegister(system: T): T = activeSystems.getOrPut(T::class) {
-    registerForDispose(system)
+    registerForDispose(systemName(T::class), system)
   } as T
 
   /**
@@ -347,7 +404,7 @@ class Stove(
     key: SystemKey,
     system: T
   ): T = keyedSystems.getOrPut(T::class to key) {
-    registerForDispose(system)
+    registerForDispose(systemName(T::class, key), system)
   } as T
 
   /**
@@ -361,14 +418,23 @@ class Stove(
   inline fun <reified T : PluggedSystem> getOrNone(key: SystemKey): Option<T> =
     keyedSystems.getOrNone(T::class to key).map { it as T }
 
-  fun <T : AutoCloseable> registerForDispose(closeable: T): T {
-    cleanup.add { closeable.close() }
+  fun <T : AutoCloseable> registerForDispose(closeable: T): T =
+    registerForDispose(closeable::class.simpleName.orEmpty(), closeable)
+
+  @PublishedApi
+  internal fun <T : AutoCloseable> registerForDispose(name: String, closeable: T): T {
+    cleanup.add(TeardownScheduler.Disposal(name, StartupProfile.CLOSE, closeable) { closeable.close() })
     return closeable
   }
 
   @Suppress("UNCHECKED_CAST", "unused")
   fun <TContext> applicationUnderTestContext(): TContext = applicationUnderTestContext as TContext
 
+  /**
+   * Stops the application, then closes every registered system in parallel, each within
+   * [StoveOptionsDsl.teardownTimeout]. A system closes after the systems that [depend on][DependsOnSystems] it.
+   * Failures do not stop the teardown; they are logged together at the end.
+   */
   override fun close(): Unit = runBlocking {
     Try {
       if (options.dumpReportOnStop && options.reportingEnabled) {
@@ -379,9 +445,26 @@ class Stove(
           logger.info(report)
         }
       }
-      cleanup.forEach { it() }
+      val (failures, teardown) = measureTimedValue {
+        TeardownScheduler(applicationStop, cleanup.toList(), options.teardownTimeout, profiler).close()
+      }
+      startupProfile?.let { publishStartupProfile(it.copy(phases = profiler.phases(), teardown = teardown)) }
+      reportTeardownFailures(failures)
     }.recover { logger.warn("got an error while stopping Stove: ${it.message}") }
   }
+
+  private fun reportTeardownFailures(failures: List<TeardownScheduler.Failure>) {
+    if (failures.isEmpty()) return
+    val error = IllegalStateException("Stove teardown failed for ${failures.joinToString { it.name }}")
+    failures.forEach { error.addSuppressed(it.error) }
+    logger.warn(
+      "Stove teardown failed for {} of {} steps:\n{}",
+      failures.size,
+      cleanup.size + (if (applicationStop == null) 0 else 1),
+      failures.joinToString("\n") { "  ${it.name}: ${it.error.message}" },
+      error
+    )
+  }
 }
 
 /**
@@ -4,6 +4,9 @@ import com.trendyol.stove.reporting.JsonReportRenderer
 import com.trendyol.stove.reporting.PrettyConsoleRenderer
 import com.trendyol.stove.reporting.ReportRenderer
 import com.trendyol.stove.system.abstractions.*
+import kotlin.reflect.KClass
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
 
 data class StoveOptions(
   val keepDependenciesRunning: Boolean = false,
@@ -17,7 +20,10 @@ data class StoveOptions(
   val fileRenderer: ReportRenderer = JsonReportRenderer,
   val reportToConsole: Boolean = true,
   val reportToFile: Boolean = false,
-  val reportFilePath: String = "build/stove-reports"
+  val reportFilePath: String = "build/stove-reports",
+  val applicationDependencies: Set<KClass<out PluggedSystem>>? = null,
+  val teardownTimeout: Duration = 30.seconds,
+  val bakeMigratedImages: Boolean = false
 ) {
   inline fun <reified TState : ExposedConfiguration, reified TSystem : PluggedSystem> createStateStorage(): StateStorage<TState> =
     (this.stateStorageFactory(this, TSystem::class, TState::class))
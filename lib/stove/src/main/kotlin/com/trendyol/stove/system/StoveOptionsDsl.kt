@@ -2,9 +2,12 @@ package com.trendyol.stove.system
 
 import com.trendyol.stove.reporting.ReportRenderer
 import com.trendyol.stove.reporting.isRunningOnCI
+import com.trendyol.stove.system.abstractions.PluggedSystem
 import com.trendyol.stove.system.abstractions.StateStorageFactory
 import com.trendyol.stove.system.annotations.StoveDsl
 import org.slf4j.LoggerFactory
+import kotlin.reflect.KClass
+import kotlin.time.Duration
 
 /**
  * DSL for configuring [StoveOptions].
@@ -75,6 +78,37 @@ class StoveOptionsDsl {
     options = options.copy(runMigrationsAlways = true)
   }
 
+  /**
+   * Commit each container to a local image once its migrations ran, and start later runs from that image
+   * without running the migrations, as long as the image and the migrations are unchanged.
+   * See [com.trendyol.stove.containers.MigratedImageCache].
+   */
+  fun bakeMigratedImages(): StoveOptionsDsl = apply {
+    options = options.copy(bakeMigratedImages = true)
+  }
+
+  // ═══════════════════════════════════════════════════════════════════════════
+  // Startup & Teardown
+  // ═══════════════════════════════════════════════════════════════════════════
+
+  /**
+   * Start the application as soon as the given systems are running, instead of after every system.
+   * Only their configuration is passed to the application. The other systems keep starting in the
+   * background, and [Stove.run] still waits for them before returning.
+   */
+  fun startApplicationAfter(vararg systems: KClass<out PluggedSystem>): StoveOptionsDsl = apply {
+    options = options.copy(applicationDependencies = systems.toSet())
+  }
+
+  /**
+   * How long [Stove.close] waits for each system to close, and for the application to stop, before
+   * reporting it as failed and moving on. Defaults to 30 seconds.
+   */
+  fun teardownTimeout(timeout: Duration): StoveOptionsDsl = apply {
+    require(timeout.isPositive()) { "teardownTimeout must be positive" }
+    options = options.copy(teardownTimeout = timeout)
+  }
+
   // ═══════════════════════════════════════════════════════════════════════════
   // Reporting Configuration
   // ═══════════════════════════════════════════════════════════════════════════
@@ -0,0 +1,98 @@
+package com.trendyol.stove.system
+
+import com.trendyol.stove.reporting.StartupProfiler
+import com.trendyol.stove.system.abstractions.*
+import kotlinx.coroutines.*
+import org.slf4j.*
+import java.util.concurrent.TimeoutException
+import kotlin.time.Duration
+import kotlin.time.TimeSource
+
+/**
+ * Tears down what [Stove] registered for disposal, the reverse of [StartupScheduler].
+ *
+ * The [application] stops first. Then every disposal runs in parallel on [Dispatchers.IO], except that a
+ * system closes only after the systems that [depend on][DependsOnSystems] it, so a consumer is gone before
+ * the broker it reads from. Each step gets [timeout]; a step that overruns is left behind and teardown
+ * moves on. Every step is measured into [profiler], failed ones included, and [close] returns every
+ * failure instead of stopping at the first.
+ */
+internal class TeardownScheduler(
+  private val application: Disposal?,
+  private val disposals: List<Disposal>,
+  private val timeout: Duration,
+  private val profiler: StartupProfiler
+) {
+  private val logger: Logger = LoggerFactory.getLogger(TeardownScheduler::class.java)
+
+  /** One teardown step; [target] is the system or closeable it disposes of. */
+  class Disposal(
+    val name: String,
+    val phase: String,
+    val target: Any,
+    val dispose: suspend () -> Unit
+  )
+
+  class Failure(
+    val name: String,
+    val error: Throwable
+  )
+
+  private class Node(
+    val disposal: Disposal
+  ) {
+    val closed: CompletableDeferred<Unit> = CompletableDeferred()
+  }
+
+  suspend fun close(): List<Failure> {
+    val overrunning = CoroutineScope(SupervisorJob() + Dispatchers.IO + CoroutineName("stove-teardown"))
+    try {
+      val applicationFailure = application?.let { step(it, overrunning) }
+      val nodes = disposals.map(::Node)
+      val dependents = nodes.associateWith { dependentsOf(it, nodes) }.withoutCycles(nodes)
+      val failures = coroutineScope {
+        nodes
+          .map { node ->
+            async(Dispatchers.IO) {
+              dependents.getValue(node).map { it.closed }.awaitAll()
+              step(node.disposal, overrunning).also { node.closed.complete(Unit) }
+            }
+          }.awaitAll()
+      }
+      return listOfNotNull(applicationFailure) + failures.filterNotNull()
+    } finally {
+      overrunning.cancel()
+    }
+  }
+
+  @Suppress("TooGenericExceptionCaught")
+  private suspend fun step(disposal: Disposal, overrunning: CoroutineScope): Failure? {
+    val started = TimeSource.Monotonic.markNow()
+    val closing = overrunning.async { disposal.dispose() }
+    return try {
+      val completed = withTimeoutOrNull(timeout) { closing.await() } != null
+      if (completed) null else Failure(disposal.name, TimeoutException("${disposal.name} did not ${disposal.phase} within $timeout"))
+    } catch (e: CancellationException) {
+      throw e
+    } catch (e: Exception) {
+      Failure(disposal.name, e)
+    } finally {
+      profiler.record(disposal.name, disposal.phase, started.elapsedNow())
+    }
+  }
+
+  private fun dependentsOf(node: Node, nodes: List<Node>): List<Node> = nodes.filter { other ->
+    other !== node && (other.disposal.target as? DependsOnSystems)?.dependsOn.orEmpty().any { it.isInstance(node.disposal.target) }
+  }
+
+  // A cycle fails startup, but Stove still closes what was registered; without ordering, nothing waits forever.
+  private fun Map<Node, List<Node>>.withoutCycles(nodes: List<Node>): Map<Node, List<Node>> {
+    val visited = mutableSetOf<Node>()
+    fun cyclic(node: Node, path: Set<Node>): Boolean =
+      node in path || (visited.add(node) && getValue(node).any { cyclic(it, path + node) })
+    if (nodes.none { cyclic(it, emptySet()) }) return this
+
+    logger.warn("Systems depend on each other in a cycle; closing them without ordering")
+    return nodes.associateWith { emptyList() }
+  }
+}
@@ -1,7 +1,11 @@
 package com.trendyol.stove.system
 
+import com.trendyol.stove.reporting.*
 import com.trendyol.stove.system.abstractions.PluggedSystem
 import com.trendyol.stove.system.annotations.StoveDsl
+import com.trendyol.stove.tracing.TraceContext
+import kotlinx.coroutines.*
+import kotlin.coroutines.EmptyCoroutineContext
 
 /**
  * The DSL wrapper for writing test validations against registered [PluggedSystem]s.
@@ -55,6 +59,7 @@ import com.trendyol.stove.system.annotations.StoveDsl
  * - `mongodb { }` - MongoDB document assertions
  * - `wiremock { }` - WireMock stub setup
  * - `using<T> { }` - Bridge to application's DI container
+ * - `parallel { }` - Runs independent validations concurrently
  *
  * @property stove The underlying Stove instance containing all registered systems.
  * @see stove
@@ -64,4 +69,53 @@ import com.trendyol.stove.system.annotations.StoveDsl
 @StoveDsl
 value class ValidationDsl(
   val stove: Stove
-)
+) {
+  /**
+   * Runs the validations declared with [ParallelValidationDsl.validate] concurrently and returns once
+   * all of them pass.
+   *
+   * ```kotlin
+   * stove {
+   *   parallel {
+   *     validate { kafka { shouldBePublished<OrderCreated> { actual.id == orderId } } }
+   *     validate { elasticsearch { shouldGet<Order>("orders", orderId) { it.id shouldBe orderId } } }
+   *     validate { wiremock { mockGet("/stock/$orderId", 200) } }
+   *   }
+   * }
+   * ```
+   *
+   * The validations run as children of one `coroutineScope`: the first failure cancels the others
+   * and is rethrown as is. Each child keeps the caller's [StoveTestContext] and [TraceContext], so
+   * report entries and traces are attributed to the current test. Children run on the caller's
+   * dispatcher, so validations that block a thread only overlap on a multi-threaded dispatcher.
+   */
+  suspend fun parallel(block: ParallelValidationDsl.() -> Unit) {
+    val validations = ParallelValidationDsl().apply(block).validations
+    val testContext = currentCoroutineContext()[StoveTestContext] ?: StoveTestContextHolder.get()
+    val traceContext = TraceContext.current()
+    coroutineScope {
+      validations.forEach { validation ->
+        launch(testContext ?: EmptyCoroutineContext) {
+          if (traceContext == null) {
+            validation(this@ValidationDsl)
+          } else {
+            TraceContext.withPropagation(traceContext) { validation(this@ValidationDsl) }
+          }
+        }
+      }
+    }
+  }
+}
+
+/**
+ * Collects the validations of a [ValidationDsl.parallel] block.
+ */
+@StoveDsl
+class ParallelValidationDsl internal constructor() {
+  internal val validations = mutableListOf<suspend ValidationDsl.() -> Unit>()
+
+  /** Declares one validation to run concurrently with the others in the block. */
+  fun validate(validation: @StoveDsl suspend ValidationDsl.() -> Unit) {
+    validations += validation
+  }
+}
@@ -0,0 +1,32 @@
+package com.trendyol.stove.system.abstractions
+
+import kotlin.reflect.KClass
+
+/**
+ * Declares the systems that must be running before this system starts.
+ *
+ * [Stove.run][com.trendyol.stove.system.Stove.run] starts every system as its own
+ * `beforeRun → run` pipeline, so a system does not wait for unrelated systems. A system
+ * implementing this interface starts its pipeline only after every registered system of the
+ * [dependsOn] types, default and keyed, has finished [RunAware.run].
+ *
+ * ## Example
+ *
+ * ```kotlin
+ * class SchemaRegistrySystem(
+ *     override val stove: Stove
+ * ) : PluggedSystem, RunAware, DependsOnSystems {
+ *     override val dependsOn = setOf(KafkaSystem::class)
+ *
+ *     override suspend fun run() {
+ *         // Kafka is already running here
+ *     }
+ * }
+ * ```
+ *
+ * A dependency that is not registered, or a cycle between systems, fails [Stove.run][com.trendyol.stove.system.Stove.run].
+ */
+interface DependsOnSystems {
+  /** Types of the systems that must be running before this one starts. */
+  val dependsOn: Set<KClass<out PluggedSystem>>
+}
@@ -0,0 +1,51 @@
+package com.trendyol.stove.system.abstractions
+
+import kotlinx.coroutines.*
+import java.net.*
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * A cheap check that a system recovered from an earlier run is still there, before [StateStorage] trusts its
+ * state. With `keepDependenciesRunning`, a container may have been removed since the state was written; a probe
+ * that fails makes the storage start the system again instead of handing out an address nobody listens on.
+ *
+ * Probes run while the system starts, so the probes of different systems run concurrently, each bounded by
+ * [TIMEOUT]. A probe that throws or does not answer in time counts as failed.
+ */
+fun interface LivenessProbe<in TState> {
+  suspend fun isAlive(state: TState): Boolean
+
+  companion object {
+    /** How long a probe may take before the recovered system is considered gone. */
+    val TIMEOUT: Duration = 2.seconds
+
+    /** Alive when every address [of] the state accepts a TCP connection. */
+    fun <TState> tcp(of: (TState) -> List<Pair<String, Int>>): LivenessProbe<TState> = LivenessProbe { state ->
+      of(state).all { (host, port) -> canConnect(host, port) }
+    }
+
+    /** Parses `host:port` addresses separated by commas, such as bootstrap servers, ignoring any `scheme://`. */
+    fun addresses(value: String): List<Pair<String, Int>> = value
+      .split(',')
+      .map { it.trim().substringAfter("://").substringBefore('/') }
+      .filter { it.isNotEmpty() }
+      .map { it.substringBeforeLast(':') to it.substringAfterLast(':').toInt() }
+
+    private suspend fun canConnect(host: String, port: Int): Boolean = withContext(Dispatchers.IO) {
+      runCatching {
+        Socket().use { it.connect(InetSocketAddress(host, port), TIMEOUT.inWholeMilliseconds.toInt()) }
+      }.isSuccess
+    }
+  }
+}
+
+/** Runs this probe within [LivenessProbe.TIMEOUT]; failures and overruns count as not alive. */
+@Suppress("TooGenericExceptionCaught")
+internal suspend fun <TState> LivenessProbe<TState>.isAliveWithin(state: TState): Boolean = try {
+  withTimeoutOrNull(LivenessProbe.TIMEOUT) { isAlive(state) } ?: false
+} catch (e: CancellationException) {
+  throw e
+} catch (_: Exception) {
+  false
+}
@@ -0,0 +1,231 @@
+package com.trendyol.stove.system.abstractions
+
+import com.fasterxml.jackson.module.kotlin.readValue
+import com.github.dockerjava.api.exception.NotFoundException
+import com.trendyol.stove.containers.StoveContainer
+import com.trendyol.stove.serialization.*
+import com.trendyol.stove.system.*
+import kotlinx.coroutines.*
+import kotlinx.coroutines.sync.*
+import org.slf4j.*
+import org.testcontainers.DockerClientFactory
+import java.nio.channels.FileChannel
+import java.nio.file.*
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import kotlin.io.path.*
+import kotlin.reflect.KClass
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.TimeSource
+
+/**
+ * Lets test processes running at the same time, such as Gradle forks with `maxParallelForks`, share one set of
+ * dependencies instead of each starting its own.
+ *
+ * Processes coordinate per system through a `FileChannel` lock in [directory]. The first process starts the
+ * system and records its state and the ids of the containers it [owns][StateStorage.own]; the others wait for it
+ * and attach to the recorded state, skipping migrations. Every attached process holds a lease, and leases of
+ * processes that are no longer alive are ignored. A recorded system that fails its [LivenessProbe] is started again.
+ *
+ * The last process to drop its lease stops the system, removing the recorded containers by id, unless
+ * `keepDependenciesRunning` is set. For that the containers must outlive the process that started them, so they
+ * are created reusable (see [Stove.reuseContainers]); enable reuse for Testcontainers, for example with
+ * [StoveOptionsDsl.enableReuseForTestContainers]. Without it, Testcontainers removes the containers when the
+ * starting process exits, so that process waits for the other leases to drop before it stops, for at most
+ * [StoveOptionsDsl.teardownTimeout]. Systems running inside the starting process, such as embedded Kafka, are
+ * handled the same way.
+ *
+ * The processes share the containers, so they should not share the data in them. [namespace] is unique per
+ * process; use it to name what each one works with, such as its database, topic suffix or index prefix:
+ *
+ * ```kotlin
+ * val shared = SharedStateStorageFactory()
+ * Stove { stateStorage(shared) }
+ *   .with {
+ *     kafka { KafkaSystemOptions(topicNamespacing = KafkaTopicNamespacing.perWorker(shared.namespace), ...) }
+ *     postgresql {
+ *       PostgresqlOptions(configureExposedConfiguration = { cfg ->
+ *         listOf("spring.datasource.url=${cfg.jdbcUrl}?currentSchema=orders_${shared.namespace}")
+ *       }, ...)
+ *     }
+ *   }
+ * ```
+ *
+ * @param namespace isolation name of this process, the Gradle test worker id by default
+ */
+class SharedStateStorageFactory(
+  val namespace: String = defaultNamespace(),
+  private val directory: Path = Paths.get(System.getProperty("java.io.tmpdir"), "com.trendyol.stove", "shared")
+) : StateStorageFactory {
+  override fun <T : Any> invoke(options: StoveOptions, system: KClass<*>, state: KClass<T>): StateStorage<T> =
+    SharedStateStorage(options, system, state, null, directory)
+
+  override fun <T : Any> createWithKey(
+    options: StoveOptions,
+    system: KClass<*>,
+    state: KClass<T>,
+    keyName: String?
+  ): StateStorage<T> = SharedStateStorage(options, system, state, keyName, directory)
+
+  companion object {
+    /** `fork` followed by the Gradle test worker id, or by the process id outside Gradle. */
+    fun defaultNamespace(): String = "fork" + (System.getProperty("org.gradle.test.worker") ?: ProcessHandle.current().pid().toString())
+  }
+}
+
+/**
+ * The state shared by every process attached to one system.
+ * @param starter the process that started the system
+ * @param leases the processes attached to it, the starter included
+ * @param containers ids of the containers the system runs in, removed by the last process to leave
+ * @param starterBound whether the system goes away with [starter], so [starter] has to be the last to leave
+ */
+internal data class SharedState(
+  val state: Any?,
+  val starter: Long,
+  val leases: Set<Long>,
+  val containers: Set<String> = emptySet(),
+  val starterBound: Boolean = true
+) {
+  fun withoutDeadLeases(): SharedState = copy(leases = leases.filter(::isAlive).toSet())
+
+  companion object {
+    fun isAlive(pid: Long): Boolean = ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false)
+  }
+}
+
+internal class SharedStateStorage<TState : Any>(
+  private val options: StoveOptions,
+  private val system: KClass<*>,
+  private val state: KClass<TState>,
+  keyName: String?,
+  directory: Path,
+  private val removeContainers: (Set<String>) -> Unit = ::removeWithDocker
+) : StateStorage<TState> {
+  private val fileName = "stove-e2e-${system.simpleName!!.lowercase(Locale.ROOT)}" +
+    (keyName?.let { "-${it.replace(UNSAFE_FILENAME_CHARS, "-").lowercase(Locale.ROOT)}" } ?: "")
+  private val statePath: Path = directory.resolve("$fileName.json")
+  private val lockPath: Path = directory.resolve("$fileName.lock")
+  private val pid = ProcessHandle.current().pid()
+  private val j = StoveSerde.jackson.default
+  private val l: Logger = LoggerFactory.getLogger(javaClass)
+
+  // Container id to whether Testcontainers removes it when this process exits.
+  private val owned = ConcurrentHashMap<String, Boolean>()
+
+  @Volatile
+  private var attached = false
+
+  init {
+    directory.createDirectories()
+  }
+
+  override suspend fun capture(start: suspend () -> TState): TState = captureWith(probe = null, start)
+
+  override suspend fun capture(probe: LivenessProbe<TState>, start: suspend () -> TState): TState = captureWith(probe, start)
+
+  override fun own(container: StoveContainer) {
+    owned[container.containerIdAccess] = SESSION_LABEL in container.inspect().labels
+  }
+
+  private suspend fun captureWith(probe: LivenessProbe<TState>?, start: suspend () -> TState): TState = locked {
+    val current = read()?.withoutDeadLeases()
+    val recorded = current
+      ?.takeIf { it.state != null && (it.leases.isNotEmpty() || options.keepDependenciesRunning) }
+      ?.let { j.convertValue(it.state, state.java) }
+    val alive = recorded != null && (probe == null || probe.isAliveWithin(recorded))
+    if (current != null && recorded != null && alive) {
+      l.info("${system.simpleName} is shared; attaching to the one started by process ${current.starter}")
+      attached = true
+      write(current.copy(leases = current.leases + pid))
+      recorded
+    } else {
+      if (recorded != null) l.warn("The shared ${system.simpleName} is not reachable; starting it again")
+      l.info("${system.simpleName} is shared; starting it for the other processes at ${statePath.absolutePathString()}")
+      start().also {
+        write(SharedState(it, pid, setOf(pid), owned.keys.toSet(), starterBound = owned.isEmpty() || true in owned.values))
+      }
+    }
+  }
+
+  override fun isSubsequentRun(): Boolean = attached
+
+  override suspend fun release(): Boolean {
+    val waitForOthers = locked {
+      val current = read()?.withoutDeadLeases() ?: return@locked false
+      val others = current.leases - pid
+      if (others.isEmpty()) {
+        stopShared(current)
+        return@locked false
+      }
+      write(current.copy(leases = others))
+      if (current.starter == pid && current.starterBound) true else null
+    } ?: return false
+
+    if (waitForOthers) awaitOtherLeases()
+    return true
+  }
+
+  /** The last process out: removes the containers other processes started and forgets the system. */
+  private fun stopShared(current: SharedState) {
+    if (options.keepDependenciesRunning) return
+    statePath.deleteIfExists()
+    val theirs = current.containers - owned.keys
+    if (theirs.isNotEmpty()) {
+      l.info("Removing the shared {} containers {}", system.simpleName, theirs)
+      removeContainers(theirs)
+    }
+  }
+
+  /** Waits, for at most the teardown timeout, until no other process holds a lease on a system bound to this one. */
+  private suspend fun awaitOtherLeases() {
+    val deadline = TimeSource.Monotonic.markNow() + options.teardownTimeout
+    var remaining = locked { read()?.withoutDeadLeases()?.leases.orEmpty() }
+    if (remaining.isNotEmpty()) {
+      l.info("Waiting for processes {} to finish with the shared {} before stopping it", remaining, system.simpleName)
+    }
+    while (remaining.isNotEmpty() && deadline.hasNotPassedNow()) {
+      delay(LEASE_POLL)
+      remaining = locked { read()?.withoutDeadLeases()?.leases.orEmpty() }
+    }
+    if (remaining.isNotEmpty()) {
+      l.warn(
+        "Processes {} still use the shared {} after {}; stopping it anyway",
+        remaining,
+        system.simpleName,
+        options.teardownTimeout
+      )
+    }
+    if (!options.keepDependenciesRunning) locked { statePath.deleteIfExists() }
+  }
+
+  private fun read(): SharedState? = statePath.takeIf { it.exists() }?.let { j.readValue<SharedState>(it.readBytes()) }
+
+  private fun write(shared: SharedState) = statePath.writeBytes(j.writeValueAsBytes(shared))
+
+  /** Holds the lock file of this system, against other processes and against other storages of this process. */
+  private suspend fun <R> locked(block: suspend () -> R): R = processLocks.getOrPut(lockPath) { Mutex() }.withLock {
+    withContext(Dispatchers.IO) {
+      FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE).use { channel ->
+        channel.lock().use { block() }
+      }
+    }
+  }
+
+  private companion object {
+    val LEASE_POLL = 500.milliseconds
+    val processLocks = ConcurrentHashMap<Path, Mutex>()
+    const val SESSION_LABEL = DockerClientFactory.TESTCONTAINERS_SESSION_ID_LABEL
+
+    fun removeWithDocker(ids: Set<String>) {
+      val docker = DockerClientFactory.lazyClient()
+      ids.forEach { id ->
+        try {
+          docker.removeContainerCmd(id).withForce(true).withRemoveVolumes(true).exec()
+        } catch (_: NotFoundException) {
+          // already gone
+        }
+      }
+    }
+  }
+}
@@ -3,6 +3,7 @@
 package com.trendyol.stove.system.abstractions
 
 import com.fasterxml.jackson.module.kotlin.readValue
+import com.trendyol.stove.containers.StoveContainer
 import com.trendyol.stove.serialization.*
 import com.trendyol.stove.system.*
 import org.slf4j.*
@@ -14,7 +15,25 @@ import kotlin.reflect.KClass
 interface StateStorage<TState> {
   suspend fun capture(start: suspend () -> TState): TState
 
+  /**
+   * Like [capture], but recovered state is only trusted when [probe] finds the system alive; otherwise the system
+   * is started again. Storages that never recover state ignore [probe].
+   */
+  suspend fun capture(probe: LivenessProbe<TState>, start: suspend () -> TState): TState = capture(start)
+
   fun isSubsequentRun(): Boolean
+
+  /**
+   * Records [container] as one the system started in [capture]'s `start`, so a storage shared between processes can
+   * remove it once the last of them is done. Other storages ignore it.
+   */
+  fun own(container: StoveContainer) = Unit
+
+  /**
+   * Gives up this process's hold on the captured state when its system closes.
+   * Returns `false` while other processes still use the dependencies, so they must be left running.
+   */
+  suspend fun release(): Boolean = true
 }
 
 interface StateStorageFactory {
@@ -96,7 +115,11 @@ internal class FileSystemStorage<TState : Any>(
    * Captures Stove state into the file system. Basically creates a Json file which contains the state of the [PluggedSystem]
    * that is run by [Stove].
    */
-  override suspend fun capture(start: suspend () -> TState): TState = when {
+  override suspend fun capture(start: suspend () -> TState): TState = captureWith(probe = null, start)
+
+  override suspend fun capture(probe: LivenessProbe<TState>, start: suspend () -> TState): TState = captureWith(probe, start)
+
+  private suspend fun captureWith(probe: LivenessProbe<TState>?, start: suspend () -> TState): TState = when {
     !options.keepDependenciesRunning -> {
       l.info("State for ${name()} is being deleted at the path: ${pathForSystem.absolutePathString()}")
       pathForSystem.deleteIfExists()
@@ -104,7 +127,7 @@ internal class FileSystemStorage<TState : Any>(
     }
 
     pathForSystem.exists() && options.keepDependenciesRunning -> {
-      recover(otherwise = start)
+      recover(probe, otherwise = start)
     }
 
     !pathForSystem.exists() && options.keepDependenciesRunning -> {
@@ -123,14 +146,21 @@ internal class FileSystemStorage<TState : Any>(
   override fun isSubsequentRun(): Boolean = pathForSystem.exists() && options.keepDependenciesRunning && isDifferentProcess()
 
   /**
-   * Recovers the state of [Stove] from the file system.
+   * Recovers the state of [Stove] from the file system, or starts the system again when [probe] finds it gone.
    */
-  private suspend fun recover(otherwise: suspend () -> TState): TState =
+  private suspend fun recover(probe: LivenessProbe<TState>?, otherwise: suspend () -> TState): TState =
     when {
       pathForSystem.exists() -> {
         l.info("State exists for ${name()}. System is being recovered from: ${pathForSystem.absolutePathString()}")
         val swp = j.readValue<StateWithProcess<TState>>(pathForSystem.readBytes())
-        j.convertValue(swp.state, state.java)
+        val recovered = j.convertValue(swp.state, state.java)
+        if (probe == null || probe.isAliveWithin(recovered)) {
+          recovered
+        } else {
+          l.warn("${name()} recovered from ${pathForSystem.absolutePathString()} is not reachable; starting it again")
+          pathForSystem.deleteIfExists()
+          saveStateForNextRun(otherwise())
+        }
       }
 
       else -> {
@@ -63,12 +63,14 @@ interface ThenSystemContinuation {
    * Executes an action only if dependencies are not set to keep running.
    *
    * This is useful for cleanup actions that should be skipped when
-   * containers are reused across test runs (development mode).
+   * containers are reused across test runs (development mode), or
+   * still used by other test processes (see [SharedStateStorageFactory]).
    *
    * @param action The suspend action to conditionally execute.
    */
   suspend fun executeWithReuseCheck(action: suspend () -> Unit) {
-    if (stove.keepDependenciesRunning) {
+    val lastUser = stove.releaseStateOf(this)
+    if (stove.keepDependenciesRunning || !lastUser) {
       return
     }
     action()
@@ -0,0 +1,39 @@
+package com.trendyol.stove.containers
+
+import com.github.dockerjava.api.DockerClient
+import com.trendyol.stove.database.migrations.*
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.booleans.shouldBeFalse
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldStartWith
+import org.testcontainers.utility.DockerImageName
+
+class MigratedImageCacheTest :
+  FunSpec({
+    val noDocker = lazy<DockerClient> { error("docker must not be used") }
+    val migrations = MigrationCollection<Unit>().register<CreateTables>()
+
+    test("the baked image is named after the image and tagged with the fingerprint") {
+      val images = MigratedImageCache(true, "docker.io/library/postgres:16", migrations, noDocker)
+
+      images.bakedImage shouldStartWith "stove-migrated/postgres:"
+      images.bakedImage.substringAfter(':') shouldBe images.fingerprint.take(32)
+      images.fingerprint shouldBe migrations.fingerprint("docker.io/library/postgres:16")
+    }
+
+    test("a disabled cache neither looks up nor commits images") {
+      val images = MigratedImageCache(false, "postgres:16", migrations, noDocker)
+
+      images.isBaked.shouldBeFalse()
+      images.bake(object : StoveContainer {
+        override val imageNameAccess: DockerImageName
+          get() = error("the container must not be used")
+      })
+    }
+  })
+
+private class CreateTables : DatabaseMigration<Unit> {
+  override val order: Int = 1
+
+  override suspend fun execute(connection: Unit) = Unit
+}
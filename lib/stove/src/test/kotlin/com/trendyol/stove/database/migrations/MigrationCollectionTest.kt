@@ -1,8 +1,15 @@
 package com.trendyol.stove.database.migrations
 
+import com.trendyol.stove.reporting.*
+import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
 import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
 import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import kotlinx.coroutines.*
+import java.util.*
+import kotlin.time.Duration.Companion.seconds
 
 class MigrationCollectionTest :
   FunSpec({
@@ -241,4 +248,107 @@ class MigrationCollectionTest :
 
       result shouldBe collection
     }
+
+    test("fingerprint ignores registration order but not the image") {
+      val fingerprint = MigrationCollection<TestConnection>()
+        .register<SimpleMigration>()
+        .register<AnotherMigration>()
+        .fingerprint("postgres:16")
+
+      MigrationCollection<TestConnection>()
+        .register<AnotherMigration>()
+        .register<SimpleMigration>()
+        .fingerprint("postgres:16") shouldBe fingerprint
+      MigrationCollection<TestConnection>()
+        .register<SimpleMigration>()
+        .register<AnotherMigration>()
+        .fingerprint("postgres:17") shouldNotBe fingerprint
+    }
+
+    test("fingerprint changes with the content hash of a migration") {
+      class ScriptMigration(
+        override val contentHash: String
+      ) : DatabaseMigration<TestConnection> {
+        override val order: Int = 3
+
+        override suspend fun execute(connection: TestConnection) = Unit
+      }
+
+      val v1 = MigrationCollection<TestConnection>().register<ScriptMigration> { ScriptMigration("v1") }
+      val v2 = MigrationCollection<TestConnection>().register<ScriptMigration> { ScriptMigration("v2") }
+
+      v1.fingerprint("postgres:16") shouldNotBe v2.fingerprint("postgres:16")
+    }
+
+    context("parallelism") {
+      class Rendezvous(
+        val mine: CompletableDeferred<Unit>,
+        val theirs: CompletableDeferred<Unit>,
+        val log: MutableList<String>
+      ) : DatabaseMigration<TestConnection> {
+        override val order: Int = 1
+
+        override suspend fun execute(connection: TestConnection) {
+          mine.complete(Unit)
+          theirs.await()
+          log += "rendezvous"
+        }
+      }
+
+      class Partner(
+        val rendezvous: Rendezvous
+      ) : DatabaseMigration<TestConnection> {
+        override val order: Int = 1
+
+        override suspend fun execute(connection: TestConnection) {
+          rendezvous.theirs.complete(Unit)
+          rendezvous.mine.await()
+          rendezvous.log += "partner"
+        }
+      }
+
+      class Seed(
+        val log: MutableList<String>
+      ) : DatabaseMigration<TestConnection> {
+        override val order: Int = 2
+
+        override suspend fun execute(connection: TestConnection) {
+          log += "seed"
+        }
+      }
+
+      test("migrations of the same order run concurrently and the next stage waits for them") {
+        val log = Collections.synchronizedList(mutableListOf<String>())
+        val rendezvous = Rendezvous(CompletableDeferred(), CompletableDeferred(), log)
+        val collection = MigrationCollection<TestConnection>()
+          .parallelism(2)
+          .register<Seed> { Seed(log) }
+          .register<Rendezvous> { rendezvous }
+          .register<Partner> { Partner(rendezvous) }
+
+        withTimeout(5.seconds) { collection.run(TestConnection("test")) }
+
+        log.take(2) shouldContainExactlyInAnyOrder listOf("rendezvous", "partner")
+        log.last() shouldBe "seed"
+      }
+
+      test("each migration is timed in the startup profile") {
+        val profiler = StartupProfiler()
+        val collection = MigrationCollection<TestConnection>()
+          .register<SimpleMigration>()
+          .register<AnotherMigration>()
+
+        withContext(StartupPhaseScope("db", profiler)) { collection.run(TestConnection("test")) }
+
+        profiler.phases().map { it.phase } shouldContainExactly listOf(
+          StartupProfile.migration("SimpleMigration"),
+          StartupProfile.migration("AnotherMigration"),
+          StartupProfile.MIGRATIONS
+        )
+      }
+
+      test("parallelism must be positive") {
+        shouldThrow<IllegalArgumentException> { MigrationCollection<TestConnection>().parallelism(0) }
+      }
+    }
   })
@@ -2,16 +2,21 @@ package com.trendyol.stove.messaging.kafka
 
 import com.trendyol.stove.messaging.*
 import com.trendyol.stove.reporting.StoveReporter
+import com.trendyol.stove.reporting.StoveTestContext
 import com.trendyol.stove.serialization.StoveSerde
 import com.trendyol.stove.tracing.TraceContext
+import io.kotest.assertions.nondeterministic.eventually
 import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldBeEmpty
 import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
 import io.kotest.matchers.shouldBe
 import io.kotest.matchers.string.shouldContain
 import io.kotest.matchers.string.shouldNotContain
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
+import java.nio.ByteBuffer
 import java.util.UUID
 import kotlin.time.Duration.Companion.milliseconds
 import kotlin.time.Duration.Companion.seconds
@@ -20,6 +25,14 @@ private data class CommonEvent(val name: String)
 
 private val serde = StoveSerde.jackson.anyByteArraySerde()
 
+private class CountingSerde : StoveSerde<Any, ByteArray> {
+  var deserializations = 0
+
+  override fun serialize(value: Any): ByteArray = serde.serialize(value)
+
+  override fun <T : Any> deserialize(value: ByteArray, clazz: Class<T>): T = serde.deserialize(value, clazz).also { deserializations++ }
+}
+
 private fun record(
   id: String = UUID.randomUUID().toString(),
   topic: String = "topic",
@@ -71,6 +84,41 @@ class KafkaMessagingTests :
       store.consumedMessages() shouldContainExactly listOf(first, second, third)
     }
 
+    test("scoped reads return the test's records and untagged ones in insertion order") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val mine = record(headers = mapOf(TraceContext.STOVE_TEST_ID_HEADER to "test-1"), event = CommonEvent("mine"))
+      val untagged = record(offset = 1, event = CommonEvent("untagged"))
+      val theirs = record(offset = 2, headers = mapOf(TraceContext.STOVE_TEST_ID_HEADER to "test-2"))
+      val mineLater = record(offset = 3, headers = mapOf(TraceContext.STOVE_TEST_ID_HEADER to "test-1"))
+      listOf(mine, untagged, theirs, mineLater).forEach(store::recordConsumed)
+
+      store.consumedMessages("test-1") shouldContainExactly listOf(mine, untagged, mineLater)
+      store.consumedMessages("unknown") shouldContainExactly listOf(untagged)
+      store.consumedMessages(null) shouldContainExactly listOf(mine, untagged, theirs, mineLater)
+    }
+
+    test("commit lookups use the highest committed offset of the topic-partition") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val commit = { topic: String, partition: Int, offset: Long ->
+        DefaultKafkaRecord(
+          id = UUID.randomUUID().toString(),
+          value = byteArrayOf(),
+          metadata = MessageMetadata(topic, "", emptyMap()),
+          partition = partition,
+          offset = offset
+        )
+      }
+      store.recordCommitted(commit("topic", 0, 5))
+      store.recordCommitted(commit("topic", 0, 3))
+      store.recordCommitted(commit("topic", 1, 9))
+      store.recordCommitted(commit("other", 0, 9))
+
+      store.isCommitted("topic", 0, 4) shouldBe true
+      store.isCommitted("topic", 0, 5) shouldBe false
+      store.isCommitted("missing", 0, 0) shouldBe false
+      store.committedMessagesFor(listOf(record(topic = "topic", partition = 0))).map { it.offset } shouldContainExactly listOf(5L, 3L)
+    }
+
     test("test scoping supports explicit headers and percent-decoded baggage") {
       emptyMap<String, Any>().belongsToTest("test-1") shouldBe true
       mapOf("X-STOVE-TEST-ID" to "test-2").belongsToTest("test-1") shouldBe false
@@ -103,6 +151,242 @@ class KafkaMessagingTests :
       }
     }
 
+    test("waiting assertions evaluate each stored record once across version bumps") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val countingSerde = CountingSerde()
+      val assertions = KafkaAssertions(store, countingSerde)
+      repeat(10) { store.recordPublished(record(event = CommonEvent("early-$it"))) }
+
+      launch {
+        repeat(10) {
+          delay(5)
+          store.recordPublished(record(event = CommonEvent("late-$it")))
+        }
+        store.recordPublished(record(event = CommonEvent("target")))
+      }
+
+      assertions.waitUntilPublished(2.seconds, CommonEvent::class) {
+        it.message.isSome { event -> event.name == "target" }
+      }
+      countingSerde.deserializations shouldBe 21
+    }
+
+    test("separate assertions on the same record deserialize it once per type") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val countingSerde = CountingSerde()
+      val assertions = KafkaAssertions(store, countingSerde)
+      store.recordPublished(record(id = "shared", event = CommonEvent("first")))
+
+      assertions.waitUntilPublished(1.seconds, CommonEvent::class) { it.message.isSome { event -> event.name == "first" } }
+      assertions.waitUntilPublished(1.seconds, CommonEvent::class) { it.message.isSome { event -> event.name == "first" } }
+      countingSerde.deserializations shouldBe 1
+
+      store.recordPublished(record(id = "shared", event = CommonEvent("second")))
+      assertions.waitUntilPublished(1.seconds, CommonEvent::class) { it.message.isSome { event -> event.name == "second" } }
+      countingSerde.deserializations shouldBe 2
+    }
+
+    test("batch assertions match every expectation in one pass over arriving records") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val countingSerde = CountingSerde()
+      val assertions = KafkaAssertions(store, countingSerde)
+      store.recordPublished(record(event = CommonEvent("first")))
+
+      launch {
+        delay(20)
+        store.recordPublished(record(event = CommonEvent("unrelated")))
+        store.recordPublished(record(event = CommonEvent("second")))
+      }
+
+      val expectations = KafkaExpectations().apply {
+        expect<CommonEvent> { actual.name == "second" }
+        expect<CommonEvent> { actual.name == "first" }
+      }
+      val matched = assertions.waitUntilAllPublished(2.seconds, expectations.toList())
+
+      matched shouldContainExactly listOf(CommonEvent("second"), CommonEvent("first"))
+      countingSerde.deserializations shouldBe 3
+    }
+
+    test("batch assertion timeouts list exactly the unmet expectations") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val assertions = KafkaAssertions(store, serde)
+      store.recordPublished(record(event = CommonEvent("first")))
+
+      val expectations = KafkaExpectations().apply {
+        expect<CommonEvent>("first event") { actual.name == "first" }
+        expect<CommonEvent>("second event") { actual.name == "second" }
+        expect<CommonEvent> { actual.name == "third" }
+      }
+      val failure = shouldThrow<AssertionError> {
+        assertions.waitUntilAllPublished(100.milliseconds, expectations.toList())
+      }
+
+      failure.message shouldContain "2 of 3 expectation(s) were not met"
+      failure.message shouldContain "  - second event"
+      failure.message shouldContain "  - CommonEvent #3"
+      failure.message shouldNotContain "  - first event"
+    }
+
+    test("consumed batch assertions report expectations matched by failed records") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val assertions = KafkaAssertions(store, serde)
+      store.recordConsumed(record(event = CommonEvent("consumed")))
+      store.recordFailed(record(offset = 1, event = CommonEvent("failed"), reason = IllegalStateException("boom")))
+
+      val expectations = KafkaExpectations().apply {
+        expect<CommonEvent> { actual.name == "consumed" }
+        expect<CommonEvent>("failing event") { actual.name == "failed" }
+      }
+      val failure = shouldThrow<AssertionError> {
+        assertions.waitUntilAllConsumed(1.seconds, expectations.toList())
+      }
+
+      failure.message shouldContain "  - failing event failed"
+      failure.message shouldNotContain "CommonEvent #1 "
+    }
+
+    test("send window bounds outstanding sends and sums acknowledged bytes") {
+      val window = KafkaSendWindow(maxInFlight = 2)
+      val pending = mutableListOf<(Int, Throwable?) -> Unit>()
+      val submitter = launch(start = CoroutineStart.UNDISPATCHED) {
+        repeat(3) { window.submit { onComplete -> pending += onComplete } }
+      }
+
+      pending.size shouldBe 2
+      pending.removeAt(0)(10, null)
+      submitter.join()
+      pending.forEach { it(5, null) }
+
+      val result = window.awaitAll()
+      result.records shouldBe 3
+      result.bytes shouldBe 20L
+    }
+
+    test("send window rethrows the first failure and rejects further sends") {
+      val window = KafkaSendWindow(maxInFlight = 4)
+      window.submit { onComplete -> onComplete(0, IllegalStateException("broker said no")) }
+
+      shouldThrow<IllegalStateException> { window.submit { onComplete -> onComplete(1, null) } }
+      shouldThrow<IllegalStateException> { window.awaitAll() }.message shouldBe "broker said no"
+    }
+
+    test("lag waits back off until the lag drains and return the whole series") {
+      val lags = ArrayDeque(listOf(5L, 2L, 0L))
+
+      val samples = awaitNoKafkaLag("draining", within = 2.seconds, initialBackoff = 1.milliseconds) {
+        mapOf("topic-0" to lags.removeFirst())
+      }
+
+      samples.map { it.total } shouldContainExactly listOf(5L, 2L, 0L)
+    }
+
+    test("lag wait timeouts carry the lag series and the lagging partitions") {
+      val failure = shouldThrow<AssertionError> {
+        awaitNoKafkaLag("stuck", within = 50.milliseconds, initialBackoff = 10.milliseconds) {
+          mapOf("topic-0" to 0L, "topic-1" to 7L)
+        }
+      }
+
+      failure.message shouldContain "Lag was still 7"
+      failure.message shouldContain "topic-1=7"
+      failure.message shouldNotContain "topic-0="
+      failure.message shouldContain "Lag over time: ["
+    }
+
+    test("lag waits do not count a group without measured partitions as drained") {
+      val failure = shouldThrow<AssertionError> {
+        awaitNoKafkaLag("idle", within = 50.milliseconds, initialBackoff = 10.milliseconds) { emptyMap() }
+      }
+
+      failure.message shouldContain "No partition was measured"
+    }
+
+    test("retention listener drops completed tests' records and untagged records outside open windows") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val listener = KafkaRetentionListener { store }
+      store.recordConsumed(record(id = "boot"))
+
+      listener.onTestStarted(StoveTestContext("test-1", "first"))
+      store.recordConsumed(record(id = "mine", offset = 1, headers = mapOf(TraceContext.STOVE_TEST_ID_HEADER to "test-1")))
+      store.recordConsumed(record(id = "untagged-during-1", offset = 2))
+      store.recordCommitted(record(id = "commit", offset = 3))
+      listener.onTestEnded("test-1")
+
+      store.consumedMessages().map { it.id } shouldContainExactly listOf("mine", "untagged-during-1")
+
+      listener.onTestStarted(StoveTestContext("test-2", "second"))
+      store.recordConsumed(record(id = "theirs", offset = 3, headers = mapOf(TraceContext.STOVE_TEST_ID_HEADER to "test-2")))
+
+      store.consumedMessages().map { it.id } shouldContainExactly listOf("theirs")
+      store.committedMessages().size shouldBe 0
+      store.isCommitted("topic", 0, 2) shouldBe true
+    }
+
+    test("retention cap evicts the oldest records across record kinds") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>(KafkaRetention(maxRecords = 3))
+
+      store.recordPublished(record(id = "published-1"))
+      store.recordConsumed(record(id = "consumed-1"))
+      store.recordPublished(record(id = "published-2"))
+      store.recordConsumed(record(id = "consumed-2"))
+
+      store.publishedMessages().map { it.id } shouldContainExactly listOf("published-2")
+      store.consumedMessages().map { it.id } shouldContainExactly listOf("consumed-1", "consumed-2")
+      store.consumedMessages("any-test").map { it.id } shouldContainExactly listOf("consumed-1", "consumed-2")
+    }
+
+    test("retention byte cap counts payload bytes") {
+      val payloadSize = serde.serialize(CommonEvent("event")).size.toLong()
+      val store = KafkaMessageStore<DefaultKafkaRecord>(KafkaRetention(maxBytes = payloadSize * 2))
+
+      repeat(3) { store.recordPublished(record(id = "published-$it")) }
+
+      store.publishedMessages().map { it.id } shouldContainExactly listOf("published-1", "published-2")
+    }
+
+    test("spilled payloads stay outside the heap byte cap and are materialized on read") {
+      val spill = KafkaPayloadSpill(thresholdBytes = 16, segmentBytes = 64)
+      val store = KafkaMessageStore<DefaultKafkaRecord>(KafkaRetention(maxBytes = 1, spill = spill))
+      val assertions = KafkaAssertions(store, serde)
+      val events = (1..5).map { CommonEvent("spilled-event-$it") }
+
+      events.forEach { event ->
+        val payload = store.payloadOf(ByteBuffer.wrap(serde.serialize(event)))
+        store.recordPublished(DefaultKafkaRecord(id = event.name, payload = payload, metadata = MessageMetadata("topic", "key", emptyMap())))
+      }
+
+      store.publishedMessages().map { serde.deserialize(it.value, CommonEvent::class.java) } shouldContainExactly events
+      assertions.waitUntilPublished(1.seconds, CommonEvent::class) { it.message.isSome { event -> event.name == "spilled-event-5" } }
+    }
+
+    test("buffered payloads are copied once and shared by later reads") {
+      val store = KafkaMessageStore<DefaultKafkaRecord>()
+      val bytes = serde.serialize(CommonEvent("buffered"))
+      val record = DefaultKafkaRecord(
+        id = "buffered",
+        payload = store.payloadOf(ByteBuffer.wrap(bytes)),
+        metadata = MessageMetadata("topic", "key", emptyMap())
+      )
+
+      record.value shouldBe bytes
+      (record.value === record.value) shouldBe true
+      record.heapSize shouldBe bytes.size
+    }
+
+    test("retention byte cap uses each record's own heap size") {
+      val store = KafkaMessageStore<KafkaRecord>(KafkaRetention(maxBytes = 1))
+      val offHeap = (1..3).map { index ->
+        object : KafkaRecord by record(id = "off-heap-$index") {
+          override val heapSize: Int = 0
+        }
+      }
+
+      offHeap.forEach(store::recordPublished)
+
+      store.publishedMessages().map { it.id } shouldContainExactly listOf("off-heap-1", "off-heap-2", "off-heap-3")
+    }
+
     test("a matching failure terminates a consumed assertion immediately") {
       val store = KafkaMessageStore<DefaultKafkaRecord>()
       val assertions = KafkaAssertions(store, serde)
@@ -235,4 +519,60 @@ class KafkaMessagingTests :
       dump shouldNotContain "their-ack"
       dump shouldContain "2 message(s) from other tests hidden"
     }
+
+    test("per-test namespacing suffixes topics with a topic-safe test id") {
+      val namespacing = KafkaTopicNamespacing.perTest()
+
+      namespacing.resolve("orders", "OrderSpec::should publish #1") shouldBe "orders.OrderSpec__should_publish__1"
+      namespacing.resolve("orders") shouldBe "orders"
+      namespacing.resolve("orders", "x".repeat(300)).length shouldBe "orders.".length + 100
+      KafkaTopicNamespacing.perWorker(worker = "7").resolve("orders", "test-1") shouldBe "orders.7"
+    }
+
+    test("topic namespace creates a test's topics in one batch and deletes them when the test ends") {
+      val creations = mutableListOf<Set<String>>()
+      val deletions = mutableListOf<Set<String>>()
+      val namespace = KafkaTopicNamespace(
+        KafkaTopicNamespacing.perTest(topics = listOf("orders", "payments")),
+        createTopics = { synchronized(creations) { creations += it } },
+        deleteTopics = { synchronized(deletions) { deletions += it } }
+      )
+
+      TraceContext.use("test-1") { ctx ->
+        TraceContext.withPropagation(ctx) {
+          namespace.resolve("orders") shouldBe "orders.test-1"
+          namespace.resolve("payments") shouldBe "payments.test-1"
+          namespace.resolve("audit") shouldBe "audit.test-1"
+        }
+      }
+
+      creations shouldContainExactly listOf(setOf("orders.test-1", "payments.test-1"), setOf("audit.test-1"))
+      namespace.onTestEnded("test-2")
+      deletions.shouldBeEmpty()
+
+      namespace.onTestEnded("test-1")
+      eventually(5.seconds) {
+        val deleted = synchronized(deletions) { deletions.flatten() }
+        deleted shouldContainExactlyInAnyOrder listOf("orders.test-1", "payments.test-1", "audit.test-1")
+      }
+      namespace.close()
+      deletions.size shouldBe 1
+    }
+
+    test("per-worker topics outlive tests and are deleted on close") {
+      val deletions = mutableListOf<Set<String>>()
+      val namespace = KafkaTopicNamespace(
+        KafkaTopicNamespacing.perWorker(worker = "w1"),
+        createTopics = { },
+        deleteTopics = { deletions += it }
+      )
+
+      TraceContext.use("test-1") { ctx ->
+        TraceContext.withPropagation(ctx) { namespace.resolve("orders") shouldBe "orders.w1" }
+      }
+      namespace.onTestEnded("test-1")
+      namespace.close()
+
+      deletions shouldContainExactly listOf(setOf("orders.w1"))
+    }
   })
@@ -1,11 +1,21 @@
 package com.trendyol.stove.system
 
 import arrow.core.None
+import com.trendyol.stove.reporting.*
 import com.trendyol.stove.system.abstractions.*
 import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldContainAll
+import io.kotest.matchers.comparables.shouldBeGreaterThanOrEqualTo
+import io.kotest.matchers.comparables.shouldBeLessThan
 import io.kotest.matchers.shouldBe
-import kotlinx.coroutines.runBlocking
+import io.kotest.matchers.string.shouldContain
+import kotlinx.coroutines.*
+import java.util.concurrent.CopyOnWriteArrayList
+import kotlin.io.path.*
+import kotlin.reflect.KClass
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
 
 class StoveTest :
   FunSpec({
@@ -44,6 +54,108 @@ class StoveTest :
       Stove.instanceInitialized() shouldBe true
     }
 
+    test("run starts a system only after the systems it depends on are running") {
+      val stove = Stove()
+      val events = CopyOnWriteArrayList<String>()
+      stove.getOrRegister(StubSystem(stove, "database", events, delayMillis = 100))
+      stove.getOrRegister(DependentSystem(stove, "schema", events, setOf(StubSystem::class)))
+      stove.applicationUnderTest(TestApplicationUnderTest())
+
+      runBlocking { stove.run() }
+
+      (events.indexOf("database:run") < events.indexOf("schema:beforeRun")) shouldBe true
+    }
+
+    test("run starts the application once the systems it needs are running and still waits for the rest") {
+      val events = CopyOnWriteArrayList<String>()
+      val stove = Stove { startApplicationAfter(DependentSystem::class) }
+      val slow = StubSystem(stove, "search", events, delayMillis = 300)
+      stove.getOrRegister(slow)
+      stove.getOrRegister(DependentSystem(stove, "database", events))
+      val app = TestApplicationUnderTest(events)
+      stove.applicationUnderTest(app)
+
+      runBlocking { stove.run() }
+
+      app.receivedConfigs shouldBe listOf("database.config=true")
+      (events.indexOf("app:start") < events.indexOf("search:run")) shouldBe true
+      (events.indexOf("search:afterRun") > events.indexOf("search:run")) shouldBe true
+      stove.startupProfile()!!.phases.map { it.system to it.phase } shouldContainAll listOf(
+        "StubSystem" to "run",
+        "DependentSystem" to "run",
+        "application" to "start",
+        "StubSystem" to "afterRun"
+      )
+    }
+
+    test("the startup profile is reported after run and again with the teardown after close") {
+      val stove = Stove()
+      val profiles = CopyOnWriteArrayList<StartupProfile>()
+      stove.reporter.addListener(
+        object : ReportEventListener {
+          override fun onStartupProfile(profile: StartupProfile) {
+            profiles += profile
+          }
+        }
+      )
+      stove.getOrRegister(StubSystem(stove, "database", CopyOnWriteArrayList(), delayMillis = 50))
+      stove.applicationUnderTest(TestApplicationUnderTest())
+
+      runBlocking { stove.run() }
+      stove.close()
+
+      profiles.map { it.teardown == null } shouldBe listOf(true, false)
+      profiles.first().phasesOf("StubSystem").first { it.phase == StartupProfile.RUN }.duration shouldBeGreaterThanOrEqualTo 50.milliseconds
+      profiles.last().phases.map { it.system to it.phase } shouldContainAll listOf(
+        StartupProfile.APPLICATION to StartupProfile.STOP,
+        "StubSystem" to StartupProfile.CLOSE
+      )
+      Path("build/stove-reports", StartupProfile.FILE_NAME).readText() shouldContain "\"teardownMs\""
+    }
+
+    test("run fails when systems depend on each other in a cycle") {
+      val stove = Stove()
+      val events = CopyOnWriteArrayList<String>()
+      stove.getOrRegister(DependentSystem(stove, "a", events, setOf(StubSystem::class)))
+      stove.getOrRegister(StubSystem(stove, "b", events, dependsOn = setOf(DependentSystem::class)))
+      stove.applicationUnderTest(TestApplicationUnderTest())
+
+      val error = shouldThrow<IllegalStateException> { runBlocking { stove.run() } }
+
+      error.message shouldContain "cycle"
+      events shouldBe emptyList()
+    }
+
+    test("close stops the application first, then closes a system after the systems that depend on it") {
+      val events = CopyOnWriteArrayList<String>()
+      val stove = Stove()
+      stove.getOrRegister(StubSystem(stove, "broker", events))
+      stove.getOrRegister(DependentSystem(stove, "consumer", events, setOf(StubSystem::class)) { Thread.sleep(100) })
+      stove.applicationUnderTest(TestApplicationUnderTest(events))
+      runBlocking { stove.run() }
+
+      stove.close()
+
+      events.filter { it.endsWith(":stop") || it.endsWith(":close") } shouldBe listOf("app:stop", "consumer:close", "broker:close")
+    }
+
+    test("close runs independent systems in parallel and bounds each of them by the teardown timeout") {
+      val events = CopyOnWriteArrayList<String>()
+      val stove = Stove { teardownTimeout(200.milliseconds) }
+      stove.getOrRegister(StubSystem(stove, "stuck", events) { Thread.sleep(2_000) })
+      stove.getOrRegister(DependentSystem(stove, "failing", events) { error("cannot close") })
+      stove.registerForDispose(AutoCloseable { Thread.sleep(150) })
+      stove.applicationUnderTest(TestApplicationUnderTest(events))
+      runBlocking { stove.run() }
+
+      stove.close()
+
+      val profile = stove.startupProfile()!!
+      profile.teardown!! shouldBeLessThan 1.seconds
+      profile.phases.filter { it.phase == StartupProfile.CLOSE }.map { it.system } shouldContainAll listOf("StubSystem", "DependentSystem")
+      profile.phasesOf("StubSystem").first { it.phase == StartupProfile.CLOSE }.duration shouldBeLessThan 1.seconds
+    }
+
     test("stove validation DSL throws when not initialized") {
       if (!Stove.instanceInitialized()) {
         shouldThrow<IllegalStateException> {
@@ -55,17 +167,22 @@ class StoveTest :
     }
   })
 
-private class TestApplicationUnderTest : ApplicationUnderTest<String> {
+private class TestApplicationUnderTest(
+  private val events: MutableList<String> = mutableListOf()
+) : ApplicationUnderTest<String> {
   var started: Boolean = false
   var receivedConfigs: List<String> = emptyList()
 
   override suspend fun start(configurations: List<String>): String {
+    events += "app:start"
     started = true
     receivedConfigs = configurations
     return "context"
   }
 
-  override suspend fun stop() = Unit
+  override suspend fun stop() {
+    events += "app:stop"
+  }
 }
 
 private class TestLifecycleSystem(
@@ -99,3 +216,50 @@ private class TestLifecycleSystem(
 
   override fun close() = Unit
 }
+
+private open class StubSystem(
+  override val stove: Stove,
+  val name: String,
+  private val events: MutableList<String>,
+  private val delayMillis: Long = 0,
+  override val dependsOn: Set<KClass<out PluggedSystem>> = emptySet(),
+  private val onClose: () -> Unit = {}
+) : PluggedSystem,
+  BeforeRunAware,
+  RunAware,
+  AfterRunAware,
+  ExposesConfiguration,
+  DependsOnSystems {
+  override suspend fun beforeRun() {
+    events += "$name:beforeRun"
+  }
+
+  override suspend fun run() {
+    delay(delayMillis)
+    events += "$name:run"
+  }
+
+  override suspend fun stop() = Unit
+
+  override suspend fun afterRun() {
+    events += "$name:afterRun"
+  }
+
+  override fun configuration(): List<String> = listOf("$name.config=true")
+
+  override fun then(): Stove = stove
+
+  override fun close() {
+    onClose()
+    events += "$name:close"
+  }
+}
+
+/** A second system type, so that a test can register two stubs side by side. */
+private class DependentSystem(
+  stove: Stove,
+  name: String,
+  events: MutableList<String>,
+  dependsOn: Set<KClass<out PluggedSystem>> = emptySet(),
+  onClose: () -> Unit = {}
+) : StubSystem(stove, name, events, dependsOn = dependsOn, onClose = onClose)
@@ -1,7 +1,13 @@
 package com.trendyol.stove.system
 
+import com.trendyol.stove.reporting.*
+import com.trendyol.stove.tracing.TraceContext
+import io.kotest.assertions.throwables.shouldThrow
 import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldContainExactly
 import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.*
+import java.util.concurrent.CopyOnWriteArrayList
 
 class ValidationDslTest :
   FunSpec({
@@ -11,4 +17,67 @@ class ValidationDslTest :
 
       dsl.stove shouldBe stove
     }
+
+    test("parallel runs validations concurrently") {
+      val first = CompletableDeferred<Unit>()
+      val second = CompletableDeferred<Unit>()
+
+      // Each validation waits for the other, so running them one after another would never finish.
+      withTimeout(5_000) {
+        ValidationDsl(Stove()).parallel {
+          validate {
+            first.complete(Unit)
+            second.await()
+          }
+          validate {
+            second.complete(Unit)
+            first.await()
+          }
+        }
+      }
+    }
+
+    test("parallel cancels the other validations on the first failure and rethrows it") {
+      val cancelled = CompletableDeferred<Boolean>()
+
+      val error = shouldThrow<AssertionError> {
+        ValidationDsl(Stove()).parallel {
+          validate {
+            try {
+              awaitCancellation()
+            } finally {
+              cancelled.complete(true)
+            }
+          }
+          validate {
+            yield()
+            throw AssertionError("not published")
+          }
+        }
+      }
+
+      error.message shouldBe "not published"
+      cancelled.await() shouldBe true
+    }
+
+    test("parallel keeps the test and trace context in every validation") {
+      val testContext = StoveTestContext("ValidationDslTest::parallel", "parallel")
+      val seen = CopyOnWriteArrayList<Pair<String?, String?>>()
+
+      TraceContext.use("ValidationDslTest::parallel") { trace ->
+        withContext(testContext) {
+          ValidationDsl(Stove()).parallel {
+            repeat(3) {
+              validate {
+                withContext(Dispatchers.IO) {
+                  seen += StoveTestContextHolder.get()?.testId to TraceContext.current()?.traceId
+                }
+              }
+            }
+          }
+        }
+
+        seen shouldContainExactly List(3) { testContext.testId to trace.traceId }
+      }
+    }
   })
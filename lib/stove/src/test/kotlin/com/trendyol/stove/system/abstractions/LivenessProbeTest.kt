@@ -0,0 +1,70 @@
+package com.trendyol.stove.system.abstractions
+
+import com.trendyol.stove.system.StoveOptions
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.booleans.shouldBeFalse
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.awaitCancellation
+import java.net.ServerSocket
+import java.util.*
+
+class LivenessProbeTest :
+  FunSpec({
+    fun closedPort(): Int = ServerSocket(0).use { it.localPort }
+
+    fun storage(keyName: String) =
+      FileSystemStorage(StoveOptions(keepDependenciesRunning = true), ProbedSystem::class, ProbedConfig::class, keyName)
+
+    val tcp = LivenessProbe.tcp<ProbedConfig> { listOf("localhost" to it.port) }
+
+    test("addresses are parsed from bootstrap servers and connection strings") {
+      LivenessProbe.addresses("PLAINTEXT://localhost:9092, broker-2:9093") shouldContainExactly
+        listOf("localhost" to 9092, "broker-2" to 9093)
+      LivenessProbe.addresses("couchbase://localhost:11210") shouldContainExactly listOf("localhost" to 11210)
+    }
+
+    test("a tcp probe is alive only while the port accepts connections") {
+      ServerSocket(0).use { server ->
+        tcp.isAlive(ProbedConfig(server.localPort)).shouldBeTrue()
+      }
+      tcp.isAlive(ProbedConfig(closedPort())).shouldBeFalse()
+    }
+
+    test("recovered state is kept while its system is reachable") {
+      val keyName = UUID.randomUUID().toString()
+      ServerSocket(0).use { server ->
+        storage(keyName).capture(tcp) { ProbedConfig(server.localPort) }
+
+        val recovered = storage(keyName).capture(tcp) { ProbedConfig(closedPort()) }
+
+        recovered shouldBe ProbedConfig(server.localPort)
+      }
+    }
+
+    test("a system that is no longer reachable is started again") {
+      val keyName = UUID.randomUUID().toString()
+      storage(keyName).capture(tcp) { ProbedConfig(closedPort()) }
+
+      ServerSocket(0).use { server ->
+        val storage = storage(keyName)
+        val restarted = storage.capture(tcp) { ProbedConfig(server.localPort) }
+
+        restarted shouldBe ProbedConfig(server.localPort)
+        storage.isSubsequentRun().shouldBeFalse()
+      }
+    }
+
+    test("a probe that does not answer in time counts as failed") {
+      val hanging = LivenessProbe<ProbedConfig> { awaitCancellation() }
+
+      hanging.isAliveWithin(ProbedConfig(0)).shouldBeFalse()
+    }
+  })
+
+private class ProbedSystem
+
+private data class ProbedConfig(
+  val port: Int
+) : ExposedConfiguration
@@ -0,0 +1,210 @@
+package com.trendyol.stove.system.abstractions
+
+import com.trendyol.stove.containers.*
+import com.trendyol.stove.serialization.StoveSerde
+import com.trendyol.stove.system.StoveOptions
+import io.kotest.assertions.nondeterministic.eventually
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.booleans.shouldBeFalse
+import io.kotest.matchers.booleans.shouldBeTrue
+import io.kotest.matchers.shouldBe
+import kotlinx.coroutines.*
+import org.testcontainers.utility.DockerImageName
+import java.nio.file.*
+import java.util.concurrent.TimeUnit
+import kotlin.io.path.*
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.seconds
+
+class SharedStateStorageTest :
+  FunSpec({
+    val pid = ProcessHandle.current().pid()
+    val otherProcess = ProcessHandle.current().parent().get().pid()
+
+    fun storage(
+      directory: Path,
+      options: StoveOptions = StoveOptions(),
+      removeContainers: (Set<String>) -> Unit = { error("No container should be removed, was asked for $it") }
+    ) = SharedStateStorage(options, SharedSystem::class, SharedConfig::class, null, directory, removeContainers)
+
+    fun Path.writeShared(state: SharedState) =
+      resolve("stove-e2e-sharedsystem.json").writeBytes(StoveSerde.jackson.default.writeValueAsBytes(state))
+
+    test("the first process starts the system and the next one attaches to it") {
+      val directory = createTempDirectory("stove-shared")
+      var starts = 0
+
+      val first = storage(directory).capture { SharedConfig("started").also { starts++ } }
+      val second = storage(directory)
+      val attached = second.capture { SharedConfig("started again").also { starts++ } }
+
+      first shouldBe SharedConfig("started")
+      attached shouldBe first
+      starts shouldBe 1
+      second.isSubsequentRun().shouldBeTrue()
+    }
+
+    test("leases of processes that are gone are ignored") {
+      val directory = createTempDirectory("stove-shared")
+      directory.writeShared(SharedState(SharedConfig("stale"), starter = Long.MAX_VALUE, leases = setOf(Long.MAX_VALUE)))
+
+      val state = storage(directory).capture { SharedConfig("fresh") }
+
+      state shouldBe SharedConfig("fresh")
+    }
+
+    test("a shared system that fails its probe is started again by the next process") {
+      val directory = createTempDirectory("stove-shared")
+      directory.writeShared(SharedState(SharedConfig("gone"), starter = otherProcess, leases = setOf(otherProcess)))
+      val storage = storage(directory)
+
+      val state = storage.capture(LivenessProbe { it.value != "gone" }) { SharedConfig("restarted") }
+
+      state shouldBe SharedConfig("restarted")
+      storage.isSubsequentRun().shouldBeFalse()
+      storage.release().shouldBeTrue()
+    }
+
+    test("a process that attached leaves the system running when it releases") {
+      val directory = createTempDirectory("stove-shared")
+      directory.writeShared(SharedState(SharedConfig("theirs"), starter = otherProcess, leases = setOf(otherProcess)))
+      val storage = storage(directory)
+      storage.capture { SharedConfig("mine") }
+
+      storage.release().shouldBeFalse()
+    }
+
+    test("the process that started the system stops it once the other processes have left") {
+      val directory = createTempDirectory("stove-shared")
+      val storage = storage(directory)
+      storage.capture { SharedConfig("mine") }
+      directory.writeShared(SharedState(SharedConfig("mine"), starter = pid, leases = setOf(pid, otherProcess)))
+
+      coroutineScope {
+        val release = async { storage.release() }
+        delay(1_000)
+        release.isCompleted.shouldBeFalse()
+
+        directory.writeShared(SharedState(SharedConfig("mine"), starter = pid, leases = emptySet()))
+        release.await().shouldBeTrue()
+      }
+      directory.resolve("stove-e2e-sharedsystem.json").exists().shouldBeFalse()
+    }
+
+    test("the last process to leave removes the containers the starting process recorded") {
+      val directory = createTempDirectory("stove-shared")
+      val theirs = SharedState(SharedConfig("theirs"), otherProcess, setOf(otherProcess), setOf("container-1"), starterBound = false)
+      directory.writeShared(theirs)
+      val removed = mutableListOf<Set<String>>()
+      val storage = storage(directory, removeContainers = { removed += it })
+      storage.capture { SharedConfig("mine") }
+      directory.writeShared(theirs.copy(leases = setOf(pid)))
+
+      storage.release().shouldBeTrue()
+
+      removed shouldBe listOf(setOf("container-1"))
+      directory.resolve("stove-e2e-sharedsystem.json").exists().shouldBeFalse()
+    }
+
+    test("a starting process whose containers go away with it stops waiting at the teardown timeout") {
+      val directory = createTempDirectory("stove-shared")
+      val storage = storage(directory, StoveOptions(teardownTimeout = 1.seconds))
+      storage.capture { SharedConfig("mine") }
+      directory.writeShared(SharedState(SharedConfig("mine"), starter = pid, leases = setOf(pid, otherProcess)))
+
+      withTimeout(10.seconds) { storage.release() }.shouldBeTrue()
+    }
+
+    test("the system stays up for the other processes when the process that started it finishes first") {
+      val directory = createTempDirectory("stove-shared")
+      val java = Paths.get(System.getProperty("java.home"), "bin", "java").toString()
+      fun fork(name: String): Process = ProcessBuilder(
+        java,
+        "-cp",
+        System.getProperty("java.class.path"),
+        SharedStateStorageFork::class.java.name,
+        directory.toString(),
+        name
+      ).inheritIO().start()
+      suspend fun awaitFile(name: String) = eventually(30.seconds) { directory.resolve(name).exists().shouldBeTrue() }
+
+      val forks = mutableListOf<Process>()
+      try {
+        val starter = fork("starter").also(forks::add)
+        awaitFile("starter.captured")
+        val attached = fork("attached").also(forks::add)
+        awaitFile("attached.captured")
+
+        directory.resolve("starter.release").createFile()
+        starter.waitFor(30, TimeUnit.SECONDS).shouldBeTrue()
+
+        directory.resolve("starter.released").readText() shouldBe "false"
+        directory.resolve(SharedStateStorageFork.REMOVED).exists().shouldBeFalse()
+        val afterStarter = storage(directory)
+        afterStarter.capture { SharedConfig("started again") } shouldBe SharedConfig("starter")
+        afterStarter.isSubsequentRun().shouldBeTrue()
+        afterStarter.release().shouldBeFalse()
+
+        directory.resolve("attached.release").createFile()
+        attached.waitFor(30, TimeUnit.SECONDS).shouldBeTrue()
+
+        directory.resolve("attached.released").readText() shouldBe "true"
+        directory.resolve(SharedStateStorageFork.REMOVED).readText() shouldBe "container-of-starter"
+      } finally {
+        forks.forEach(Process::destroyForcibly)
+      }
+    }
+  })
+
+/**
+ * One of the test processes [SharedStateStorageTest] starts. It captures [SharedSystem] as [name][main], owning a
+ * container when it starts it, then releases it once the test creates `<name>.release`, recording the result in
+ * `<name>.released`. Removed containers are written to [REMOVED] instead of Docker.
+ */
+internal object SharedStateStorageFork {
+  const val REMOVED = "removed"
+
+  @JvmStatic
+  fun main(args: Array<String>): Unit = runBlocking {
+    val (path, name) = args
+    val directory = Path(path)
+    val storage = SharedStateStorage(StoveOptions(), SharedSystem::class, SharedConfig::class, null, directory) { ids ->
+      directory.resolve(REMOVED).writeText(ids.joinToString(","))
+    }
+
+    storage.capture {
+      storage.own(FakeContainer("container-of-$name"))
+      SharedConfig(name)
+    }
+    directory.resolve("$name.captured").createFile()
+    while (directory.resolve("$name.release").notExists()) delay(50.milliseconds)
+    directory.resolve("$name.released").writeText(storage.release().toString())
+  }
+}
+
+/** A container that Testcontainers does not bind to the process that started it, as with reuse enabled. */
+private class FakeContainer(
+  override val containerIdAccess: String
+) : StoveContainer {
+  override val imageNameAccess: DockerImageName = DockerImageName.parse("stove/fake")
+
+  override fun inspect(): StoveContainerInspectInformation = StoveContainerInspectInformation(
+    id = containerIdAccess,
+    labels = emptyMap(),
+    name = containerIdAccess,
+    state = "running",
+    running = true,
+    paused = false,
+    restarting = false,
+    startedAt = "",
+    finishedAt = "",
+    exitCode = 0,
+    error = ""
+  )
+}
+
+private class SharedSystem
+
+private data class SharedConfig(
+  val value: String
+) : ExposedConfiguration
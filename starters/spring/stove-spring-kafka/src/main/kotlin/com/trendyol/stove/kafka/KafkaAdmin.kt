@@ -0,0 +1,87 @@
+package com.trendyol.stove.kafka
+
+import com.trendyol.stove.messaging.kafka.*
+import kotlinx.coroutines.future.await
+import org.apache.kafka.clients.admin.*
+import org.apache.kafka.common.TopicPartition
+import org.apache.kafka.common.errors.TopicExistsException
+import org.apache.kafka.common.quota.*
+
+// Admin calls behind the transport-neutral helpers in com.trendyol.stove.messaging.kafka, which core keeps free of kafka-clients.
+
+/**
+ * Returns the lag of consumer group [groupId] per partition: the latest offset minus the group's
+ * committed offset. With [topics], every partition of those topics is included and partitions the
+ * group never committed count in full; otherwise only the partitions the group has committed.
+ */
+internal suspend fun Admin.consumerGroupLag(
+  groupId: String,
+  topics: Collection<String>
+): Map<TopicPartition, Long> {
+  val committed = listConsumerGroupOffsets(groupId)
+    .partitionsToOffsetAndMetadata()
+    .toCompletionStage()
+    .await()
+  val partitions = if (topics.isEmpty()) {
+    committed.keys
+  } else {
+    describeTopics(topics)
+      .allTopicNames()
+      .toCompletionStage()
+      .await()
+      .values
+      .flatMap { topic -> topic.partitions().map { TopicPartition(topic.name(), it.partition()) } }
+  }
+  if (partitions.isEmpty()) return emptyMap()
+
+  val latest = listOffsets(partitions.associateWith { OffsetSpec.latest() })
+    .all()
+    .toCompletionStage()
+    .await()
+  return partitions.associateWith { partition ->
+    (latest.getValue(partition).offset() - (committed[partition]?.offset() ?: 0L)).coerceAtLeast(0L)
+  }
+}
+
+/** Replaces the quotas of [entities]; a `null` rate removes that quota. Backs [KafkaClientQuotas]. */
+internal suspend fun Admin.setClientQuotas(
+  entities: List<Map<String, String>>,
+  produceBytesPerSec: Long?,
+  fetchBytesPerSec: Long?
+) {
+  val ops = listOf(
+    ClientQuotaAlteration.Op(KafkaClientQuotas.PRODUCER_BYTE_RATE, produceBytesPerSec?.toDouble()),
+    ClientQuotaAlteration.Op(KafkaClientQuotas.CONSUMER_BYTE_RATE, fetchBytesPerSec?.toDouble())
+  )
+  alterClientQuotas(entities.map { ClientQuotaAlteration(ClientQuotaEntity(it), ops) })
+    .all()
+    .toCompletionStage()
+    .await()
+}
+
+/**
+ * A [KafkaTopicNamespace] that creates and deletes its topics through [admin], with the partitions and
+ * replication factor of [namespacing]; a topic that already exists counts as created. [admin] is read on
+ * each call, since the systems create their admin client only when they start.
+ */
+internal fun kafkaTopicNamespace(
+  namespacing: KafkaTopicNamespacing,
+  admin: () -> Admin
+): KafkaTopicNamespace = KafkaTopicNamespace(
+  namespacing,
+  createTopics = { topics -> admin().createNamespacedTopics(topics, namespacing) },
+  deleteTopics = { topics -> admin().deleteTopics(topics).all().toCompletionStage().await() }
+)
+
+private suspend fun Admin.createNamespacedTopics(topics: Set<String>, namespacing: KafkaTopicNamespacing) {
+  createTopics(topics.map { NewTopic(it, namespacing.partitions, namespacing.replicationFactor) })
+    .values()
+    .values
+    .forEach { creation ->
+      try {
+        creation.toCompletionStage().await()
+      } catch (_: TopicExistsException) {
+        // created by an earlier run or another worker
+      }
+    }
+}
@@ -0,0 +1,74 @@
+package com.trendyol.stove.kafka
+
+import kotlinx.coroutines.*
+import kotlinx.coroutines.channels.*
+import org.slf4j.*
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.time.Duration.Companion.seconds
+
+/**
+ * How [TestSystemKafkaInterceptor] records what it observes.
+ *
+ * By default every record is converted, stored, and logged at INFO on the listener-container or
+ * producer thread that observed it. With [async], those threads only hand the raw record to a bounded
+ * buffer of [bufferCapacity]; one Stove-owned worker serializes and stores it, and successful records
+ * are logged at DEBUG. A full buffer makes the Kafka thread wait rather than drop an observation.
+ *
+ * Values are serialized on the worker, so a listener that mutates a consumed value in place may be
+ * recorded with the mutation. Register an instance as a bean, or pass it to the interceptor directly.
+ */
+data class KafkaInterceptorRecording(
+  val async: Boolean = false,
+  val bufferCapacity: Int = DEFAULT_BUFFER_CAPACITY
+) {
+  init {
+    require(bufferCapacity > 0) { "bufferCapacity must be greater than zero" }
+  }
+
+  companion object {
+    const val DEFAULT_BUFFER_CAPACITY: Int = 8192
+  }
+}
+
+/**
+ * Single-consumer buffer behind [KafkaInterceptorRecording.async]: tasks run one at a time, in the
+ * order they were submitted, on a Stove-owned coroutine.
+ */
+internal class InterceptorRecordingQueue(
+  private val capacity: Int
+) : AutoCloseable {
+  private val logger: Logger = LoggerFactory.getLogger(InterceptorRecordingQueue::class.java)
+  private val queue = Channel<() -> Unit>(capacity)
+  private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default + CoroutineName("stove-kafka-interceptor-recording"))
+  private val backpressureLogged = AtomicBoolean(false)
+  private val worker: Job = scope.launch {
+    for (task in queue) {
+      runCatching(task).onFailure { logger.warn("Stove could not record an observed Kafka message", it) }
+    }
+  }
+
+  fun submit(task: () -> Unit) {
+    if (queue.trySend(task).isSuccess) return
+    if (backpressureLogged.compareAndSet(false, true)) {
+      logger.warn("Stove Kafka recording buffer is full ({} records); Kafka threads now wait for the recorder", capacity)
+    }
+    runBlocking {
+      try {
+        queue.send(task)
+      } catch (_: ClosedSendChannelException) {
+        logger.debug("Dropping a Kafka observation because the interceptor is closed")
+      }
+    }
+  }
+
+  /** Records everything already buffered, bounded by a timeout, then stops the worker. */
+  override fun close() {
+    queue.close()
+    runBlocking { withTimeoutOrNull(DRAIN_TIMEOUT) { worker.join() } }
+    scope.cancel()
+  }
+
+  companion object {
+    private val DRAIN_TIMEOUT = 30.seconds
+  }
+}
@@ -11,8 +11,10 @@ import com.trendyol.stove.system.abstractions.*
 import com.trendyol.stove.tracing.TraceContext
 import kotlinx.coroutines.*
 import kotlinx.coroutines.flow.*
+import kotlinx.coroutines.future.await
 import org.apache.kafka.clients.admin.*
 import org.apache.kafka.clients.producer.*
+import org.apache.kafka.common.TopicPartition
 import org.apache.kafka.common.header.internals.RecordHeader
 import org.apache.kafka.common.serialization.*
 import org.slf4j.*
@@ -20,6 +22,9 @@ import org.springframework.beans.factory.*
 import org.springframework.context.ApplicationContext
 import org.springframework.kafka.core.*
 import org.springframework.kafka.listener.RecordInterceptor
+import org.springframework.kafka.support.SendResult
+import kotlin.coroutines.CoroutineContext
+import kotlin.coroutines.EmptyCoroutineContext
 import kotlin.reflect.KClass
 import kotlin.time.*
 import kotlin.time.Duration.Companion.seconds
@@ -38,8 +43,18 @@ class KafkaSystem(
   private lateinit var kafkaTemplate: KafkaTemplate<Any, Any>
   private lateinit var exposedConfiguration: KafkaExposedConfiguration
   private lateinit var admin: Admin
+  private val quotas = KafkaClientQuotas { entities, produce, fetch -> admin.setClientQuotas(entities, produce, fetch) }
   val getInterceptor: () -> TestSystemKafkaInterceptor<Any, Any> = { applicationContext.getBean() }
 
+  // The store lives in the application's interceptor bean, so it only exists once the context is up.
+  private val retentionListener = KafkaRetentionListener {
+    if (::applicationContext.isInitialized) getInterceptor().getStore().core else null
+  }
+  private val topicNamespace = context.options.topicNamespacing?.let { namespacing ->
+    kafkaTopicNamespace(namespacing) { admin }
+  }
+  private var retentionListenerRegistered = false
+
   // The application's value serializer would re-encode raw bytes, so publishRaw uses a
   // Stove-owned producer that writes ByteArray values to the wire unchanged.
   private val rawKafkaTemplate = lazy {
@@ -62,9 +77,9 @@ class KafkaSystem(
     val currentTestId = reporter.currentTestId()
     val store = getInterceptor().getStore()
 
-    val consumed = store.consumedRecords().filter { it.metadata.headers.belongsToTest(currentTestId) }
-    val produced = store.producedRecords().filter { it.metadata.headers.belongsToTest(currentTestId) }
-    val failed = store.failedRecords().filter { it.metadata.headers.belongsToTest(currentTestId) }
+    val consumed = store.consumedRecords(currentTestId)
+    val produced = store.producedRecords(currentTestId)
+    val failed = store.failedRecords(currentTestId)
 
     return SystemSnapshot(
       system = reportSystemName,
@@ -207,6 +222,79 @@ class KafkaSystem(
     extraMetadata = mapOf("sizeBytes" to message.size)
   )
 
+  /**
+   * Publishes every message of [messages] to [topic] through the application's KafkaTemplate, pipelined.
+   *
+   * Up to [maxInFlight] records are sent without waiting for their acknowledgements, the template is
+   * flushed once at the end, and the whole batch is reported as a single entry with its record count,
+   * serialized bytes and elapsed time. The first failed send stops the batch and is rethrown.
+   *
+   * With [transactional], the batch runs in [KafkaTemplate.executeInTransaction] and is aborted on
+   * failure; the application's template must be transactional, i.e. its producer factory needs a
+   * transaction id prefix.
+   *
+   * @param key derives each record's key from its message; `null` lets the partitioner spread them
+   */
+  suspend fun publishAll(
+    topic: String,
+    messages: Flow<Any>,
+    key: (Any) -> String? = { null },
+    headers: Map<String, String> = mapOf(),
+    maxInFlight: Int = KafkaSendWindow.DEFAULT_MAX_IN_FLIGHT,
+    transactional: Boolean = false
+  ): KafkaSystem {
+    // The trace context is thread-bound, and a transactional batch runs on the template's thread.
+    val recordHeaders = headers
+      .toMutableMap()
+      .addTraceContext(TraceContext.current())
+      .map { RecordHeader(it.key, it.value.toByteArray()) }
+    val resolvedTopic = resolveTopic(topic)
+    report(
+      action = "Publish all to '$topic'",
+      metadata = mapOf("topic" to resolvedTopic, "headers" to headers, "maxInFlight" to maxInFlight, "transactional" to transactional)
+    ) {
+      if (transactional) {
+        check(kafkaTemplate.isTransactional) { "publishAll(transactional = true) requires a transactional KafkaTemplate" }
+        // Spring binds the transaction to the calling thread, so the whole batch stays on it.
+        withContext(Dispatchers.IO) {
+          kafkaTemplate.executeInTransaction {
+            runBlocking { pipeline(resolvedTopic, messages, key, recordHeaders, maxInFlight, sendContext = EmptyCoroutineContext) }
+          }
+        }
+      } else {
+        pipeline(resolvedTopic, messages, key, recordHeaders, maxInFlight)
+      }
+    }
+    return this
+  }
+
+  /** [publishAll] for an in-memory or lazily generated [Sequence] of messages. */
+  suspend fun publishAll(
+    topic: String,
+    messages: Sequence<Any>,
+    key: (Any) -> String? = { null },
+    headers: Map<String, String> = mapOf(),
+    maxInFlight: Int = KafkaSendWindow.DEFAULT_MAX_IN_FLIGHT,
+    transactional: Boolean = false
+  ): KafkaSystem = publishAll(topic, messages.asFlow(), key, headers, maxInFlight, transactional)
+
+  private suspend fun pipeline(
+    topic: String,
+    messages: Flow<Any>,
+    key: (Any) -> String?,
+    headers: List<RecordHeader>,
+    maxInFlight: Int,
+    sendContext: CoroutineContext = Dispatchers.IO
+  ): KafkaBatchPublishResult = pipelineKafkaSends(messages, maxInFlight, kafkaTemplate::flush, sendContext) { message, onComplete ->
+    val record = ProducerRecord<String, Any>(topic, null, key(message), message, headers)
+    kafkaTemplate.sendAsyncCompatible(record).whenComplete { result, error ->
+      onComplete((result as? SendResult<*, *>)?.recordMetadata?.serializedBytes() ?: 0, error)
+    }
+  }
+
+  // Sizes are -1 for a null key or value.
+  private fun RecordMetadata.serializedBytes(): Int = serializedKeySize().coerceAtLeast(0) + serializedValueSize().coerceAtLeast(0)
+
   private suspend fun publishRecord(
     template: KafkaTemplate<Any, Any>,
     action: String,
@@ -219,10 +307,12 @@ class KafkaSystem(
     testCase: Option<String>,
     extraMetadata: Map<String, Any> = emptyMap()
   ): KafkaSystem {
+    val resolvedTopic = resolveTopic(topic)
     report(
       action = action,
       input = input,
       metadata = buildMap {
+        if (resolvedTopic != topic) put("resolvedTopic", resolvedTopic)
         put("key", key ?: "")
         put("headers", headers)
         put("partition", partition.getOrNull()?.toString() ?: "")
@@ -230,7 +320,7 @@ class KafkaSystem(
       }
     ) {
       val record = ProducerRecord<String, Any>(
-        topic,
+        resolvedTopic,
         partition.getOrNull(),
         key,
         value,
@@ -245,11 +335,94 @@ class KafkaSystem(
     return this
   }
 
+  /**
+   * Returns the name [name] has on the broker for the current test, creating the topic on first use.
+   * Without [KafkaSystemOptions.topicNamespacing] it is [name] itself. Use it wherever a test refers
+   * to a topic outside `publish`, such as `metadata.topic` conditions or [lagOf].
+   */
+  suspend fun topic(name: String): String = resolveTopic(name)
+
+  private suspend fun resolveTopic(topic: String): String = topicNamespace?.resolve(topic) ?: topic
+
   /**
    * Admin operations for Kafka.
    */
   suspend fun adminOperations(block: suspend Admin.() -> Unit) = block(admin)
 
+  /**
+   * Returns the lag of consumer group [groupId] per partition: the latest offset minus the group's
+   * committed offset. With [topics], every partition of those topics is included and partitions the
+   * group never committed count in full; otherwise only the partitions the group has committed.
+   */
+  suspend fun lagOf(
+    groupId: String,
+    topics: Collection<String> = emptyList()
+  ): Map<TopicPartition, Long> = admin.consumerGroupLag(groupId, topics)
+
+  /**
+   * Waits until consumer group [groupId] has no lag on [topics], or on every partition it has
+   * committed to when [topics] is empty, measuring [lagOf] with exponential backoff. Without [topics],
+   * a group that has not committed anything yet is not drained, so the wait goes on until [within].
+   *
+   * The report entry carries the lag measured over time, so a slow consumer shows up as a curve
+   * rather than only as a timeout.
+   */
+  suspend fun shouldHaveNoLag(
+    groupId: String,
+    topics: Collection<String> = emptyList(),
+    within: Duration = 30.seconds
+  ): KafkaSystem {
+    report(
+      action = "shouldHaveNoLag('$groupId')",
+      metadata = mapOf("topics" to topics, "timeout" to within.toString()),
+      expected = Some("No lag within $within")
+    ) {
+      awaitNoKafkaLag(subject = "While expecting no lag for consumer group '$groupId'", within = within) {
+        lagOf(groupId, topics).mapKeys { (partition, _) -> partition.toString() }
+      }
+    }
+    return this
+  }
+
+  /**
+   * Throttles the clients identified by [clientId] and/or [user] with broker quotas, so tests can
+   * watch how the application copes with a slow broker. Each call replaces the quota of that client;
+   * a `null` rate leaves the direction unthrottled. Brokers apply a quota within moments of the call.
+   *
+   * [unthrottle] removes every quota set this way, and closing the system does so as well.
+   */
+  suspend fun throttle(
+    clientId: String? = null,
+    user: String? = null,
+    produceBytesPerSec: Long? = null,
+    fetchBytesPerSec: Long? = null
+  ): KafkaSystem {
+    val entity = KafkaClientQuotas.entity(clientId, user, produceBytesPerSec, fetchBytesPerSec)
+    report(
+      action = "throttle($entity)",
+      metadata = buildMap {
+        produceBytesPerSec?.let { put("produceBytesPerSec", it) }
+        fetchBytesPerSec?.let { put("fetchBytesPerSec", it) }
+      }
+    ) {
+      quotas.throttle(entity, produceBytesPerSec, fetchBytesPerSec)
+    }
+    return this
+  }
+
+  /**
+   * Removes the quotas set by [throttle].
+   */
+  suspend fun unthrottle(): KafkaSystem {
+    report(
+      action = "unthrottle",
+      metadata = mapOf("clients" to quotas.clients)
+    ) {
+      quotas.removeAll()
+    }
+    return this
+  }
+
   /**
    * Waits until a published message on [topic] matches [condition] and returns it.
    *
@@ -370,6 +543,50 @@ class KafkaSystem(
     }
   }
 
+  /**
+   * Waits until a published message matches every expectation declared in [expectations].
+   *
+   * Arriving messages are evaluated once against the expectations still pending, under the single
+   * [atLeastIn] timeout, and the call is reported as one assertion. A timeout lists exactly the
+   * expectations that were not met.
+   *
+   * ```kotlin
+   * shouldAllBePublished {
+   *   expect<OrderCreatedEvent> { actual.orderId == orderId }
+   *   expect<StockReservedEvent> { actual.orderId == orderId }
+   * }
+   * ```
+   */
+  suspend fun shouldAllBePublished(
+    atLeastIn: Duration = 5.seconds,
+    expectations: KafkaExpectations.() -> Unit
+  ): KafkaSystem {
+    val declared = KafkaExpectations().apply(expectations)
+    return assertKafkaMessage<List<Any>>(
+      assertionName = "shouldAllBePublished",
+      typeName = declared.typeNames(),
+      timeout = atLeastIn,
+      expected = "${declared.toList().size} message(s) matching their conditions within $atLeastIn"
+    ) { onMatch -> onMatch(getInterceptor().waitUntilAllPublished(atLeastIn, declared.toList())) }
+  }
+
+  /**
+   * Consumed counterpart of [shouldAllBePublished]. An expectation matched by a message that failed
+   * or was retried fails the assertion, the same way as [shouldBeConsumed].
+   */
+  suspend fun shouldAllBeConsumed(
+    atLeastIn: Duration = 5.seconds,
+    expectations: KafkaExpectations.() -> Unit
+  ): KafkaSystem {
+    val declared = KafkaExpectations().apply(expectations)
+    return assertKafkaMessage<List<Any>>(
+      assertionName = "shouldAllBeConsumed",
+      typeName = declared.typeNames(),
+      timeout = atLeastIn,
+      expected = "${declared.toList().size} consumed message(s) matching their conditions within $atLeastIn"
+    ) { onMatch -> onMatch(getInterceptor().waitUntilAllConsumed(atLeastIn, declared.toList())) }
+  }
+
   /**
    * Helper to reduce boilerplate in Kafka assertion methods.
    * Handles try-catch, recording, and re-throwing.
@@ -433,6 +650,17 @@ class KafkaSystem(
   override suspend fun stop(): Unit = whenContainer { it.stop() }
 
   override fun close(): Unit = runBlocking {
+    if (retentionListenerRegistered) {
+      stove.removeReportListener(retentionListener)
+      topicNamespace?.let { stove.removeReportListener(it) }
+      retentionListenerRegistered = false
+    }
+    if (::admin.isInitialized) {
+      Try { quotas.removeAll() }.recover { logger.warn("got an error while removing the quotas set by throttle", it) }
+      topicNamespace?.let { namespace ->
+        Try { namespace.close() }.recover { logger.warn("got an error while deleting the namespaced topics", it) }
+      }
+    }
     Try {
       context.options.cleanup(admin)
       if (rawKafkaTemplate.isInitialized()) rawKafkaTemplate.value.destroy()
@@ -452,6 +680,11 @@ class KafkaSystem(
   override suspend fun afterRun(context: ApplicationContext) {
     applicationContext = context
     checkIfInterceptorConfiguredProperly(context)
+    if (!retentionListenerRegistered) {
+      stove.addReportListener(retentionListener)
+      topicNamespace?.let { stove.addReportListener(it) }
+      retentionListenerRegistered = true
+    }
     kafkaTemplate = createKafkaTemplate(context, exposedConfiguration)
     admin = createAdminClient(exposedConfiguration)
     runMigrationsIfNeeded()
@@ -465,8 +698,9 @@ class KafkaSystem(
     }
 
   private suspend fun startKafkaContainer(container: StoveKafkaContainer): KafkaExposedConfiguration =
-    state.capture {
+    state.capture(LivenessProbe.tcp { LivenessProbe.addresses(it.bootstrapServers) }) {
       container.start()
+      state.own(container)
       KafkaExposedConfiguration(container.bootstrapServers)
     }
 
@@ -592,5 +826,6 @@ class KafkaSystem(
      * Use this for advanced Kafka operations not covered by the DSL.
      */
     fun KafkaSystem.kafkaTemplate(): KafkaTemplate<Any, Any> = kafkaTemplate
+
   }
 }
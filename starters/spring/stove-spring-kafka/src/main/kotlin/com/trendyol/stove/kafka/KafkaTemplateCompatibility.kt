@@ -17,19 +17,27 @@ import java.util.concurrent.CompletableFuture
  * Uses reflection to avoid compile-time dependency on ListenableFuture which doesn't exist in Spring 4.x.
  */
 suspend fun KafkaTemplate<*, *>.sendCompatible(record: ProducerRecord<*, *>) {
+  sendAsyncCompatible(record).await()
+}
+
+/**
+ * Starts sending a [ProducerRecord] with the [KafkaTemplate] without waiting for it, and returns the
+ * pending `SendResult` as a [CompletableFuture] on every supported Spring Kafka version.
+ */
+internal fun KafkaTemplate<*, *>.sendAsyncCompatible(record: ProducerRecord<*, *>): CompletableFuture<*> {
   val method = this::class.java.getDeclaredMethod("send", ProducerRecord::class.java).apply { isAccessible = true }
   val returnType = method.returnType
   val result = method.invoke(this, record)
 
-  when {
+  return when {
     CompletableFuture::class.java.isAssignableFrom(returnType) -> {
-      (result as CompletableFuture<*>).await()
+      result as CompletableFuture<*>
     }
 
     returnType.name == "org.springframework.util.concurrent.ListenableFuture" -> {
       // Use reflection to call completable() method for Spring Kafka 2.x/3.x ListenableFuture
       val completableMethod = result.javaClass.getMethod("completable")
-      (completableMethod.invoke(result) as CompletableFuture<*>).await()
+      completableMethod.invoke(result) as CompletableFuture<*>
     }
 
     else -> {
@@ -25,6 +25,12 @@ internal class MessageStore {
 
   fun failedRecords(): List<StoveMessage.Failed> = core.failedMessages().sources()
 
+  fun consumedRecords(testId: String?): List<StoveMessage.Consumed> = core.consumedMessages(testId).sources()
+
+  fun producedRecords(testId: String?): List<StoveMessage.Published> = core.publishedMessages(testId).sources()
+
+  fun failedRecords(testId: String?): List<StoveMessage.Failed> = core.failedMessages(testId).sources()
+
   override fun toString(): String = core.toString()
 
   private fun StoveMessage.toRecord() = DefaultKafkaRecord(
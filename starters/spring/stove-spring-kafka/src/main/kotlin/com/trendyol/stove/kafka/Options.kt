@@ -3,6 +3,7 @@ package com.trendyol.stove.kafka
 import arrow.core.getOrElse
 import com.trendyol.stove.containers.*
 import com.trendyol.stove.database.migrations.*
+import com.trendyol.stove.messaging.kafka.KafkaTopicNamespacing
 import com.trendyol.stove.system.*
 import com.trendyol.stove.system.abstractions.*
 import com.trendyol.stove.system.annotations.StoveDsl
@@ -110,6 +111,12 @@ open class KafkaSystemOptions(
    * ```
    */
   open val properties: Map<String, Any> = emptyMap(),
+  /**
+   * Opt-in topic namespacing for tests that run in parallel. `null` (the default) publishes to
+   * topics exactly as named.
+   * @see KafkaTopicNamespacing
+   */
+  open val topicNamespacing: KafkaTopicNamespacing? = null,
   /**
    * The configuration of the Kafka settings that is exposed to the Application Under Test(AUT).
    */
@@ -133,6 +140,7 @@ open class KafkaSystemOptions(
      * @param ops Operations for Kafka
      * @param runMigrations Whether to run migrations on the external instance (default: true)
      * @param cleanup A suspend function to clean up data after tests complete
+     * @param topicNamespacing Opt-in topic namespacing for tests that run in parallel
      * @param configureExposedConfiguration Function to map exposed config to application properties
      */
     fun provided(
@@ -144,6 +152,7 @@ open class KafkaSystemOptions(
       properties: Map<String, Any> = emptyMap(),
       runMigrations: Boolean = true,
       cleanup: suspend (Admin) -> Unit = {},
+      topicNamespacing: KafkaTopicNamespacing? = null,
       configureExposedConfiguration: (KafkaExposedConfiguration) -> List<String>
     ): ProvidedKafkaSystemOptions = ProvidedKafkaSystemOptions(
       config = KafkaExposedConfiguration(bootstrapServers = bootstrapServers),
@@ -154,6 +163,7 @@ open class KafkaSystemOptions(
       properties = properties,
       runMigrations = runMigrations,
       cleanup = cleanup,
+      topicNamespacing = topicNamespacing,
       configureExposedConfiguration = configureExposedConfiguration
     )
   }
@@ -179,6 +189,7 @@ class ProvidedKafkaSystemOptions(
    * Whether to run migrations on the external instance.
    */
   val runMigrations: Boolean = true,
+  topicNamespacing: KafkaTopicNamespacing? = null,
   configureExposedConfiguration: (KafkaExposedConfiguration) -> List<String>
 ) : KafkaSystemOptions(
   registry = registry,
@@ -188,6 +199,7 @@ class ProvidedKafkaSystemOptions(
   ops = ops,
   cleanup = cleanup,
   properties = properties,
+  topicNamespacing = topicNamespacing,
   configureExposedConfiguration = configureExposedConfiguration
 ),
   ProvidedSystemOptions<KafkaExposedConfiguration> {
@@ -259,7 +271,7 @@ fun WithDsl.kafka(
       options.containerOptions
         .useContainerFn(it)
         .withExposedPorts(*options.ports.toTypedArray())
-        .withReuse(stove.keepDependenciesRunning)
+        .withReuse(stove.reuseContainers)
         .let { c -> c as StoveKafkaContainer }
         .apply(options.containerOptions.containerFn)
     }
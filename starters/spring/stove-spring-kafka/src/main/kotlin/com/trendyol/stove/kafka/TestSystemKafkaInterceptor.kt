@@ -2,6 +2,7 @@ package com.trendyol.stove.kafka
 
 import com.trendyol.stove.messaging.*
 import com.trendyol.stove.messaging.kafka.KafkaAssertions
+import com.trendyol.stove.messaging.kafka.KafkaExpectation
 import com.trendyol.stove.serialization.StoveSerde
 import org.apache.kafka.clients.consumer.*
 import org.apache.kafka.clients.producer.*
@@ -11,13 +12,20 @@ import org.springframework.kafka.support.ProducerListener
 import kotlin.reflect.KClass
 import kotlin.time.Duration
 
-/** Spring Kafka transport adapter for Stove's shared record store and assertion engine. */
+/**
+ * Spring Kafka transport adapter for Stove's shared record store and assertion engine.
+ *
+ * @param recording inline by default; see [KafkaInterceptorRecording] for off-thread recording
+ */
 class TestSystemKafkaInterceptor<K : Any, V : Any>(
-  private val serde: StoveSerde<Any, ByteArray>
+  private val serde: StoveSerde<Any, ByteArray>,
+  val recording: KafkaInterceptorRecording = KafkaInterceptorRecording()
 ) : CompositeRecordInterceptor<K, V>(),
-  ProducerListener<K, V> {
+  ProducerListener<K, V>,
+  AutoCloseable {
   private val logger: Logger = LoggerFactory.getLogger(javaClass)
   private val store = MessageStore()
+  private val recordingQueue = if (recording.async) InterceptorRecordingQueue(recording.bufferCapacity) else null
   private val assertions = KafkaAssertions(
     store = store.core,
     serde = serde,
@@ -29,40 +37,45 @@ class TestSystemKafkaInterceptor<K : Any, V : Any>(
   override fun onSuccess(
     record: ProducerRecord<K, V>,
     recordMetadata: RecordMetadata
-  ) {
+  ) = observe {
     val message = record.toStoveMessage(serde)
     store.record(message)
-    logger.info("Successfully produced:\n{}", message)
+    logSuccess("Successfully produced:\n{}", message)
   }
 
   override fun onError(
     record: ProducerRecord<K, V>,
     recordMetadata: RecordMetadata?,
     exception: Exception
-  ) {
+  ) = observe {
     val underlyingReason = extractCause(exception)
     val message = record.toFailedStoveMessage(serde, underlyingReason)
     store.record(Failure(ObservedMessage(message, record.toMetadata()), underlyingReason))
     logger.error("Error while producing:\n{}", message, exception)
   }
 
-  override fun success(record: ConsumerRecord<K, V>, consumer: Consumer<K, V>) {
+  override fun success(record: ConsumerRecord<K, V>, consumer: Consumer<K, V>) = observe {
     val message = record.toStoveMessage(serde)
     store.record(message)
-    logger.info("Successfully consumed:\n{}", message)
+    logSuccess("Successfully consumed:\n{}", message)
   }
 
   override fun failure(
     record: ConsumerRecord<K, V>,
     exception: Exception,
     consumer: Consumer<K, V>
-  ) {
+  ) = observe {
     val underlyingReason = extractCause(exception)
     val message = record.toFailedStoveMessage(serde, underlyingReason)
     store.record(Failure(ObservedMessage(message, record.toMetadata()), underlyingReason))
     logger.error("Error while consuming:\n{}", message, exception)
   }
 
+  /** Drains records still buffered by async recording; Spring calls this when the context closes. */
+  override fun close() {
+    recordingQueue?.close()
+  }
+
   internal suspend fun <T : Any> waitUntilConsumed(
     atLeastIn: Duration,
     clazz: KClass<T>,
@@ -81,6 +94,24 @@ class TestSystemKafkaInterceptor<K : Any, V : Any>(
     condition: (ParsedMessage<T>) -> Boolean
   ): Unit = assertions.waitUntilPublished(atLeastIn, clazz, condition)
 
+  internal suspend fun waitUntilAllConsumed(
+    atLeastIn: Duration,
+    expectations: List<KafkaExpectation<*>>
+  ): List<Any> = assertions.waitUntilAllConsumed(atLeastIn, expectations)
+
+  internal suspend fun waitUntilAllPublished(
+    atLeastIn: Duration,
+    expectations: List<KafkaExpectation<*>>
+  ): List<Any> = assertions.waitUntilAllPublished(atLeastIn, expectations)
+
+  private fun observe(record: () -> Unit) {
+    if (recordingQueue == null) record() else recordingQueue.submit(record)
+  }
+
+  private fun logSuccess(format: String, message: StoveMessage) {
+    if (recordingQueue == null) logger.info(format, message) else logger.debug(format, message)
+  }
+
   private fun extractCause(listenerException: Exception): Throwable = when (listenerException) {
     is ListenerExecutionFailedException ->
       listenerException.cause
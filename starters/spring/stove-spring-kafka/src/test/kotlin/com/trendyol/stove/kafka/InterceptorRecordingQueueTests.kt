@@ -0,0 +1,61 @@
+package com.trendyol.stove.kafka
+
+import io.kotest.assertions.throwables.shouldThrow
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldContainExactly
+import io.kotest.matchers.collections.shouldNotContain
+import io.kotest.matchers.shouldBe
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class InterceptorRecordingQueueTests :
+  FunSpec({
+
+    test("tasks run in submission order off the submitting thread") {
+      val seen = CopyOnWriteArrayList<Int>()
+      val threads = CopyOnWriteArrayList<Thread>()
+
+      InterceptorRecordingQueue(capacity = 4).use { queue ->
+        repeat(20) { i ->
+          queue.submit {
+            threads.add(Thread.currentThread())
+            seen.add(i)
+          }
+        }
+      }
+
+      seen shouldContainExactly (0 until 20).toList()
+      threads shouldNotContain Thread.currentThread()
+    }
+
+    test("close records everything still buffered") {
+      val gate = CountDownLatch(1)
+      val seen = CopyOnWriteArrayList<Int>()
+      val queue = InterceptorRecordingQueue(capacity = 8)
+
+      queue.submit { gate.await(5, TimeUnit.SECONDS) }
+      repeat(5) { i -> queue.submit { seen.add(i) } }
+      seen.size shouldBe 0
+
+      gate.countDown()
+      queue.close()
+
+      seen shouldContainExactly listOf(0, 1, 2, 3, 4)
+    }
+
+    test("a failing task does not stop the recorder") {
+      val seen = CopyOnWriteArrayList<String>()
+
+      InterceptorRecordingQueue(capacity = 2).use { queue ->
+        queue.submit { error("boom") }
+        queue.submit { seen.add("after") }
+      }
+
+      seen shouldContainExactly listOf("after")
+    }
+
+    test("buffer capacity must be positive") {
+      shouldThrow<IllegalArgumentException> { KafkaInterceptorRecording(async = true, bufferCapacity = 0) }
+    }
+  })
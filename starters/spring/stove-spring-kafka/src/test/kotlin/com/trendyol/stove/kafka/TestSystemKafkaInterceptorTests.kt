@@ -0,0 +1,65 @@
+package com.trendyol.stove.kafka
+
+import com.trendyol.stove.serialization.StoveSerde
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.collections.shouldNotContain
+import org.apache.kafka.clients.consumer.*
+import org.apache.kafka.clients.producer.*
+import org.apache.kafka.common.TopicPartition
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.time.Duration.Companion.seconds
+
+class TestSystemKafkaInterceptorTests :
+  FunSpec({
+    val consumer = MockConsumer<String, String>("earliest")
+
+    test("async recording stores consumed and published records off the Kafka thread") {
+      val serde = GatedSerde()
+      serde.gate.countDown()
+      val interceptor = TestSystemKafkaInterceptor<String, String>(serde, KafkaInterceptorRecording(async = true))
+
+      interceptor.use {
+        it.success(ConsumerRecord("orders", 0, 0L, "key", "consumed"), consumer)
+        it.onSuccess(ProducerRecord("orders", "key", "published"), RecordMetadata(TopicPartition("orders", 0), 0L, 0, 0L, 3, 9))
+
+        it.waitUntilConsumed(5.seconds, String::class) { message -> message.message.getOrNull() == "consumed" }
+        it.waitUntilPublished(5.seconds, String::class) { message -> message.message.getOrNull() == "published" }
+      }
+
+      serde.threads shouldHaveSize 2
+      serde.threads shouldNotContain Thread.currentThread()
+    }
+
+    test("close records what async recording still buffers") {
+      val serde = GatedSerde()
+      val interceptor = TestSystemKafkaInterceptor<String, String>(serde, KafkaInterceptorRecording(async = true))
+      repeat(5) { i -> interceptor.success(ConsumerRecord("orders", 0, i.toLong(), "key", "value-$i"), consumer) }
+      interceptor.getStore().consumedRecords() shouldHaveSize 0
+
+      thread {
+        Thread.sleep(200)
+        serde.gate.countDown()
+      }
+      interceptor.close()
+
+      interceptor.getStore().consumedRecords() shouldHaveSize 5
+    }
+  })
+
+/** Jackson serde whose serialization waits for [gate] and remembers the threads it ran on. */
+private class GatedSerde(
+  private val delegate: StoveSerde<Any, ByteArray> = StoveSerde.jackson.anyByteArraySerde()
+) : StoveSerde<Any, ByteArray> by delegate {
+  val gate = CountDownLatch(1)
+  val threads = CopyOnWriteArrayList<Thread>()
+
+  override fun serialize(value: Any): ByteArray {
+    threads += Thread.currentThread()
+    gate.await(5, TimeUnit.SECONDS)
+    return delegate.serialize(value)
+  }
+}
@@ -35,6 +35,7 @@ class Boot2xStringSerdeKafkaSystemTests : StringSerdeKafkaSystemTests() {
                   beans {
                     bean<TestSystemKafkaInterceptor<*, *>>()
                     bean { StoveSerde.jackson.anyByteArraySerde() }
+                    bean { KafkaInterceptorRecording(async = true) }
                   }
                 )
               }
@@ -35,6 +35,7 @@ class Boot3xStringSerdeKafkaSystemTests : StringSerdeKafkaSystemTests(dltTopicSu
                   beans {
                     bean<TestSystemKafkaInterceptor<*, *>>()
                     bean { StoveSerde.jackson.anyByteArraySerde() }
+                    bean { KafkaInterceptorRecording(async = true) }
                   }
                 )
               }
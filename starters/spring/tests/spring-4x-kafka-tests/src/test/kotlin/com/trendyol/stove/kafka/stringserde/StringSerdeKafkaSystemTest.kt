@@ -36,6 +36,7 @@ class Boot4xStringSerdeKafkaSystemTests : StringSerdeKafkaSystemTests(dltTopicSu
                   stoveSpring4xRegistrar {
                     registerBean<TestSystemKafkaInterceptor<*, *>>(primary = true)
                     registerBean { StoveSerde.jackson.anyByteArraySerde() }
+                    registerBean { KafkaInterceptorRecording(async = true) }
                   }
                 )
               }
@@ -3,15 +3,18 @@ package com.trendyol.stove.kafka
 import arrow.core.some
 import com.trendyol.stove.serialization.StoveSerde
 import com.trendyol.stove.system.stove
+import io.kotest.assertions.nondeterministic.eventually
 import io.kotest.core.spec.style.ShouldSpec
 import io.kotest.matchers.shouldBe
 import org.apache.kafka.clients.admin.NewTopic
+import org.apache.kafka.common.quota.*
 import kotlin.random.Random
 import kotlin.time.Duration.Companion.seconds
 
 /**
  * Shared Kafka string serde tests that work across all Spring Boot versions.
- * Each version module should create their own test class that extends this.
+ * Each version module should create their own test class that extends this, and register a
+ * `KafkaInterceptorRecording(async = true)` bean so these tests run with off-thread recording.
  *
  * @param dltTopicSuffix Dead Letter Topic suffix - ".DLT" for Spring Boot 2.x, "-dlt" for 3.x/4.x
  */
@@ -36,6 +39,19 @@ abstract class StringSerdeKafkaSystemTests(
     }
   }
 
+  should("a KafkaInterceptorRecording bean switches the interceptor to async recording") {
+    stove {
+      kafka {
+        getInterceptor().recording shouldBe KafkaInterceptorRecording(async = true)
+
+        val message = "async recording ${Random.nextInt()}"
+        publish("topic", message)
+        shouldBePublished<Any>(20.seconds) { actual == message }
+        shouldBeConsumed<Any>(20.seconds) { actual == message }
+      }
+    }
+  }
+
   should("publish and consume with failed consumer") {
     shouldThrowMaybe<StoveBusinessException> {
       stove {
@@ -61,6 +77,55 @@ abstract class StringSerdeKafkaSystemTests(
     }
   }
 
+  should("publishAll pipelines a batch and every record is consumed") {
+    stove {
+      kafka {
+        val batch = Random.nextInt().toString()
+        val messages = (1..50).map { "batch $batch message $it" }
+        publishAll("topic", messages.asSequence(), key = { it.toString() }, maxInFlight = 8)
+
+        messages.forEach { message ->
+          shouldBeConsumed<Any>(20.seconds) { actual == message && this.metadata.topic == "topic" }
+        }
+      }
+    }
+  }
+
+  should("consumer group lag drains once the application consumed the topic") {
+    stove {
+      kafka {
+        val message = "lag check ${Random.nextInt()}"
+        publish("topic", message)
+        shouldBeConsumed<Any>(20.seconds) { actual == message }
+
+        shouldHaveNoLag("group_id", listOf("topic"), within = 20.seconds)
+        lagOf("group_id", listOf("topic")).values.sum() shouldBe 0L
+      }
+    }
+  }
+
+  should("throttle sets a client quota and unthrottle removes it") {
+    stove {
+      kafka {
+        val clientId = "throttled-${Random.nextInt()}"
+        val filter = ClientQuotaFilter.containsOnly(listOf(ClientQuotaFilterComponent.ofEntity(ClientQuotaEntity.CLIENT_ID, clientId)))
+        val quotas = suspend {
+          var found: Map<String, Double> = emptyMap()
+          adminOperations { found = describeClientQuotas(filter).entities().get().values.firstOrNull().orEmpty() }
+          found
+        }
+
+        throttle(clientId = clientId, produceBytesPerSec = 1024, fetchBytesPerSec = 2048)
+        eventually(10.seconds) {
+          quotas() shouldBe mapOf("producer_byte_rate" to 1024.0, "consumer_byte_rate" to 2048.0)
+        }
+
+        unthrottle()
+        eventually(10.seconds) { quotas() shouldBe emptyMap() }
+      }
+    }
+  }
+
   should("admin operations") {
     stove {
       kafka {
@@ -32,6 +32,7 @@ export function applyLiveDashboardEvent(queryClient: QueryClient, event: LiveDas
         duration_ms: null,
         stove_version: event.payload.stove_version,
         systems: event.payload.systems,
+        startup_profile: null,
       };
 
       queryClient.setQueryData<AppSummary[]>(["apps"], (apps) =>
@@ -279,6 +280,13 @@ export function applyLiveDashboardEvent(queryClient: QueryClient, event: LiveDas
       }
       break;
     }
+    case EVENT_TYPE.STARTUP_PROFILE: {
+      updateCachedRuns(queryClient, event.run_id, (run) => ({
+        ...run,
+        startup_profile: JSON.stringify(event.payload),
+      }));
+      break;
+    }
   }
 }
 
@@ -398,6 +406,9 @@ function cancelConflictingQueries(queryClient: QueryClient, event: LiveDashboard
         cancel(["warnings", event.run_id]);
       }
       break;
+    case EVENT_TYPE.STARTUP_PROFILE:
+      cancel(["runs"], false);
+      break;
   }
 }
 
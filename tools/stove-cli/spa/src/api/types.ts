@@ -12,6 +12,7 @@ export const EVENT_TYPE = {
   SNAPSHOT: "snapshot",
   MOCK_INTERACTION: "mock_interaction",
   MOCK_WARNING: "mock_warning",
+  STARTUP_PROFILE: "startup_profile",
 } as const;
 
 export type EventType = (typeof EVENT_TYPE)[keyof typeof EVENT_TYPE];
@@ -42,6 +43,8 @@ export interface Run {
   duration_ms: number | null;
   stove_version: string | null;
   systems: string[];
+  /** JSON of a `LiveStartupProfilePayload`, once the run has reported one. */
+  startup_profile: string | null;
 }
 
 export interface Test {
@@ -262,6 +265,18 @@ export interface LiveMockWarningPayload {
   target: string | null;
 }
 
+export interface LiveStartupPhasePayload {
+  system: string;
+  phase: string;
+  duration_ms: number;
+}
+
+export interface LiveStartupProfilePayload {
+  captured_at: string;
+  startup_ms: number;
+  phases: LiveStartupPhasePayload[];
+}
+
 interface LiveEventBase {
   seq: number;
   run_id: string;
@@ -291,4 +306,8 @@ export type LiveDashboardEvent =
   | (LiveEventBase & {
       event_type: typeof EVENT_TYPE.MOCK_WARNING;
       payload: LiveMockWarningPayload;
+    })
+  | (LiveEventBase & {
+      event_type: typeof EVENT_TYPE.STARTUP_PROFILE;
+      payload: LiveStartupProfilePayload;
     });
@@ -151,6 +151,9 @@ impl DashboardEventServiceImpl {
       proto::dashboard_event::Event::MockWarning(inner) => {
         preparers::prepare_mock_warning(&mut state, &event.run_id, inner)
       }
+      proto::dashboard_event::Event::StartupProfile(inner) => {
+        preparers::prepare_startup_profile(&mut state, &event.run_id, inner)
+      }
     }?;
 
     Ok(Some(prepared))
@@ -16,6 +16,8 @@ use crate::ingest::LiveRunEndedPayload;
 use crate::ingest::LiveRunStartedPayload;
 use crate::ingest::LiveSnapshotPayload;
 use crate::ingest::LiveSpanRecordedPayload;
+use crate::ingest::LiveStartupPhasePayload;
+use crate::ingest::LiveStartupProfilePayload;
 use crate::ingest::LiveTestEndedPayload;
 use crate::ingest::LiveTestStartedPayload;
 use crate::ingest::PersistedDashboardEvent;
@@ -480,6 +482,41 @@ pub(super) fn prepare_mock_warning(
   })
 }
 
+pub(super) fn prepare_startup_profile(
+  state: &mut LiveState,
+  run_id: &str,
+  event: &proto::StartupProfileEvent,
+) -> AppResult<PreparedDashboardEvent> {
+  ensure_run_known(state, run_id)?;
+  let profile = LiveStartupProfilePayload {
+    captured_at: format_timestamp(event.timestamp.as_ref()),
+    startup_ms: event.startup_ms,
+    phases: event
+      .phases
+      .iter()
+      .map(|phase| LiveStartupPhasePayload {
+        system: phase.system.clone(),
+        phase: phase.phase.clone(),
+        duration_ms: phase.duration_ms,
+      })
+      .collect(),
+  };
+  let profile_json = serde_json::to_string(&profile)?;
+
+  Ok(PreparedDashboardEvent {
+    live: live_event(
+      run_id,
+      event_type::STARTUP_PROFILE,
+      LiveDashboardPayload::StartupProfile(profile),
+    ),
+    persisted: PersistedDashboardEvent::StartupProfile {
+      run_id: run_id.to_string(),
+      profile_json,
+    },
+    flush: FlushBehavior::Deferred,
+  })
+}
+
 fn live_event(run_id: &str, event_type: &str, payload: LiveDashboardPayload) -> LiveDashboardEvent {
   LiveDashboardEvent {
     seq: 0,
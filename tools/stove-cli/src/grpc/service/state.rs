@@ -20,6 +20,7 @@ pub(super) mod event_type {
   pub const SNAPSHOT: &str = "snapshot";
   pub const MOCK_INTERACTION: &str = "mock_interaction";
   pub const MOCK_WARNING: &str = "mock_warning";
+  pub const STARTUP_PROFILE: &str = "startup_profile";
 }
 
 #[derive(Default)]
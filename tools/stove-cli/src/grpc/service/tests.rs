@@ -107,6 +107,53 @@ async fn process_run_started_event() {
   assert_eq!(runs[0].stove_version.as_deref(), Some("0.23.2"));
 }
 
+#[tokio::test]
+async fn startup_profile_is_broadcast_and_stored_on_the_run() {
+  let svc = test_service();
+  let mut rx = svc.sse_manager.subscribe();
+  svc
+    .process_event(&proto::DashboardEvent {
+      run_id: "run-1".to_string(),
+      event: Some(proto::dashboard_event::Event::RunStarted(
+        proto::RunStartedEvent {
+          timestamp: Some(ts(1_704_067_200)),
+          app_name: "product-api".to_string(),
+          systems: vec!["Kafka".to_string()],
+          stove_version: "0.23.2".to_string(),
+        },
+      )),
+    })
+    .unwrap();
+  rx.try_recv().unwrap();
+
+  svc
+    .process_event(&proto::DashboardEvent {
+      run_id: "run-1".to_string(),
+      event: Some(proto::dashboard_event::Event::StartupProfile(
+        proto::StartupProfileEvent {
+          timestamp: Some(ts(1_704_067_205)),
+          startup_ms: 4200,
+          phases: vec![proto::StartupPhase {
+            system: "KafkaSystem".to_string(),
+            phase: "run".to_string(),
+            duration_ms: 3100,
+          }],
+        },
+      )),
+    })
+    .unwrap();
+
+  let msg = rx.try_recv().expect("startup profile should be broadcast");
+  assert!(msg.contains("startup_profile"));
+  svc.flush_pending().await.unwrap();
+
+  let run = svc.repository.get_run("run-1").unwrap().unwrap();
+  let profile: serde_json::Value = serde_json::from_str(&run.startup_profile.unwrap()).unwrap();
+  assert_eq!(profile["startup_ms"], 4200);
+  assert_eq!(profile["phases"][0]["system"], "KafkaSystem");
+  assert_eq!(profile["phases"][0]["duration_ms"], 3100);
+}
+
 #[tokio::test]
 async fn process_full_lifecycle() {
   let svc = test_service();
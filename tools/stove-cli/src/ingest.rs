@@ -58,6 +58,10 @@ pub enum PersistedDashboardEvent {
   },
   MockInteraction(NewMockInteraction),
   MockWarning(NewMockWarning),
+  StartupProfile {
+    run_id: String,
+    profile_json: String,
+  },
 }
 
 #[derive(Clone, Debug, Serialize)]
@@ -82,7 +86,8 @@ impl LiveDashboardEvent {
       LiveDashboardPayload::RunStarted(_)
       | LiveDashboardPayload::RunEnded(_)
       | LiveDashboardPayload::TestStarted(_)
-      | LiveDashboardPayload::TestEnded(_) => {}
+      | LiveDashboardPayload::TestEnded(_)
+      | LiveDashboardPayload::StartupProfile(_) => {}
     }
     self
   }
@@ -100,6 +105,7 @@ pub enum LiveDashboardPayload {
   Snapshot(LiveSnapshotPayload),
   MockInteraction(LiveMockInteractionPayload),
   MockWarning(LiveMockWarningPayload),
+  StartupProfile(LiveStartupProfilePayload),
 }
 
 #[derive(Clone, Debug, Serialize)]
@@ -228,6 +234,20 @@ pub struct LiveMockWarningPayload {
   pub target: Option<String>,
 }
 
+#[derive(Clone, Debug, Serialize)]
+pub struct LiveStartupProfilePayload {
+  pub captured_at: String,
+  pub startup_ms: i64,
+  pub phases: Vec<LiveStartupPhasePayload>,
+}
+
+#[derive(Clone, Debug, Serialize)]
+pub struct LiveStartupPhasePayload {
+  pub system: String,
+  pub phase: String,
+  pub duration_ms: i64,
+}
+
 #[derive(Clone)]
 pub struct EventIngestor {
   sender: mpsc::UnboundedSender<IngestCommand>,
@@ -31,6 +31,10 @@ const MIGRATIONS: &[(&str, &str)] = &[
     "V6__entry_assertion_correlation",
     include_str!("migrations/V6__entry_assertion_correlation.sql"),
   ),
+  (
+    "V7__run_startup_profile",
+    include_str!("migrations/V7__run_startup_profile.sql"),
+  ),
 ];
 
 /// `SQLite` database wrapper with WAL mode and versioned schema migrations.
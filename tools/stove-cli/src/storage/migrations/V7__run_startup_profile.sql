@@ -0,0 +1 @@
+ALTER TABLE runs ADD COLUMN startup_profile TEXT;
@@ -99,6 +99,8 @@ pub struct Run {
   pub duration_ms: Option<i64>,
   pub stove_version: Option<String>,
   pub systems: Vec<String>,
+  /// JSON of the last startup profile reported for the run, if any.
+  pub startup_profile: Option<String>,
 }
 
 /// A single test within a run.
@@ -12,7 +12,7 @@ use crate::storage::models::Span;
 use crate::storage::models::Test;
 use crate::storage::models::TestStatus;
 
-pub(super) const RUN_COLUMNS: &str = "id, app_name, started_at, ended_at, status, total_tests, passed, failed, duration_ms, stove_version, systems";
+pub(super) const RUN_COLUMNS: &str = "id, app_name, started_at, ended_at, status, total_tests, passed, failed, duration_ms, stove_version, systems, startup_profile";
 pub(super) const SPAN_COLUMNS: &str = "id, run_id, trace_id, span_id, parent_span_id, operation_name, service_name, start_time_nanos, end_time_nanos, status, attributes, exception_type, exception_message, exception_stack_trace";
 pub(super) const SNAPSHOT_COLUMNS: &str =
   "id, run_id, test_id, system, state_json, summary, captured_at, trigger_kind";
@@ -50,6 +50,7 @@ pub(super) fn run_from_row(row: &rusqlite::Row<'_>) -> rusqlite::Result<Run> {
     duration_ms: row.get(8)?,
     stove_version: row.get(9)?,
     systems,
+    startup_profile: row.get(11)?,
   })
 }
 
@@ -114,6 +114,7 @@ fn full_event_lifecycle() {
     duration_ms: Some(10000),
     stove_version: Some("0.23.2".into()),
     systems: vec!["HTTP".into(), "Kafka".into()],
+    startup_profile: None,
   };
   assert_eq!(repo.get_runs(None).unwrap(), vec![expected_run.clone()]);
   assert_eq!(repo.get_run("run-1").unwrap(), Some(expected_run));
@@ -264,6 +264,10 @@ fn apply_persisted_event(
       save_mock_interaction_on(conn, interaction)
     }
     PersistedDashboardEvent::MockWarning(warning) => save_mock_warning_on(conn, warning),
+    PersistedDashboardEvent::StartupProfile {
+      run_id,
+      profile_json,
+    } => save_startup_profile_on(conn, run_id, profile_json),
   }
 }
 
@@ -304,6 +308,18 @@ fn save_run_end_on(
   Ok(())
 }
 
+fn save_startup_profile_on(
+  conn: &rusqlite::Connection,
+  run_id: &str,
+  profile_json: &str,
+) -> Result<()> {
+  conn.execute(
+    "UPDATE runs SET startup_profile = ?1 WHERE id = ?2",
+    rusqlite::params![profile_json, run_id],
+  )?;
+  Ok(())
+}
+
 fn save_test_start_on(
   conn: &rusqlite::Connection,
   run_id: &str,